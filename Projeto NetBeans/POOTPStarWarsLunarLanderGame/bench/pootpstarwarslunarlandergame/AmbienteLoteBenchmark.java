@@ -0,0 +1,86 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark JMH de um passo do AmbienteLote, com acções aleatórias geradas
+ * antes da medição. Dividindo o tamanho pelo tempo de um passo obtém-se o
+ * número de passos de ambiente por segundo.
+ *
+ * @author C.M.P.Soares
+ * @see AmbienteLote
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AmbienteLoteBenchmark {
+
+    /**
+     * Número de conjuntos de acções diferentes, usados à vez.
+     */
+    private static final int CONJUNTOS = 8;
+    /**
+     * Número de ambientes.
+     */
+    @Param({"4096", "262144"})
+    public int tamanho;
+    /**
+     * Os ambientes.
+     */
+    private AmbienteLote ambiente;
+    /**
+     * Acções aleatórias, um jato em cada quatro passos em média.
+     */
+    private int[][] accoes;
+    /**
+     * Número de passos dados, para escolher o conjunto de acções.
+     */
+    private int passos;
+
+    /**
+     * Cria os ambientes e as acções antes de cada iteração.
+     */
+    @Setup(Level.Iteration)
+    public void preparar() {
+        ambiente = new AmbienteLote(tamanho, 10);
+        ambiente.reset(1);
+        Random aleatorio = new Random(2);
+        accoes = new int[CONJUNTOS][tamanho];
+        for (int[] conjunto : accoes) {
+            for (int i = 0; i < tamanho; i++) {
+                conjunto[i] = aleatorio.nextInt(4) == 0 ? 1 : 0;
+            }
+        }
+        passos = 0;
+    }
+
+    /**
+     * Um passo de todos os ambientes.
+     *
+     * @return As recompensas, para o JMH não eliminar o passo.
+     */
+    @Benchmark
+    public float[] step() {
+        ambiente.step(accoes[passos++ & (CONJUNTOS - 1)]);
+        return ambiente.getRecompensas();
+    }
+}
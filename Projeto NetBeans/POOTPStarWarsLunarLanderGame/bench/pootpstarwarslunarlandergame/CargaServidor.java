@@ -0,0 +1,139 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Teste de carga do ServidorJogo. Abre um servidor numa porta livre, liga-lhe
+ * N clientes (ou cria N sessões sem rede), que carregam no jato ao acaso, e
+ * no fim mostra quantas sessões correram por processador e os percentis da
+ * latência dos ticks. Não precisa do JMH; corre-se com
+ *
+ * <pre>
+ *     ant carga -Dcarga.args="5000 20 rede"
+ * </pre>
+ *
+ * Os argumentos são o número de sessões (2000), a duração em segundos (10) e
+ * o modo, <code>rede</code> ou <code>local</code>. A frequência dos ticks é a
+ * da opção <code>lander.fisica.hz</code>.
+ *
+ * @author C.M.P.Soares
+ * @see ServidorJogo
+ */
+public class CargaServidor {
+
+    /**
+     * Segundos iniciais cujas latências não contam, para o JIT aquecer e os
+     * clientes acabarem de se ligar.
+     */
+    private static final int AQUECIMENTO = 3;
+
+    /**
+     * @param args Número de sessões, duração em segundos e modo.
+     * @throws Exception Se o servidor ou os clientes falharem.
+     */
+    public static void main(String[] args) throws Exception {
+        int sessoes = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean rede = args.length < 3 || args[2].equals("rede");
+        int processadores = Runtime.getRuntime().availableProcessors();
+
+        ServidorJogo servidor = new ServidorJogo(0, processadores, Opcoes.FISICA_HZ);
+        servidor.start();
+        Random aleatorio = new Random(42);
+        List<SessaoJogo> locais = new ArrayList<>();
+        Selector selector = null;
+        List<SocketChannel> clientes = new ArrayList<>();
+        if (rede) {
+            selector = Selector.open();
+            InetSocketAddress endereco = new InetSocketAddress(InetAddress.getLoopbackAddress(), servidor.getPorta());
+            for (int i = 0; i < sessoes; i++) {
+                SocketChannel cliente = SocketChannel.open(endereco);
+                cliente.socket().setTcpNoDelay(true);
+                cliente.write(ByteBuffer.wrap(("NOVO " + (1 + i % 4) + "\n").getBytes(StandardCharsets.US_ASCII)));
+                cliente.configureBlocking(false);
+                cliente.register(selector, SelectionKey.OP_READ);
+                clientes.add(cliente);
+            }
+        } else {
+            for (int i = 0; i < sessoes; i++) {
+                locais.add(servidor.adicionarSessaoLocal(1 + i % 4));
+            }
+        }
+
+        ByteBuffer jato = ByteBuffer.wrap("JATO\n".getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer lidos = ByteBuffer.allocateDirect(65536);
+        long bytesLidos = 0;
+        long inicio = System.nanoTime();
+        long medicao = inicio + AQUECIMENTO * 1000000000L;
+        long fim = medicao + segundos * 1000000000L;
+        long proximoJato = inicio;
+        boolean aMedir = false;
+        while (System.nanoTime() < fim) {
+            long agora = System.nanoTime();
+            if (!aMedir && agora >= medicao) {
+                servidor.limparLatencias();
+                bytesLidos = 0;
+                aMedir = true;
+            }
+            if (agora >= proximoJato) {
+                // Cerca de um décimo das sessões carrega no jato a cada 100 ms.
+                for (int i = 0; i < sessoes / 10; i++) {
+                    int s = aleatorio.nextInt(sessoes);
+                    if (rede) {
+                        jato.rewind();
+                        clientes.get(s).write(jato);
+                    } else {
+                        locais.get(s).hitJato();
+                    }
+                }
+                proximoJato = agora + 100000000L;
+            }
+            if (rede) {
+                selector.select(10);
+                Iterator<SelectionKey> chaves = selector.selectedKeys().iterator();
+                while (chaves.hasNext()) {
+                    SelectionKey chave = chaves.next();
+                    chaves.remove();
+                    lidos.clear();
+                    int n = ((SocketChannel) chave.channel()).read(lidos);
+                    if (n > 0) {
+                        bytesLidos += n;
+                    }
+                }
+            } else {
+                Thread.sleep(10);
+            }
+        }
+
+        System.out.println("Modo " + (rede ? "rede" : "local") + ", " + processadores + " processador(es), "
+                + (Opcoes.FISICA_HZ > 0 ? Opcoes.FISICA_HZ + " Hz" : "tick clássico de 1 s") + ", " + segundos + " s medidos.");
+        servidor.relatorio(System.out);
+        System.out.println("Sessões por processador: " + servidor.getNumeroSessoes() / processadores);
+        if (rede) {
+            System.out.println("Recebidos " + bytesLidos / segundos / 1024 + " KiB/s do servidor.");
+        }
+
+        for (SocketChannel cliente : clientes) {
+            try {
+                cliente.close();
+            } catch (IOException ex) {
+                // Já não interessa no fim do teste.
+            }
+        }
+        servidor.stop();
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH do desenho das naves do GamePanel para uma imagem fora do
+ * ecrã, para cada tipo de nave: com as primitivas originais do
+ * <code>designNave</code> e com a sprite guardada pelo DesenhoNave.
+ *
+ * @author C.M.P.Soares
+ * @see DesenhoNave
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DesenhoNaveBenchmark {
+
+    /**
+     * Tipo de nave a desenhar.
+     */
+    @Param({"1", "2", "3", "4"})
+    public int tipo;
+    /**
+     * Imagem fora do ecrã com o tamanho aproximado do painel de jogo.
+     */
+    private BufferedImage imagem;
+    /**
+     * Onde se desenha.
+     */
+    private Graphics2D g;
+    /**
+     * Cache das sprites.
+     */
+    private DesenhoNave desenhoNave;
+    /**
+     * Posição vertical da nave, que vai descendo para não se desenhar sempre
+     * no mesmo sítio.
+     */
+    private int y;
+
+    /**
+     * Cria a imagem e a cache antes de cada iteração.
+     */
+    @Setup(Level.Iteration)
+    public void preparar() {
+        imagem = new BufferedImage(460, 840, BufferedImage.TYPE_INT_ARGB);
+        g = imagem.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, imagem.getWidth(), imagem.getHeight());
+        desenhoNave = new DesenhoNave();
+        y = 0;
+    }
+
+    /**
+     * Liberta o Graphics2D no fim de cada iteração.
+     */
+    @TearDown(Level.Iteration)
+    public void terminar() {
+        g.dispose();
+    }
+
+    /**
+     * Desenho com as primitivas originais.
+     *
+     * @return A imagem, para o JMH não eliminar o desenho.
+     */
+    @Benchmark
+    public BufferedImage primitivas() {
+        DesenhoNave.desenharPrimitivas(g, imagem.getWidth() / 2, proximoY(), tipo);
+        return imagem;
+    }
+
+    /**
+     * Desenho copiando a sprite.
+     *
+     * @return A imagem, para o JMH não eliminar o desenho.
+     */
+    @Benchmark
+    public BufferedImage sprite() {
+        desenhoNave.desenhar(g, imagem.getWidth() / 2, proximoY(), tipo);
+        return imagem;
+    }
+
+    /**
+     * @return A próxima posição vertical da nave.
+     */
+    private int proximoY() {
+        y = (y + 1) % (imagem.getHeight() - DesenhoNave.ALTURA);
+        return y;
+    }
+}
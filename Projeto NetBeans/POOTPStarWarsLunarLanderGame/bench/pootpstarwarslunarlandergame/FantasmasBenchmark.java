@@ -0,0 +1,119 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark JMH do desenho de um frame de fantasmas para uma imagem fora do
+ * ecrã com o tamanho aproximado do painel de jogo. A 60 fps um frame inteiro
+ * tem 16,7 ms; os fantasmas devem ficar abaixo do orçamento de 4 ms.
+ *
+ * @author C.M.P.Soares
+ * @see Fantasmas
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FantasmasBenchmark {
+
+    /**
+     * Duração, em ticks, de cada tentativa gravada.
+     */
+    private static final int TICKS = 600;
+    /**
+     * Número de fantasmas.
+     */
+    @Param({"100", "500"})
+    public int numero;
+    /**
+     * Imagem fora do ecrã com o tamanho aproximado do painel de jogo.
+     */
+    private BufferedImage imagem;
+    /**
+     * Onde se desenha.
+     */
+    private Graphics2D g;
+    /**
+     * Cache das sprites.
+     */
+    private DesenhoNave desenhoNave;
+    /**
+     * Os fantasmas desenhados.
+     */
+    private Fantasmas fantasmas;
+    /**
+     * Tick da tentativa actual.
+     */
+    private int tick;
+
+    /**
+     * Cria a imagem e grava as tentativas, cada uma a descer com uma
+     * velocidade diferente, antes de cada iteração.
+     */
+    @Setup(Level.Iteration)
+    public void preparar() {
+        imagem = new BufferedImage(460, 840, BufferedImage.TYPE_INT_ARGB);
+        g = imagem.createGraphics();
+        desenhoNave = new DesenhoNave();
+        fantasmas = new Fantasmas();
+        Random aleatorio = new Random(1);
+        for (int i = 0; i < numero; i++) {
+            fantasmas.iniciarNivel(Nave.NAVE_EASY, 1);
+            double velocidade = 0.5 + aleatorio.nextDouble();
+            for (int t = 0; t < TICKS; t++) {
+                fantasmas.gravar(velocidade * t / TICKS);
+            }
+            fantasmas.terminarNivel();
+        }
+        fantasmas.iniciarNivel(Nave.NAVE_EASY, 1);
+        tick = 0;
+    }
+
+    /**
+     * Liberta o Graphics2D no fim de cada iteração.
+     */
+    @TearDown(Level.Iteration)
+    public void terminar() {
+        g.dispose();
+    }
+
+    /**
+     * Um frame: o fundo e os fantasmas no tick seguinte. No fim das
+     * tentativas gravadas volta-se ao início do nível.
+     *
+     * @return Número de fantasmas desenhados.
+     */
+    @Benchmark
+    public int frame() {
+        if (++tick == TICKS) {
+            fantasmas.iniciarNivel(Nave.NAVE_EASY, 1);
+            tick = 0;
+        }
+        fantasmas.gravar(0);
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, imagem.getWidth(), imagem.getHeight());
+        return fantasmas.desenhar(g, desenhoNave, imagem.getWidth() / 2, imagem.getHeight(), Nave.NAVE_EASY);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark JMH da escrita e leitura de um Instantaneo de um jogo a meio de
+ * um nível. Cada uma deve ficar bem abaixo de um microsegundo.
+ *
+ * @author C.M.P.Soares
+ * @see Instantaneo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class InstantaneoBenchmark {
+
+    /**
+     * Simulação a meio de um nível.
+     */
+    private Simulacao simulacao;
+    /**
+     * Buffer reutilizado em todas as escritas.
+     */
+    private ByteBuffer buffer;
+    /**
+     * Instantâneo já escrito, para os benchmarks de leitura.
+     */
+    private ByteBuffer escrito;
+
+    /**
+     * Avança a simulação alguns ticks e escreve o seu instantâneo.
+     */
+    @Setup
+    public void preparar() {
+        simulacao = new Simulacao(Nave.NAVE_HARD, 5);
+        for (int i = 0; i < 3; i++) {
+            simulacao.hitJato();
+            simulacao.step();
+        }
+        buffer = ByteBuffer.allocate(Instantaneo.TAMANHO);
+        escrito = ByteBuffer.allocate(Instantaneo.TAMANHO);
+        Instantaneo.escrever(simulacao, escrito);
+        escrito.flip();
+    }
+
+    /**
+     * @return O buffer escrito, para o JMH não eliminar a escrita.
+     */
+    @Benchmark
+    public ByteBuffer escrever() {
+        buffer.clear();
+        Instantaneo.escrever(simulacao, buffer);
+        return buffer;
+    }
+
+    /**
+     * @return A simulação restaurada.
+     */
+    @Benchmark
+    public Simulacao ler() {
+        escrito.rewind();
+        return Instantaneo.ler(escrito);
+    }
+}
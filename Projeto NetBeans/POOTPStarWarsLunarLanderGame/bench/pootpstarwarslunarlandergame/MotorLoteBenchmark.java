@@ -0,0 +1,105 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH de um nível completo (preparação e 64 ticks, com um jato a
+ * cada quatro ticks) de um lote de naves, com o MotorLote e com um array de
+ * Simulacao.
+ *
+ * @author C.M.P.Soares
+ * @see MotorLote
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MotorLoteBenchmark {
+
+    /**
+     * Número de ticks de cada nível.
+     */
+    private static final int TICKS = 64;
+    /**
+     * Número de naves do lote.
+     */
+    @Param({"1024", "1048576"})
+    public int tamanho;
+    /**
+     * Lote em arrays de inteiros.
+     */
+    private MotorLote motor;
+    /**
+     * Lote com uma Simulacao por nave.
+     */
+    private Simulacao[] simulacoes;
+
+    /**
+     * Cria os dois lotes antes de cada iteração.
+     */
+    @Setup(Level.Iteration)
+    public void preparar() {
+        motor = new MotorLote(tamanho);
+        simulacoes = new Simulacao[tamanho];
+    }
+
+    /**
+     * Nível completo com o MotorLote.
+     *
+     * @return Número de naves aterradas, para o JMH não eliminar os ticks.
+     */
+    @Benchmark
+    public int lote() {
+        motor.iniciarTodas(Nave.NAVE_MEDIUM, 5);
+        for (int t = 0; t < TICKS; t++) {
+            if ((t & 3) == 0) {
+                for (int i = 0; i < tamanho; i++) {
+                    motor.hitJato(i);
+                }
+            }
+            motor.step();
+        }
+        return motor.contarAterradas();
+    }
+
+    /**
+     * Nível completo com uma Simulacao por nave.
+     *
+     * @return Número de naves aterradas, para o JMH não eliminar os ticks.
+     */
+    @Benchmark
+    public int objectos() {
+        for (int i = 0; i < tamanho; i++) {
+            simulacoes[i] = new Simulacao(Nave.NAVE_MEDIUM, 5);
+        }
+        int aterradas = 0;
+        for (int t = 0; t < TICKS; t++) {
+            for (int i = 0; i < tamanho; i++) {
+                if ((t & 3) == 0) {
+                    simulacoes[i].hitJato();
+                }
+                if (simulacoes[i].step() && t == TICKS - 1) {
+                    aterradas++;
+                }
+            }
+        }
+        return aterradas;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark JMH de um frame de partículas a 60 Hz: um tick de actualização,
+ * com partículas novas até voltar ao número pedido, a publicação do quadro e
+ * o desenho para uma imagem fora do ecrã com o tamanho aproximado do painel
+ * de jogo.
+ *
+ * @author C.M.P.Soares
+ * @see Particulas
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ParticulasBenchmark {
+
+    /**
+     * Número de partículas vivas mantido em cada frame.
+     */
+    @Param({"1000", "10000"})
+    public int numero;
+    /**
+     * Imagem fora do ecrã com o tamanho aproximado do painel de jogo.
+     */
+    private BufferedImage imagem;
+    /**
+     * Onde se desenha.
+     */
+    private Graphics2D g;
+    /**
+     * As partículas.
+     */
+    private Particulas particulas;
+    /**
+     * Número de frames, para variar a altura do fumo.
+     */
+    private int frames;
+
+    /**
+     * Cria a imagem e as partículas antes de cada iteração.
+     */
+    @Setup(Level.Iteration)
+    public void preparar() {
+        imagem = new BufferedImage(460, 840, BufferedImage.TYPE_INT_RGB);
+        g = imagem.createGraphics();
+        particulas = new Particulas();
+        frames = 0;
+    }
+
+    /**
+     * Liberta o Graphics2D no fim de cada iteração.
+     */
+    @TearDown(Level.Iteration)
+    public void terminar() {
+        g.dispose();
+    }
+
+    /**
+     * Um frame: actualização, partículas novas, fundo e desenho.
+     *
+     * @return Número de partículas desenhadas.
+     */
+    @Benchmark
+    public int frame() {
+        particulas.actualizar(1 / 60f);
+        while (particulas.getVivas() < numero) {
+            particulas.jato((frames % 100) / 100.0);
+            particulas.poeira();
+        }
+        particulas.publicar();
+        particulas.adquirir();
+        frames++;
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, imagem.getWidth(), imagem.getHeight());
+        return particulas.desenhar(g, imagem.getWidth() / 2, 781, DesenhoNave.ALTURA - DesenhoNave.ORIGEM_Y, imagem.getWidth(), imagem.getHeight());
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH da física do jogo: o tick do Nivel (Simulacao), o tick de
+ * passo fixo em vírgula flutuante e em vírgula fixa, a preparação de um nível
+ * e o gasto de combustível da Nave.
+ *
+ * @author C.M.P.Soares
+ * @see Simulacao
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SimulacaoBenchmark {
+
+    /**
+     * Número de chamadas ao <code>useCombustivel()</code> entre cada vez que
+     * a nave é reabastecida, uma potência de dois. É também o combustível com
+     * que a nave é reabastecida, por isso nunca fica sem combustível.
+     */
+    private static final int REABASTECER = 1 << 20;
+    /**
+     * Dificuldade dos níveis simulados.
+     */
+    @Param({"1", "2", "3", "4"})
+    public int dificuldade;
+    /**
+     * Simulação usada nos benchmarks de tick.
+     */
+    private Simulacao simulacao;
+    /**
+     * Nave usada no benchmark do combustível, reabastecida a cada
+     * <code>REABASTECER</code> jatos.
+     */
+    private Nave nave;
+    /**
+     * Contador de jatos do benchmark do combustível.
+     */
+    private int jatos;
+    /**
+     * Contador de ticks, para se carregar no jato de vez em quando.
+     */
+    private int ticks;
+
+    /**
+     * Cria a simulação e a nave antes de cada iteração.
+     */
+    @Setup(Level.Iteration)
+    public void preparar() {
+        simulacao = new Simulacao(dificuldade, 10);
+        nave = new Nave(8, REABASTECER, 1);
+        ticks = 0;
+        jatos = 0;
+    }
+
+    /**
+     * Um tick clássico do Nivel, com um jato a cada quatro ticks. Quando a
+     * nave aterra o nível é recomeçado.
+     *
+     * @return 'true' se a nave aterrou, para o JMH não eliminar o tick.
+     */
+    @Benchmark
+    public boolean tick() {
+        if ((++ticks & 3) == 0) {
+            simulacao.hitJato();
+        }
+        boolean aterrou = simulacao.step();
+        if (aterrou) {
+            simulacao.setNewLevelParametres();
+        }
+        return aterrou;
+    }
+
+    /**
+     * Um tick de 1/120 de segundo do modo de ciclo de jogo.
+     *
+     * @return 'true' se a nave aterrou, para o JMH não eliminar o tick.
+     */
+    @Benchmark
+    public boolean tickPassoFixo() {
+        if ((++ticks & 127) == 0) {
+            simulacao.hitJato();
+        }
+        boolean aterrou = simulacao.step(1.0 / 120);
+        if (aterrou) {
+            simulacao.setNewLevelParametres();
+        }
+        return aterrou;
+    }
+
+    /**
+     * Um tick de 1/120 de segundo do modo de ciclo de jogo em vírgula fixa,
+     * com os mesmos jatos do <code>tickPassoFixo()</code>.
+     *
+     * @return 'true' se a nave aterrou, para o JMH não eliminar o tick.
+     */
+    @Benchmark
+    public boolean tickVirgulaFixa() {
+        if ((++ticks & 127) == 0) {
+            simulacao.hitJato();
+        }
+        boolean aterrou = simulacao.stepFixo(120);
+        if (aterrou) {
+            simulacao.setNewLevelParametres();
+        }
+        return aterrou;
+    }
+
+    /**
+     * Preparação de um nível novo, tal como no fim de cada nível.
+     *
+     * @return A simulação, para o JMH não eliminar a preparação.
+     */
+    @Benchmark
+    public Simulacao setNewLevelParametres() {
+        simulacao.setNewLevelParametres();
+        return simulacao;
+    }
+
+    /**
+     * Gasto de combustível de um jato, sempre com combustível no depósito. A
+     * um nanosegundo por chamada, mesmo <code>Integer.MAX_VALUE</code> litros
+     * acabavam a meio de uma iteração e passava-se a medir o depósito vazio,
+     * por isso a nave é reabastecida de <code>REABASTECER</code> em
+     * <code>REABASTECER</code> jatos.
+     *
+     * @return O resultado do <code>useCombustivel()</code>.
+     */
+    @Benchmark
+    public boolean useCombustivel() {
+        if ((++jatos & (REABASTECER - 1)) == 0) {
+            nave = new Nave(8, REABASTECER, 1);
+        }
+        return nave.useCombustivel();
+    }
+}
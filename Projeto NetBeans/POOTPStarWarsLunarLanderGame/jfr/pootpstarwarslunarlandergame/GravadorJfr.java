@@ -0,0 +1,265 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Implementação dos eventos do JDK Flight Recorder do jogo. Está na pasta
+ * <code>jfr</code>, fora do <code>src</code>, porque precisa do
+ * <code>jdk.jfr</code>, que só existe a partir do JDK 11: o build.xml só a
+ * compila se o JDK a tiver, e o EventosJfr só a carrega se a JVM tiver o JFR.
+ *
+ * @author C.M.P.Soares
+ * @see EventosJfr
+ */
+final class GravadorJfr implements EventosJfr.Gravador {
+
+    /**
+     * Tipo do evento de tick.
+     */
+    private static final EventType TICK = EventType.getEventType(Tick.class);
+    /**
+     * Tipo do evento de desenho.
+     */
+    private static final EventType DESENHO = EventType.getEventType(Desenho.class);
+    /**
+     * Tipo do evento de começo de nível.
+     */
+    private static final EventType NOVO_NIVEL = EventType.getEventType(NovoNivel.class);
+    /**
+     * Tipo do evento de fim de nível.
+     */
+    private static final EventType FIM_NIVEL = EventType.getEventType(FimNivel.class);
+    /**
+     * Tipo do evento de jato.
+     */
+    private static final EventType JATO = EventType.getEventType(Jato.class);
+
+    @Override
+    public Object iniciarTick() {
+        if (!TICK.isEnabled()) {
+            return null;
+        }
+        Tick evento = new Tick();
+        evento.begin();
+        return evento;
+    }
+
+    @Override
+    public void terminarTick(Object evento, Simulacao simulacao, boolean aterrou) {
+        Tick tick = (Tick) evento;
+        tick.end();
+        if (tick.shouldCommit()) {
+            tick.tick = simulacao.getTick();
+            tick.altitude = simulacao.getAltitude();
+            tick.velocidade = simulacao.getVelocidadeActual();
+            tick.jatos = simulacao.getJatos();
+            tick.aterrou = aterrou;
+            tick.commit();
+        }
+    }
+
+    @Override
+    public Object iniciarDesenho() {
+        if (!DESENHO.isEnabled()) {
+            return null;
+        }
+        Desenho evento = new Desenho();
+        evento.begin();
+        return evento;
+    }
+
+    @Override
+    public void terminarDesenho(Object evento, Class<?> componente) {
+        Desenho desenho = (Desenho) evento;
+        desenho.end();
+        if (desenho.shouldCommit()) {
+            desenho.componente = componente;
+            desenho.commit();
+        }
+    }
+
+    @Override
+    public void novoNivel(Simulacao simulacao) {
+        if (NOVO_NIVEL.isEnabled()) {
+            NovoNivel evento = new NovoNivel();
+            evento.dificuldade = simulacao.getDifficulty();
+            evento.nivel = simulacao.getLevel();
+            evento.altitudeInicial = simulacao.getAltitudeInicial();
+            evento.velocidadeMaxima = simulacao.getVelocidadeMaxima();
+            evento.commit();
+        }
+    }
+
+    @Override
+    public void fimNivel(Simulacao simulacao) {
+        if (FIM_NIVEL.isEnabled()) {
+            FimNivel evento = new FimNivel();
+            evento.dificuldade = simulacao.getDifficulty();
+            evento.nivel = simulacao.getLevel();
+            evento.ganho = simulacao.isNivelGanho();
+            evento.velocidade = simulacao.getVelocidadeActual();
+            evento.ticks = simulacao.getTick();
+            evento.commit();
+        }
+    }
+
+    @Override
+    public void jato(int combustivel, boolean queimou) {
+        if (JATO.isEnabled()) {
+            Jato evento = new Jato();
+            evento.combustivel = combustivel;
+            evento.queimou = queimou;
+            evento.commit();
+        }
+    }
+
+    /**
+     * Um tick da física.
+     */
+    @Name("pootpstarwarslunarlandergame.Tick")
+    @Label("Tick da Física")
+    @Category({"Lunar Lander", "Física"})
+    @StackTrace(false)
+    static final class Tick extends Event {
+
+        /**
+         * Número do tick no nível.
+         */
+        @Label("Tick")
+        int tick;
+        /**
+         * Altitude depois do tick.
+         */
+        @Label("Altitude")
+        int altitude;
+        /**
+         * Velocidade depois do tick.
+         */
+        @Label("Velocidade")
+        int velocidade;
+        /**
+         * Jatos ainda em espera.
+         */
+        @Label("Jatos em Espera")
+        int jatos;
+        /**
+         * Se a nave aterrou neste tick.
+         */
+        @Label("Aterrou")
+        boolean aterrou;
+    }
+
+    /**
+     * O desenho de um painel do jogo.
+     */
+    @Name("pootpstarwarslunarlandergame.Desenho")
+    @Label("Desenho de Painel")
+    @Category({"Lunar Lander", "Desenho"})
+    @StackTrace(false)
+    static final class Desenho extends Event {
+
+        /**
+         * Classe do componente desenhado.
+         */
+        @Label("Componente")
+        Class<?> componente;
+    }
+
+    /**
+     * O começo de um nível.
+     */
+    @Name("pootpstarwarslunarlandergame.NovoNivel")
+    @Label("Novo Nível")
+    @Category({"Lunar Lander", "Níveis"})
+    @StackTrace(false)
+    static final class NovoNivel extends Event {
+
+        /**
+         * Dificuldade do jogo.
+         */
+        @Label("Dificuldade")
+        int dificuldade;
+        /**
+         * Nível(level) que começa.
+         */
+        @Label("Nível")
+        int nivel;
+        /**
+         * Altitude inicial.
+         */
+        @Label("Altitude Inicial")
+        int altitudeInicial;
+        /**
+         * Velocidade máxima de aterragem.
+         */
+        @Label("Velocidade Máxima")
+        int velocidadeMaxima;
+    }
+
+    /**
+     * O fim de um nível.
+     */
+    @Name("pootpstarwarslunarlandergame.FimNivel")
+    @Label("Fim de Nível")
+    @Category({"Lunar Lander", "Níveis"})
+    @StackTrace(false)
+    static final class FimNivel extends Event {
+
+        /**
+         * Dificuldade do jogo.
+         */
+        @Label("Dificuldade")
+        int dificuldade;
+        /**
+         * Nível(level) que terminou.
+         */
+        @Label("Nível")
+        int nivel;
+        /**
+         * Se o nível foi ganho.
+         */
+        @Label("Ganho")
+        boolean ganho;
+        /**
+         * Velocidade de aterragem.
+         */
+        @Label("Velocidade")
+        int velocidade;
+        /**
+         * Ticks que o nível durou.
+         */
+        @Label("Ticks")
+        int ticks;
+    }
+
+    /**
+     * Um jato da nave.
+     */
+    @Name("pootpstarwarslunarlandergame.Jato")
+    @Label("Jato")
+    @Category({"Lunar Lander", "Física"})
+    @Description("Gasto de combustível de um jato da nave.")
+    @StackTrace(false)
+    static final class Jato extends Event {
+
+        /**
+         * Combustível que sobrou.
+         */
+        @Label("Combustível")
+        int combustivel;
+        /**
+         * Se havia combustível para o jato.
+         */
+        @Label("Queimou")
+        boolean queimou;
+    }
+}
@@ -0,0 +1,386 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ambiente vectorizado para treino de agentes por reforço, ao estilo do gym:
+ * <code>reset(semente)</code> e <code>step(accoes)</code> sobre milhares de
+ * ambientes de uma vez. Cada ambiente é uma nave do MotorLote, pelo que as
+ * regras são as do <code>Simulacao.step()</code> usado pelo Nivel: gravidade
+ * do Astro, jato e combustível da Nave e vitória se a velocidade de aterragem
+ * não passar da velocidade máxima do nível.
+ * <p>
+ * Os resultados de cada passo são escritos em arrays alocados uma só vez:
+ * <code>getObservacoes()</code> (<code>DIMENSAO</code> floats por ambiente,
+ * ver <code>OBS_ALTITUDE</code> e seguintes), <code>getRecompensas()</code>,
+ * <code>getTerminados()</code> e <code>getTruncados()</code>. Quem chama pode
+ * ler estes arrays directamente, mas não os deve guardar entre passos. A
+ * recompensa é 1 quando a nave aterra e ganha o nível, -1 quando aterra e
+ * perde ou quando o episódio passa de <code>PASSOS_MAXIMOS</code> ticks, e 0
+ * nos outros passos. Um ambiente terminado recomeça sozinho no passo
+ * seguinte, num nível escolhido pelo seu gerador de números aleatórios.
+ * <p>
+ * Os passos não alocam memória: os ambientes estão divididos em partes fixas,
+ * cada uma uma tarefa fork/join reutilizada em todos os passos, e cada
+ * ambiente tem o seu próprio gerador (SplitMix64), por isso os resultados não
+ * dependem do número de threads.
+ *
+ * @author C.M.P.Soares
+ * @see MotorLote
+ */
+public class AmbienteLote {
+
+    /**
+     * Número de floats da observação de cada ambiente.
+     */
+    public static final int DIMENSAO = 6;
+    /**
+     * Posição, na observação, da altitude a dividir pela altitude inicial.
+     */
+    public static final int OBS_ALTITUDE = 0;
+    /**
+     * Posição, na observação, da velocidade a dividir pela velocidade máxima
+     * de aterragem.
+     */
+    public static final int OBS_VELOCIDADE = 1;
+    /**
+     * Posição, na observação, do combustível a dividir pelo combustível
+     * inicial.
+     */
+    public static final int OBS_COMBUSTIVEL = 2;
+    /**
+     * Posição, na observação, do número de jatos em espera.
+     */
+    public static final int OBS_JATOS = 3;
+    /**
+     * Posição, na observação, da gravidade do Astro a dividir pela velocidade
+     * máxima de aterragem.
+     */
+    public static final int OBS_GRAVIDADE = 4;
+    /**
+     * Posição, na observação, da aceleração de um jato a dividir pela
+     * velocidade máxima de aterragem.
+     */
+    public static final int OBS_ACELERACAO_JATO = 5;
+    /**
+     * Número máximo de ticks de um episódio, para uma nave que suba para
+     * sempre não ficar presa no ambiente.
+     */
+    public static final int PASSOS_MAXIMOS = 1000;
+    /**
+     * Número mínimo de ambientes de cada parte fork/join.
+     */
+    private static final int AMBIENTES_POR_PARTE = 4096;
+    /**
+     * Número de ambientes.
+     */
+    private final int numero;
+    /**
+     * Maior nível(level) escolhido ao recomeçar um ambiente.
+     */
+    private final int nivelMaximo;
+    /**
+     * As naves, uma por ambiente.
+     */
+    private final MotorLote motor;
+    /**
+     * Simulações no início de cada dificuldade e nível(level), copiadas para o
+     * motor ao recomeçar um ambiente, indexadas por [dificuldade - 1][nível -
+     * 1].
+     */
+    private final Simulacao[][] inicios;
+    /**
+     * Combustível inicial de cada ambiente.
+     */
+    private final int[] combustivelInicial;
+    /**
+     * Estado do gerador de números aleatórios de cada ambiente.
+     */
+    private final long[] aleatorio;
+    /**
+     * Observações do último passo.
+     */
+    private final float[] observacoes;
+    /**
+     * Recompensas do último passo.
+     */
+    private final float[] recompensas;
+    /**
+     * Indica, para cada ambiente, se a nave aterrou no último passo.
+     */
+    private final boolean[] terminados;
+    /**
+     * Indica, para cada ambiente, se o episódio foi cortado no último passo
+     * por ter chegado a <code>PASSOS_MAXIMOS</code>.
+     */
+    private final boolean[] truncados;
+    /**
+     * Acções do passo a decorrer.
+     */
+    private int[] accoes;
+    /**
+     * Conjunto de threads onde correm as partes.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * As partes em que os ambientes estão divididos.
+     */
+    private final Parte[] partes;
+    /**
+     * Tarefa que corre todas as partes em paralelo.
+     */
+    private final Raiz raiz = new Raiz();
+
+    /**
+     * Construtor que usa o pool partilhado, com uma thread por processador.
+     *
+     * @param numero Número de ambientes.
+     * @param nivelMaximo Maior nível(level) escolhido ao recomeçar um
+     * ambiente.
+     * @see PoolPartilhado
+     */
+    public AmbienteLote(int numero, int nivelMaximo) {
+        this(numero, nivelMaximo, PoolPartilhado.get());
+    }
+
+    /**
+     * Construtor que usa um ForkJoinPool próprio.
+     *
+     * @param numero Número de ambientes.
+     * @param nivelMaximo Maior nível(level) escolhido ao recomeçar um
+     * ambiente.
+     * @param pool Conjunto de threads onde correm as partes.
+     */
+    public AmbienteLote(int numero, int nivelMaximo, ForkJoinPool pool) {
+        this.numero = numero;
+        this.nivelMaximo = nivelMaximo;
+        this.pool = pool;
+        motor = new MotorLote(numero, pool);
+        inicios = new Simulacao[Nave.NAVE_VERY_HARD][nivelMaximo];
+        for (int d = 0; d < Nave.NAVE_VERY_HARD; d++) {
+            for (int l = 0; l < nivelMaximo; l++) {
+                inicios[d][l] = new Simulacao(d + 1, l + 1);
+            }
+        }
+        combustivelInicial = new int[numero];
+        aleatorio = new long[numero];
+        observacoes = new float[numero * DIMENSAO];
+        recompensas = new float[numero];
+        terminados = new boolean[numero];
+        truncados = new boolean[numero];
+
+        int n = Math.max(1, Math.min(pool.getParallelism() * 4, numero / AMBIENTES_POR_PARTE));
+        partes = new Parte[n];
+        for (int i = 0; i < n; i++) {
+            partes[i] = new Parte((int) ((long) numero * i / n), (int) ((long) numero * (i + 1) / n));
+        }
+    }
+
+    /**
+     * Recomeça todos os ambientes. O gerador de cada ambiente é iniciado a
+     * partir da semente e do número do ambiente, por isso a mesma semente dá
+     * sempre os mesmos níveis.
+     *
+     * @param semente Semente dos geradores de números aleatórios.
+     */
+    public void reset(long semente) {
+        for (int i = 0; i < numero; i++) {
+            aleatorio[i] = semente + (i + 1) * 0x9E3779B97F4A7C15L;
+            recomecar(i);
+            recompensas[i] = 0;
+            terminados[i] = false;
+            truncados[i] = false;
+            observar(i);
+        }
+    }
+
+    /**
+     * Avança todos os ambientes um tick. Os ambientes que terminaram no passo
+     * anterior recomeçam primeiro num nível novo.
+     *
+     * @param accoes Para cada ambiente, o número de jatos carregados neste
+     * tick (normalmente 0 ou 1).
+     */
+    public void step(int[] accoes) {
+        if (accoes.length < numero) {
+            throw new IllegalArgumentException("São precisas " + numero + " acções.");
+        }
+        this.accoes = accoes;
+        if (partes.length == 1) {
+            step(0, numero);
+        } else {
+            for (Parte parte : partes) {
+                parte.reinitialize();
+            }
+            raiz.reinitialize();
+            pool.invoke(raiz);
+        }
+        this.accoes = null;
+    }
+
+    /**
+     * Avança um intervalo de ambientes um tick.
+     *
+     * @param de Primeiro ambiente do intervalo.
+     * @param ate Ambiente a seguir ao último do intervalo.
+     */
+    private void step(int de, int ate) {
+        int[] a = accoes;
+        for (int i = de; i < ate; i++) {
+            if (terminados[i] || truncados[i]) {
+                recomecar(i);
+            }
+            for (int j = a[i]; j > 0; j--) {
+                motor.hitJato(i);
+            }
+        }
+        motor.step(de, ate, 1);
+        for (int i = de; i < ate; i++) {
+            boolean aterrou = motor.isAterrou(i);
+            terminados[i] = aterrou;
+            truncados[i] = !aterrou && motor.getTick(i) >= PASSOS_MAXIMOS;
+            if (aterrou) {
+                recompensas[i] = motor.isNivelGanho(i) ? 1 : -1;
+            } else {
+                recompensas[i] = truncados[i] ? -1 : 0;
+            }
+            observar(i);
+        }
+    }
+
+    /**
+     * Põe um ambiente no início de um nível escolhido pelo seu gerador.
+     *
+     * @param i Número do ambiente.
+     */
+    private void recomecar(int i) {
+        long r = proximoAleatorio(i);
+        int dificuldade = (int) ((r >>> 32) % Nave.NAVE_VERY_HARD);
+        int nivel = (int) ((r & 0xFFFFFFFFL) % nivelMaximo);
+        Simulacao inicio = inicios[dificuldade][nivel];
+        motor.iniciar(i, inicio);
+        combustivelInicial[i] = inicio.getCombustivel();
+    }
+
+    /**
+     * Próximo número do gerador SplitMix64 de um ambiente.
+     *
+     * @param i Número do ambiente.
+     * @return Um número aleatório de 64 bits.
+     */
+    private long proximoAleatorio(int i) {
+        long z = aleatorio[i] + 0x9E3779B97F4A7C15L;
+        aleatorio[i] = z;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Escreve a observação de um ambiente.
+     *
+     * @param i Número do ambiente.
+     */
+    private void observar(int i) {
+        int o = i * DIMENSAO;
+        float velocidadeMaxima = motor.getVelocidadeMaxima(i);
+        observacoes[o + OBS_ALTITUDE] = (float) motor.getAltitude(i) / motor.getAltitudeInicial(i);
+        observacoes[o + OBS_VELOCIDADE] = motor.getVelocidade(i) / velocidadeMaxima;
+        observacoes[o + OBS_COMBUSTIVEL] = combustivelInicial[i] > 0 ? (float) motor.getCombustivel(i) / combustivelInicial[i] : 0;
+        observacoes[o + OBS_JATOS] = motor.getJatos(i);
+        observacoes[o + OBS_GRAVIDADE] = motor.getGravidade(i) / velocidadeMaxima;
+        observacoes[o + OBS_ACELERACAO_JATO] = motor.getAceleracaoJato(i) / velocidadeMaxima;
+    }
+
+    /**
+     * @return Número de ambientes.
+     */
+    public int getNumero() {
+        return numero;
+    }
+
+    /**
+     * @return Observações do último passo, <code>DIMENSAO</code> floats
+     * seguidos por ambiente.
+     */
+    public float[] getObservacoes() {
+        return observacoes;
+    }
+
+    /**
+     * @return Recompensas do último passo.
+     */
+    public float[] getRecompensas() {
+        return recompensas;
+    }
+
+    /**
+     * @return Para cada ambiente, 'true' se a nave aterrou no último passo.
+     */
+    public boolean[] getTerminados() {
+        return terminados;
+    }
+
+    /**
+     * @return Para cada ambiente, 'true' se o episódio foi cortado no último
+     * passo por ter chegado a <code>PASSOS_MAXIMOS</code>.
+     */
+    public boolean[] getTruncados() {
+        return truncados;
+    }
+
+    /**
+     * Tarefa fork/join, reutilizada em todos os passos, que avança uma parte
+     * dos ambientes.
+     */
+    private final class Parte extends RecursiveAction {
+
+        /**
+         * Versão da classe para a serialização.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Primeiro ambiente da parte.
+         */
+        private final int de;
+        /**
+         * Ambiente a seguir ao último da parte.
+         */
+        private final int ate;
+
+        /**
+         * @param de Primeiro ambiente da parte.
+         * @param ate Ambiente a seguir ao último da parte.
+         */
+        Parte(int de, int ate) {
+            this.de = de;
+            this.ate = ate;
+        }
+
+        @Override
+        protected void compute() {
+            step(de, ate);
+        }
+    }
+
+    /**
+     * Tarefa fork/join, reutilizada em todos os passos, que corre todas as
+     * partes.
+     */
+    private final class Raiz extends RecursiveAction {
+
+        /**
+         * Versão da classe para a serialização.
+         */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            invokeAll(partes);
+        }
+    }
+}
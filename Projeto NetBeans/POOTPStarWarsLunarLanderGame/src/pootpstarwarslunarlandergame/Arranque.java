@@ -0,0 +1,246 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.UIManager;
+
+/**
+ * Arranque do jogo com o trabalho independente feito em paralelo e cada fase
+ * cronometrada. Enquanto a thread do Swing constrói a janela, outras threads
+ * carregam a classe do LookAndFeel do sistema, abrem a música, preparam a
+ * Simulacao do primeiro nível e lêem as pontuações. A janela espera apenas
+ * pelo que precisa (o LookAndFeel e a Simulacao); a música só começa depois de
+ * a janela estar no ecrã e as pontuações só são precisas no fim do primeiro
+ * nível.
+ * <p>
+ * Quando o primeiro frame é pintado e as tarefas paralelas terminam, é
+ * registado no log o tempo de cada fase e o tempo até ao primeiro frame,
+ * contado a partir do <code>main</code> e do arranque da JVM.
+ *
+ * @author C.M.P.Soares
+ * @see GUI
+ */
+final class Arranque {
+
+    /**
+     * Instante, em nanosegundos, em que o arranque começou.
+     */
+    private final long inicio = System.nanoTime();
+    /**
+     * Milisegundos que a JVM demorou a chegar ao arranque.
+     */
+    private final long arranqueJVM = ManagementFactory.getRuntimeMXBean().getUptime();
+    /**
+     * Fases já terminadas, pela ordem em que terminaram.
+     */
+    private final List<String> fases = new ArrayList<>();
+    /**
+     * Threads onde corre o trabalho paralelo.
+     */
+    private final ExecutorService pool;
+    /**
+     * Música de fundo, aberta em paralelo e tocada pelo GUI.
+     */
+    private final Musica musica;
+    /**
+     * Carregamento da classe do LookAndFeel do sistema.
+     */
+    private final Future<String> lookAndFeel;
+    /**
+     * Abertura da música.
+     */
+    private final Future<Musica> musicaPreparada;
+    /**
+     * Simulação do primeiro nível.
+     */
+    private final Future<Simulacao> simulacao;
+    /**
+     * Abertura do ficheiro das pontuações.
+     */
+    private final Future<Pontuacoes> pontuacoes;
+
+    /**
+     * Construtor que começa logo o trabalho paralelo.
+     *
+     * @param musica Música de fundo a abrir.
+     * @param difficulty Dificuldade do primeiro nível.
+     */
+    Arranque(final Musica musica, final int difficulty) {
+        this.musica = musica;
+        pool = Executors.newFixedThreadPool(4, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Arranque");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        lookAndFeel = emParalelo("lookAndFeel (classe)", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                String nome = UIManager.getSystemLookAndFeelClassName();
+                Class.forName(nome, true, Arranque.class.getClassLoader());
+                return nome;
+            }
+        });
+        musicaPreparada = emParalelo("musica", new Callable<Musica>() {
+            @Override
+            public Musica call() throws Exception {
+                musica.preparar();
+                return musica;
+            }
+        });
+        simulacao = emParalelo("simulacao", new Callable<Simulacao>() {
+            @Override
+            public Simulacao call() {
+                return new Simulacao(difficulty);
+            }
+        });
+        pontuacoes = emParalelo("pontuacoes", new Callable<Pontuacoes>() {
+            @Override
+            public Pontuacoes call() {
+                try {
+                    return Pontuacoes.abrir(new File(Opcoes.PONTUACOES));
+                } catch (IOException ex) {
+                    Logger.getLogger(Arranque.class.getName()).log(Level.WARNING, "Não foi possível abrir as pontuações.", ex);
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Corre uma tarefa noutra thread e cronometra-a.
+     *
+     * @param <T> Tipo do resultado.
+     * @param nome Nome da fase.
+     * @param tarefa Tarefa a correr.
+     * @return O resultado futuro da tarefa.
+     */
+    private <T> Future<T> emParalelo(final String nome, final Callable<T> tarefa) {
+        return pool.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long t = agora();
+                try {
+                    return tarefa.call();
+                } finally {
+                    fase(nome, t);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return Instante actual, para marcar o início de uma fase.
+     */
+    long agora() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Regista uma fase que acabou agora.
+     *
+     * @param nome Nome da fase.
+     * @param desde Instante, dado pelo <code>agora()</code>, em que a fase
+     * começou.
+     */
+    void fase(String nome, long desde) {
+        long fim = System.nanoTime();
+        String linha = String.format("  %-22s +%5d ms  %5d ms  [%s]", nome, (desde - inicio) / 1000000,
+                (fim - desde) / 1000000, Thread.currentThread().getName());
+        synchronized (fases) {
+            fases.add(linha);
+        }
+    }
+
+    /**
+     * @return O nome da classe do LookAndFeel do sistema, já carregada.
+     */
+    String getLookAndFeel() {
+        return esperar(lookAndFeel, UIManager.getSystemLookAndFeelClassName());
+    }
+
+    /**
+     * @return A Simulacao do primeiro nível.
+     */
+    Simulacao getSimulacao() {
+        return esperar(simulacao, null);
+    }
+
+    /**
+     * @return A abertura do ficheiro das pontuações, cujo resultado é null se
+     * não tiver sido possível abri-lo.
+     */
+    Future<Pontuacoes> getPontuacoes() {
+        return pontuacoes;
+    }
+
+    /**
+     * @return A música de fundo, aberta ou ainda a abrir.
+     */
+    Musica getMusica() {
+        return musica;
+    }
+
+    /**
+     * Espera pelo resultado de uma tarefa paralela.
+     *
+     * @param <T> Tipo do resultado.
+     * @param futuro Resultado futuro da tarefa.
+     * @param seFalhar Valor a devolver se a tarefa falhar.
+     * @return O resultado da tarefa.
+     */
+    private <T> T esperar(Future<T> futuro, T seFalhar) {
+        try {
+            return futuro.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.getLogger(Arranque.class.getName()).log(Level.SEVERE, null, ex.getCause());
+        }
+        return seFalhar;
+    }
+
+    /**
+     * Marca o primeiro frame pintado. O relatório é registado quando as
+     * tarefas paralelas acabarem.
+     */
+    void primeiroFrame() {
+        final long primeiroFrame = System.nanoTime() - inicio;
+        pool.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    musicaPreparada.get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    // A Musica volta a tentar abrir a música e regista o erro.
+                }
+                StringBuilder relatorio = new StringBuilder("Arranque (fase, início, duração, thread):\n");
+                synchronized (fases) {
+                    for (String fase : fases) {
+                        relatorio.append(fase).append('\n');
+                    }
+                }
+                relatorio.append("  primeiro frame: ").append(primeiroFrame / 1000000).append(" ms depois do main, ")
+                        .append(primeiroFrame / 1000000 + arranqueJVM).append(" ms depois do arranque da JVM");
+                Logger.getLogger(Arranque.class.getName()).info(relatorio.toString());
+            }
+        });
+        pool.shutdown();
+    }
+}
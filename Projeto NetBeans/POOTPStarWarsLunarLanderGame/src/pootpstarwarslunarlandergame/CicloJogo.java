@@ -0,0 +1,216 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ciclo de jogo com passo fixo para a física e desenho desacoplado. Corre numa
+ * thread própria: a Simulacao avança sempre com o mesmo intervalo (por exemplo
+ * 120 vezes por segundo) e o desenho é pedido à frequência do ecrã, com a
+ * fracção do tick seguinte já decorrida para se poder interpolar a posição da
+ * nave. Se a máquina se atrasar a física recupera os ticks em falta, até um
+ * limite, sem desenhar os estados intermédios. A física pode ser em vírgula
+ * flutuante ou, para ser igual em qualquer máquina, em vírgula fixa.
+ * <p>
+ * Parar o ciclo e a nave aterrar disputam o mesmo indicador: só um dos dois o
+ * consegue mudar, pelo que uma aterragem no tick em que o ciclo é parado é
+ * descartada e o consumidor não recebe o fim de nível.
+ *
+ * @author C.M.P.Soares
+ * @see Simulacao#step(double)
+ * @see Simulacao#stepFixo(int)
+ */
+class CicloJogo implements Runnable {
+
+    /**
+     * Interface de quem consome o ciclo de jogo. Os métodos são chamados na
+     * thread do ciclo, e não na thread do Swing.
+     */
+    interface Consumidor {
+
+        /**
+         * Passa para a simulação o que o jogador pediu desde o tick anterior.
+         * É chamado no início de cada tick.
+         *
+         * @param simulacao A simulação que vai avançar.
+         */
+        void entrada(Simulacao simulacao);
+
+        /**
+         * Pede o desenho do estado actual.
+         *
+         * @param simulacao A simulação a desenhar.
+         * @param alfa Fracção, entre 0 e 1, do tick seguinte já decorrida.
+         */
+        void desenhar(Simulacao simulacao, double alfa);
+
+        /**
+         * Avisa que a nave aterrou e que o ciclo terminou.
+         *
+         * @param simulacao A simulação que terminou.
+         */
+        void fimDeNivel(Simulacao simulacao);
+    }
+
+    /**
+     * Máximo de tempo em atraso, em nanosegundos, que a física tenta
+     * recuperar de uma vez.
+     */
+    private static final long ATRASO_MAXIMO = 250000000L;
+    /**
+     * A simulação que este ciclo faz avançar.
+     */
+    private final Simulacao simulacao;
+    /**
+     * Quem desenha e trata do fim de nível.
+     */
+    private final Consumidor consumidor;
+    /**
+     * Duração de um tick da física, em nanosegundos.
+     */
+    private final long nanosPorTick;
+    /**
+     * Duração de um tick da física, em segundos.
+     */
+    private final double dt;
+    /**
+     * Ticks da física por segundo.
+     */
+    private final int frequenciaFisica;
+    /**
+     * Indica se a física é feita em vírgula fixa.
+     */
+    private final boolean fixa;
+    /**
+     * Intervalo entre desenhos, em nanosegundos.
+     */
+    private final long nanosPorFrame;
+    /**
+     * Indica se o ciclo deve continuar a correr.
+     */
+    private final AtomicBoolean aCorrer = new AtomicBoolean();
+    /**
+     * Thread em que o ciclo está a correr.
+     */
+    private Thread thread;
+
+    /**
+     * Construtor obrigatório para criar o ciclo de jogo.
+     *
+     * @param simulacao A simulação a fazer avançar.
+     * @param frequenciaFisica Ticks da física por segundo.
+     * @param fixa 'true' para a física ser feita em vírgula fixa.
+     * @param frequenciaDesenho Desenhos por segundo.
+     * @param consumidor Quem desenha e trata do fim de nível.
+     */
+    CicloJogo(Simulacao simulacao, int frequenciaFisica, boolean fixa, int frequenciaDesenho, Consumidor consumidor) {
+        this.simulacao = simulacao;
+        this.consumidor = consumidor;
+        this.nanosPorTick = 1000000000L / frequenciaFisica;
+        this.dt = 1.0 / frequenciaFisica;
+        this.frequenciaFisica = frequenciaFisica;
+        this.fixa = fixa;
+        this.nanosPorFrame = 1000000000L / frequenciaDesenho;
+    }
+
+    /**
+     * Inicia o ciclo numa thread nova.
+     */
+    void start() {
+        aCorrer.set(true);
+        thread = new Thread(this, "CicloJogo");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Pára o ciclo e espera que a thread termine o tick em que estiver, para
+     * a Simulacao poder ser lida logo a seguir sem estar a meio de um passo.
+     * Chamado de dentro do próprio consumidor não espera, para não ficar à
+     * espera de si mesmo.
+     *
+     * @return 'true' se o ciclo estava a correr, 'false' se já tinha parado,
+     * por exemplo porque a nave aterrou e o fim de nível já foi pedido.
+     */
+    boolean stop() {
+        boolean estavaACorrer = aCorrer.getAndSet(false);
+        if (thread == null || thread == Thread.currentThread()) {
+            return estavaACorrer;
+        }
+        LockSupport.unpark(thread);
+        boolean interrompida = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrompida = true;
+            }
+        }
+        if (interrompida) {
+            Thread.currentThread().interrupt();
+        }
+        return estavaACorrer;
+    }
+
+    /**
+     * @return 'true' se o ciclo está a correr e 'false' caso contrário.
+     */
+    boolean isRunning() {
+        return aCorrer.get();
+    }
+
+    /**
+     * O ciclo propriamente dito: acumula o tempo decorrido, corre todos os
+     * ticks da física que couberem nele e desenha quando chegar a hora do
+     * próximo frame, dormindo até ao evento seguinte.
+     */
+    @Override
+    public void run() {
+        long anterior = System.nanoTime();
+        long proximoFrame = anterior;
+        long acumulado = 0;
+
+        while (aCorrer.get()) {
+            long agora = System.nanoTime();
+            acumulado = acumulado + (agora - anterior);
+            anterior = agora;
+            if (acumulado > ATRASO_MAXIMO) {
+                acumulado = ATRASO_MAXIMO;
+            }
+
+            while (acumulado >= nanosPorTick && aCorrer.get()) {
+                acumulado = acumulado - nanosPorTick;
+                long inicioTick = System.nanoTime();
+                Object evento = EventosJfr.iniciarTick();
+                consumidor.entrada(simulacao);
+                boolean aterrou = fixa ? simulacao.stepFixo(frequenciaFisica) : simulacao.step(dt);
+                EventosJfr.terminarTick(evento, simulacao, aterrou);
+                MetricasJogo.get().tick(System.nanoTime() - inicioTick);
+                if (aterrou) {
+                    if (!aCorrer.compareAndSet(true, false)) {
+                        return;
+                    }
+                    consumidor.desenhar(simulacao, 1);
+                    consumidor.fimDeNivel(simulacao);
+                    return;
+                }
+            }
+
+            if (agora >= proximoFrame) {
+                consumidor.desenhar(simulacao, (double) acumulado / nanosPorTick);
+                proximoFrame = proximoFrame + nanosPorFrame;
+                if (proximoFrame < agora) {
+                    proximoFrame = agora + nanosPorFrame;
+                }
+            }
+
+            long espera = Math.min(nanosPorTick - acumulado, proximoFrame - System.nanoTime());
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+            }
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+
+/**
+ * Classe que desenha as naves do jogo. Cada tipo de nave é desenhado uma única
+ * vez, com as primitivas originais, para uma imagem compatível com o ecrã
+ * (sprite) que depois é só copiada para a posição da nave em cada frame. Uma
+ * imagem compatível é guardada pelo Java2D na memória gráfica, por isso a cópia
+ * é muito mais barata que as dezenas de chamadas de desenho de cada nave. As
+ * sprites só são refeitas quando muda a configuração gráfica do ecrã, e com
+ * ela a escala (DPI); o tamanho do painel não interessa porque as naves são
+ * desenhadas com medidas fixas em pixels.
+ *
+ * @author C.M.P.Soares
+ * @see Nave#NAVE_EASY
+ */
+class DesenhoNave {
+
+    /**
+     * Largura, em pixels, da sprite de qualquer nave.
+     */
+    static final int LARGURA = 60;
+    /**
+     * Altura, em pixels, da sprite de qualquer nave.
+     */
+    static final int ALTURA = 56;
+    /**
+     * Posição horizontal, dentro da sprite, do ponto de referência da nave
+     * (o ponto que nas primitivas é o centro do painel).
+     */
+    static final int ORIGEM_X = 24;
+    /**
+     * Posição vertical, dentro da sprite, do ponto de referência da nave.
+     */
+    static final int ORIGEM_Y = 2;
+    /**
+     * Sprites já desenhadas, indexadas pelo tipo de nave.
+     */
+    private final BufferedImage[] sprites = new BufferedImage[Nave.NAVE_VERY_HARD + 1];
+    /**
+     * Configuração gráfica para a qual as sprites foram criadas.
+     */
+    private GraphicsConfiguration configuracaoSprites;
+    /**
+     * Escala (DPI) para a qual as sprites foram criadas.
+     */
+    private double escalaSprites = 1;
+
+    /**
+     * Desenha a nave com o ponto de referência em (x, y), copiando a sprite
+     * do tipo de nave indicado. Se ainda não existir sprite para a
+     * configuração gráfica do destino esta é criada agora.
+     *
+     * @param g Onde se vai desenhar a nave.
+     * @param x Posição horizontal do ponto de referência da nave.
+     * @param y Posição vertical do topo da nave.
+     * @param tipo Tipo de nave a desenhar.
+     */
+    void desenhar(Graphics2D g, int x, int y, int tipo) {
+        BufferedImage sprite = getSprite(g.getDeviceConfiguration(), tipo);
+        if (escalaSprites == 1) {
+            g.drawImage(sprite, x - ORIGEM_X, y - ORIGEM_Y, null);
+        } else {
+            g.drawImage(sprite, x - ORIGEM_X, y - ORIGEM_Y, LARGURA, ALTURA, null);
+        }
+    }
+
+    /**
+     * Devolve a sprite de um tipo de nave, refazendo a cache se a
+     * configuração gráfica mudou.
+     *
+     * @param configuracao Configuração gráfica onde a sprite vai ser usada.
+     * @param tipo Tipo de nave.
+     * @return A sprite do tipo de nave pedido.
+     */
+    BufferedImage getSprite(GraphicsConfiguration configuracao, int tipo) {
+        if (configuracao != configuracaoSprites) {
+            for (int i = 0; i < sprites.length; i++) {
+                sprites[i] = null;
+            }
+            configuracaoSprites = configuracao;
+            escalaSprites = escalaDe(configuracao);
+        }
+        if (tipo < Nave.NAVE_EASY || tipo > Nave.NAVE_VERY_HARD) {
+            tipo = Nave.NAVE_EASY;
+        }
+        if (sprites[tipo] == null) {
+            sprites[tipo] = criarSprite(configuracao, escalaSprites, tipo);
+        }
+        return sprites[tipo];
+    }
+
+    /**
+     * @param configuracao Configuração gráfica do destino.
+     * @return A escala do ecrã (1 num ecrã normal, 2 num ecrã HiDPI).
+     */
+    private static double escalaDe(GraphicsConfiguration configuracao) {
+        if (configuracao == null) {
+            return 1;
+        }
+        AffineTransform transformacao = configuracao.getDefaultTransform();
+        return Math.max(1, transformacao.getScaleX());
+    }
+
+    /**
+     * Desenha uma vez as primitivas de uma nave para uma imagem nova.
+     *
+     * @param configuracao Configuração gráfica do destino, ou null para uma
+     * imagem normal ARGB.
+     * @param escala Escala do ecrã.
+     * @param tipo Tipo de nave.
+     * @return A sprite da nave.
+     */
+    private static BufferedImage criarSprite(GraphicsConfiguration configuracao, double escala, int tipo) {
+        int largura = (int) Math.ceil(LARGURA * escala);
+        int altura = (int) Math.ceil(ALTURA * escala);
+        BufferedImage sprite;
+        if (configuracao != null) {
+            sprite = configuracao.createCompatibleImage(largura, altura, Transparency.TRANSLUCENT);
+        } else {
+            sprite = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g2 = sprite.createGraphics();
+        g2.scale(escala, escala);
+        desenharPrimitivas(g2, ORIGEM_X, ORIGEM_Y, tipo);
+        g2.dispose();
+        return sprite;
+    }
+
+    /**
+     * Desenha a nave directamente com as primitivas, conforme o tipo de nave.
+     * É o desenho original das naves e só é usado para criar as sprites.
+     *
+     * @param g2 Onde se vai desenhar a nave.
+     * @param x Posição horizontal do ponto de referência da nave.
+     * @param y Posição vertical do topo da nave.
+     * @param tipo Tipo de nave a desenhar.
+     */
+    static void desenharPrimitivas(Graphics2D g2, int x, int y, int tipo) {
+        if (tipo == Nave.NAVE_VERY_HARD) {
+            //Desenho Principal:
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.fillOval(x, y + 1, 6, 30);
+            g2.drawOval(x, y + 1, 6, 30);
+
+            g2.setColor(Color.DARK_GRAY);
+            g2.fillOval(x + 2, y + 4, 2, 20);
+            g2.drawOval(x + 2, y + 4, 2, 20);
+
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.fillOval(x - 1, y + 9, 8, 30);
+            g2.drawOval(x - 1, y + 9, 8, 30);
+            g2.fillRoundRect(x + 1, y + 10, 4, 30, 5, 5);
+            g2.drawRoundRect(x + 1, y + 10, 4, 30, 5, 5);
+
+            g2.setColor(Color.DARK_GRAY);
+            g2.drawRoundRect(x + 1, y + 17, 4, 10, 5, 5);
+
+            //Arma Direita:
+            g2.setColor(Color.GRAY);
+            g2.drawRect(x + 24, y + 14, 3, 2);
+            g2.fillRoundRect(x + 25, y, 2, 16, 2, 2);
+
+            //Asa Direita:
+            g2.setColor(Color.RED);
+            g2.drawRoundRect(x + 8, y + 12, 4, 3, 2, 2);
+            g2.fillRoundRect(x + 8, y + 12, 4, 3, 2, 2);
+            g2.drawRoundRect(x + 24, y + 15, 4, 3, 2, 2);
+            g2.fillRoundRect(x + 24, y + 15, 4, 3, 2, 2);
+
+            g2.setColor(Color.LIGHT_GRAY);
+            GeneralPath gp = new GeneralPath();
+            gp.moveTo((float) (x + 8), (float) (y + 14));
+            gp.lineTo((float) (x + 25), (float) (y + 15));
+            gp.lineTo((float) (x + 25), (float) (y + 19));
+            gp.lineTo((float) (x + 8), (float) (y + 23));
+            gp.closePath();
+            g2.draw(gp);
+            g2.fill(gp);
+
+            g2.setColor(Color.GRAY);
+            g2.drawRect(x + 9, y + 17, 2, 8);
+            g2.fillRoundRect(x + 9, y + 17, 2, 10, 2, 2);
+
+            //Arma Esquerda:
+            g2.setColor(Color.GRAY);
+            g2.drawRect(x - 20, y + 14, 3, 2);
+            g2.fillRoundRect(x - 19, y, 2, 16, 2, 2);
+
+            //Asa Esquerda:
+            g2.setColor(Color.RED);
+            g2.drawRoundRect(x - 6, y + 12, 4, 3, 2, 2);
+            g2.fillRoundRect(x - 6, y + 12, 4, 3, 2, 2);
+            g2.drawRoundRect(x - 22, y + 15, 4, 3, 2, 2);
+            g2.fillRoundRect(x - 22, y + 15, 4, 3, 2, 2);
+
+            g2.setColor(Color.LIGHT_GRAY);
+            gp = new GeneralPath();
+            gp.moveTo((float) (x - 2), (float) (y + 14));
+            gp.lineTo((float) (x - 19), (float) (y + 15));
+            gp.lineTo((float) (x - 19), (float) (y + 19));
+            gp.lineTo((float) (x - 2), (float) (y + 23));
+            gp.closePath();
+            g2.draw(gp);
+            g2.fill(gp);
+
+            g2.setColor(Color.GRAY);
+            g2.drawRect(x - 5, y + 17, 2, 8);
+            g2.fillRoundRect(x - 5, y + 17, 2, 10, 2, 2);
+
+            //Details:
+            g2.setColor(Color.DARK_GRAY);
+            g2.drawRect(x + 8, y + 14, 4, 3);
+            g2.drawRect(x - 6, y + 14, 4, 3);
+
+            g2.setColor(Color.GRAY);
+            gp = new GeneralPath();
+            gp.moveTo((float) (x + 5), (float) (y + 27));
+            gp.lineTo((float) (x + 6), (float) (y + 29));
+            gp.lineTo((float) (x + 4), (float) (y + 40));
+            gp.closePath();
+            g2.draw(gp);
+
+            gp = new GeneralPath();
+            gp.moveTo((float) (x + 1), (float) (y + 27));
+            gp.lineTo((float) x, (float) (y + 29));
+            gp.lineTo((float) (x + 2), (float) (y + 40));
+            gp.closePath();
+            g2.draw(gp);
+
+        } else if (tipo == Nave.NAVE_HARD) {
+            //Desenho Principal: 
+            g2.setColor(Color.GRAY);
+            g2.fillRect(x + 7, y + 8, 7, 2);
+            g2.drawRect(x + 7, y + 8, 7, 2);
+
+            GeneralPath gp = new GeneralPath();
+            gp.moveTo((float) (x - 5), (float) (y + 10));
+            gp.lineTo((float) (x - 1), (float) y);
+            gp.lineTo((float) (x + 4), (float) y);
+            gp.lineTo((float) (x + 4), (float) (y + 22));
+            gp.lineTo((float) (x - 5), (float) (y + 22));
+            gp.closePath();
+            g2.draw(gp);
+            g2.fill(gp);
+
+            gp = new GeneralPath();
+            gp.moveTo((float) (x + 26), (float) (y + 10));
+            gp.lineTo((float) (x + 22), (float) y);
+            gp.lineTo((float) (x + 17), (float) y);
+            gp.lineTo((float) (x + 17), (float) (y + 22));
+            gp.lineTo((float) (x + 26), (float) (y + 22));
+            g2.draw(gp);
+            g2.fill(gp);
+
+            g2.fillOval(x - 5, y + 10, 30, 30);
+            g2.drawOval(x - 5, y + 10, 30, 30);
+
+            //CockPit:
+            g2.fillOval(x + 28, y + 8, 4, 9);
+            g2.drawOval(x + 28, y + 8, 4, 9);
+            g2.fillOval(x + 24, y + 13, 7, 5);
+            g2.drawOval(x + 24, y + 13, 7, 5);
+
+            //Detalhe Cockpit:
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.fillOval(x + 29, y + 9, 3, 2);
+            g2.drawOval(x + 29, y + 9, 3, 2);
+
+            //Details:
+            //Bolinhas de baixo:
+            g2.setColor(Color.DARK_GRAY);
+            g2.fillOval(x + 3, y + 31, 3, 3);
+            g2.drawOval(x + 3, y + 31, 3, 3);
+            g2.fillOval(x + 9, y + 32, 3, 3);
+            g2.drawOval(x + 9, y + 32, 3, 3);
+            g2.fillOval(x + 15, y + 31, 3, 3);
+            g2.drawOval(x + 15, y + 31, 3, 3);
+
+            //Bolinhas do meio:
+            g2.fillOval(x + 4, y + 26, 3, 3);
+            g2.drawOval(x + 4, y + 26, 3, 3);
+            g2.fillOval(x + 9, y + 27, 3, 3);
+            g2.drawOval(x + 9, y + 27, 3, 3);
+            g2.fillOval(x + 14, y + 26, 3, 3);
+            g2.drawOval(x + 14, y + 26, 3, 3);
+
+            //Bolinhas do lado Esquerdo:
+            g2.fillOval(x, y + 3, 3, 3);
+            g2.drawOval(x, y + 3, 3, 3);
+            g2.fillOval(x + 1, y + 13, 3, 3);
+            g2.drawOval(x + 1, y + 13, 3, 3);
+
+            //Bolinhas do lado Direito:
+            g2.fillOval(x + 18, y + 3, 3, 3);
+            g2.drawOval(x + 18, y + 3, 3, 3);
+            g2.fillOval(x + 17, y + 13, 3, 3);
+            g2.drawOval(x + 17, y + 13, 3, 3);
+
+            //Circulo Central:
+            g2.drawOval(x + 7, y + 17, 7, 7);
+
+        } else if (tipo == Nave.NAVE_MEDIUM) {
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.fillOval(x, y, 14, 40);
+            g2.drawOval(x, y, 14, 40);
+            g2.fillOval(x - 5, y + 30, 5, 20);
+            g2.drawOval(x - 5, y + 30, 5, 20);
+            g2.fillOval(x + 15, y + 30, 5, 20);
+            g2.drawOval(x + 15, y + 30, 5, 20);
+            g2.fillOval(x - 5, y + 30, 25, 15);
+            g2.drawOval(x - 5, y + 30, 25, 15);
+            g2.setColor(Color.WHITE);
+            g2.fillOval(x + 3, y + 15, 8, 2);
+            g2.drawOval(x + 3, y + 15, 8, 2);
+
+        } else {
+            g2.setColor(Color.YELLOW);
+            g2.fillOval(x, y, 9, 40);
+            g2.drawOval(x, y, 9, 40);
+            g2.fillOval(x - 8, y + 3, 5, 25);
+            g2.drawOval(x - 8, y + 3, 5, 25);
+            g2.fillOval(x + 12, y + 3, 5, 25);
+            g2.drawOval(x + 12, y + 3, 5, 25);
+            g2.fillOval(x - 8, y + 10, 25, 5);
+            g2.drawOval(x - 8, y + 10, 25, 5);
+
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.fillOval(x + 1, y, 7, 10);
+            g2.drawOval(x + 1, y, 7, 10);
+            g2.fillOval(x - 8, y + 3, 5, 10);
+            g2.drawOval(x - 8, y + 3, 5, 10);
+            g2.fillOval(x + 12, y + 3, 5, 10);
+            g2.drawOval(x + 12, y + 3, 5, 10);
+            g2.fillOval(x - 8, y + 7, 25, 2);
+            g2.drawOval(x - 8, y + 7, 25, 2);
+
+            g2.setColor(Color.DARK_GRAY);
+            g2.fillOval(x + 2, y + 6, 5, 14);
+            g2.drawOval(x + 2, y + 6, 5, 14);
+
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+/**
+ * Fotografia imutável do estado de um nível, com o que o painel de controlo e
+ * a animação precisam de mostrar. É criada na thread da física e lida na
+ * thread do Swing; como os campos são todos final, pode passar de uma para a
+ * outra por uma simples referência atómica, sem locks.
+ *
+ * @author C.M.P.Soares
+ * @see Nivel
+ * @see Simulacao
+ */
+final class EstadoNivel {
+
+    /**
+     * Altitude da nave.
+     */
+    private final int altitude;
+    /**
+     * Combustível que a nave ainda tem disponível.
+     */
+    private final int combustivel;
+    /**
+     * Velocidade da nave.
+     */
+    private final int velocidade;
+    /**
+     * Velocidade máxima para se conseguir passar de nível.
+     */
+    private final int velocidadeMaxima;
+    /**
+     * Percentagem do nível, já interpolada para o desenho.
+     */
+    private final double percentNivel;
+
+    /**
+     * Construtor que fotografa o estado de uma Simulacao.
+     *
+     * @param simulacao Simulação a fotografar.
+     * @param alfa Fracção, entre 0 e 1, do tick seguinte já decorrida.
+     */
+    EstadoNivel(Simulacao simulacao, double alfa) {
+        altitude = simulacao.getAltitude();
+        combustivel = simulacao.getCombustivel();
+        velocidade = simulacao.getVelocidadeActual();
+        velocidadeMaxima = simulacao.getVelocidadeMaxima();
+        percentNivel = simulacao.getPercentNivelInterpolado(alfa);
+    }
+
+    /**
+     * @return Altitude da nave.
+     */
+    int getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * @return Combustível que a nave ainda tem disponível.
+     */
+    int getCombustivel() {
+        return combustivel;
+    }
+
+    /**
+     * @return Velocidade da nave.
+     */
+    int getVelocidade() {
+        return velocidade;
+    }
+
+    /**
+     * @return Velocidade máxima para se conseguir passar de nível.
+     */
+    int getVelocidadeMaxima() {
+        return velocidadeMaxima;
+    }
+
+    /**
+     * @return Percentagem do nível, já interpolada para o desenho.
+     */
+    double getPercentNivel() {
+        return percentNivel;
+    }
+}
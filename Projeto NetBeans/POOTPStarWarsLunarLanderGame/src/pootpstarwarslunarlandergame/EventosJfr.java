@@ -0,0 +1,179 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+/**
+ * Eventos do JDK Flight Recorder do jogo: ticks da física, desenhos dos
+ * painéis, começo e fim de níveis e jatos. Com eles uma gravação JFR de uma
+ * sessão real mostra, na mesma linha de tempo, o jogo, as pausas do GC e as
+ * esperas da thread do Swing.
+ * <p>
+ * Os eventos são ligados e desligados pelo ficheiro de configuração
+ * <code>lander.jfc</code>, por exemplo
+ * <code>-XX:StartFlightRecording:settings=lander.jfc,filename=jogo.jfr</code>.
+ * O JFR só existe a partir do JDK 11, por isso esta classe não o usa
+ * directamente: os eventos estão no GravadorJfr, numa pasta de código à
+ * parte (<code>jfr</code>) que só é compilada se o JDK tiver o
+ * <code>jdk.jfr</code>, e que aqui é carregado por reflexão uma única vez, se
+ * existir e a JVM tiver o JFR. Assim o jogo compila com qualquer JDK a partir
+ * do 7 e continua a correr em JVMs sem o JFR. Um evento desligado custa
+ * apenas uma leitura do estado do seu tipo, sem criar objectos.
+ *
+ * @author C.M.P.Soares
+ */
+final class EventosJfr {
+
+    /**
+     * Nome da classe com os eventos do JFR.
+     */
+    private static final String GRAVADOR_JFR = "pootpstarwarslunarlandergame.GravadorJfr";
+    /**
+     * Gravador dos eventos, ou null se o JFR ou o GravadorJfr não existirem.
+     */
+    private static final Gravador GRAVADOR = carregarGravador();
+
+    /**
+     * Classe só com métodos estáticos, não é para ser instanciada.
+     */
+    private EventosJfr() {
+    }
+
+    /**
+     * @return O GravadorJfr, ou null se esta JVM não tiver o JFR ou se o jogo
+     * tiver sido compilado sem ele.
+     */
+    private static Gravador carregarGravador() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (Gravador) Class.forName(GRAVADOR_JFR).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Começa o evento de um tick da física.
+     *
+     * @return O evento, a passar ao <code>terminarTick()</code>, ou null se
+     * estiver desligado.
+     */
+    static Object iniciarTick() {
+        return GRAVADOR != null ? GRAVADOR.iniciarTick() : null;
+    }
+
+    /**
+     * Termina e grava o evento de um tick da física.
+     *
+     * @param evento O evento devolvido pelo <code>iniciarTick()</code>.
+     * @param simulacao A simulação que avançou.
+     * @param aterrou 'true' se a nave aterrou neste tick.
+     */
+    static void terminarTick(Object evento, Simulacao simulacao, boolean aterrou) {
+        if (evento != null) {
+            GRAVADOR.terminarTick(evento, simulacao, aterrou);
+        }
+    }
+
+    /**
+     * Começa o evento do desenho de um painel.
+     *
+     * @return O evento, a passar ao <code>terminarDesenho()</code>, ou null
+     * se estiver desligado.
+     */
+    static Object iniciarDesenho() {
+        return GRAVADOR != null ? GRAVADOR.iniciarDesenho() : null;
+    }
+
+    /**
+     * Termina e grava o evento do desenho de um painel.
+     *
+     * @param evento O evento devolvido pelo <code>iniciarDesenho()</code>.
+     * @param componente Classe do componente desenhado.
+     */
+    static void terminarDesenho(Object evento, Class<?> componente) {
+        if (evento != null) {
+            GRAVADOR.terminarDesenho(evento, componente);
+        }
+    }
+
+    /**
+     * Grava o começo de um nível.
+     *
+     * @param simulacao A simulação do nível que vai começar.
+     */
+    static void novoNivel(Simulacao simulacao) {
+        if (GRAVADOR != null) {
+            GRAVADOR.novoNivel(simulacao);
+        }
+    }
+
+    /**
+     * Grava o fim de um nível.
+     *
+     * @param simulacao A simulação do nível que terminou.
+     */
+    static void fimNivel(Simulacao simulacao) {
+        if (GRAVADOR != null) {
+            GRAVADOR.fimNivel(simulacao);
+        }
+    }
+
+    /**
+     * Grava um jato.
+     *
+     * @param combustivel Combustível que sobrou.
+     * @param queimou 'false' se não havia combustível para o jato.
+     */
+    static void jato(int combustivel, boolean queimou) {
+        if (GRAVADOR != null) {
+            GRAVADOR.jato(combustivel, queimou);
+        }
+    }
+
+    /**
+     * Eventos gravados pelo GravadorJfr. Os métodos são os desta classe, sem
+     * o teste de o JFR existir.
+     */
+    interface Gravador {
+
+        /**
+         * @return Evento de tick começado, ou null se estiver desligado.
+         */
+        Object iniciarTick();
+
+        /**
+         * @param evento Evento de tick começado.
+         * @param simulacao A simulação que avançou.
+         * @param aterrou 'true' se a nave aterrou neste tick.
+         */
+        void terminarTick(Object evento, Simulacao simulacao, boolean aterrou);
+
+        /**
+         * @return Evento de desenho começado, ou null se estiver desligado.
+         */
+        Object iniciarDesenho();
+
+        /**
+         * @param evento Evento de desenho começado.
+         * @param componente Classe do componente desenhado.
+         */
+        void terminarDesenho(Object evento, Class<?> componente);
+
+        /**
+         * @param simulacao A simulação do nível que vai começar.
+         */
+        void novoNivel(Simulacao simulacao);
+
+        /**
+         * @param simulacao A simulação do nível que terminou.
+         */
+        void fimNivel(Simulacao simulacao);
+
+        /**
+         * @param combustivel Combustível que sobrou.
+         * @param queimou 'false' se não havia combustível para o jato.
+         */
+        void jato(int combustivel, boolean queimou);
+    }
+}
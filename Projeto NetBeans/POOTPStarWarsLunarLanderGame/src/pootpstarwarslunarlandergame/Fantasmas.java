@@ -0,0 +1,285 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Naves fantasma: as tentativas anteriores do mesmo nível, desenhadas
+ * translúcidas por cima do painel de jogo para o jogador poder correr contra
+ * elas. Cada tentativa é gravada tick a tick e, quando a nave aterra, passa a
+ * ser um fantasma; ao mudar de nível(level) ou de dificuldade os fantasmas
+ * são esquecidos.
+ * <p>
+ * Para poder haver centenas de fantasmas, a trajectória de cada um é só um
+ * <code>char[]</code> com a percentagem do nível em 16 bits por tick, e todos
+ * são desenhados de uma vez com a mesma sprite do DesenhoNave e um único
+ * AlphaComposite. Fantasmas na mesma linha de pixels são desenhados uma só
+ * vez, e se o desenho passar do orçamento de tempo o número de fantasmas
+ * desenhados baixa até voltar a caber nele.
+ *
+ * @author C.M.P.Soares
+ * @see DesenhoNave
+ */
+final class Fantasmas {
+
+    /**
+     * Número máximo de fantasmas guardados. Quando se chega a ele, cada
+     * tentativa nova substitui a mais antiga.
+     */
+    static final int MAXIMO = 512;
+    /**
+     * Número mínimo de fantasmas desenhados, mesmo fora do orçamento.
+     */
+    private static final int MINIMO = 32;
+    /**
+     * Tempo máximo, em nanosegundos, para desenhar os fantasmas num frame: um
+     * quarto de um frame a 60 Hz.
+     */
+    private static final long ORCAMENTO = 4000000L;
+    /**
+     * Valor guardado na trajectória para a percentagem 1 (nave no solo).
+     */
+    private static final int ESCALA = Character.MAX_VALUE;
+    /**
+     * Opacidade dos fantasmas.
+     */
+    private static final AlphaComposite TRANSLUCIDO = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.3f);
+    /**
+     * Trajectórias dos fantasmas, usadas como um buffer circular.
+     */
+    private final char[][] trajectorias = new char[MAXIMO][];
+    /**
+     * Número de fantasmas guardados.
+     */
+    private int numero;
+    /**
+     * Posição, nas trajectórias, onde vai ficar o próximo fantasma.
+     */
+    private int proximo;
+    /**
+     * Dificuldade do nível dos fantasmas guardados.
+     */
+    private int dificuldade = -1;
+    /**
+     * Nível(level) dos fantasmas guardados.
+     */
+    private int nivel = -1;
+    /**
+     * Trajectória da tentativa que está a ser jogada. Só a thread da física a
+     * escreve.
+     */
+    private char[] gravacao = new char[256];
+    /**
+     * Número de ticks já gravados na tentativa actual.
+     */
+    private int tamanhoGravacao;
+    /**
+     * Tick da tentativa actual, que diz onde vai cada fantasma.
+     */
+    private volatile int tick;
+    /**
+     * Número de fantasmas que cabem no orçamento de tempo.
+     */
+    private int limite = MAXIMO;
+    /**
+     * Marca, para cada linha de pixels, o último frame em que lá se desenhou
+     * um fantasma.
+     */
+    private int[] linhas = new int[0];
+    /**
+     * Número do frame actual, para as marcas das linhas.
+     */
+    private int frame;
+
+    /**
+     * Começa a gravar uma tentativa nova. Se o nível for outro os fantasmas
+     * guardados são esquecidos.
+     *
+     * @param dificuldade Dificuldade do nível.
+     * @param nivel Nível(level).
+     */
+    synchronized void iniciarNivel(int dificuldade, int nivel) {
+        if (dificuldade != this.dificuldade || nivel != this.nivel) {
+            Arrays.fill(trajectorias, null);
+            numero = 0;
+            proximo = 0;
+            this.dificuldade = dificuldade;
+            this.nivel = nivel;
+        }
+        tamanhoGravacao = 0;
+        tick = 0;
+    }
+
+    /**
+     * Grava a posição da nave no tick actual e avança o relógio dos
+     * fantasmas. Chamado na thread da física, uma vez por tick.
+     *
+     * @param percentNivel Percentagem do nível em que está a nave.
+     */
+    void gravar(double percentNivel) {
+        if (tamanhoGravacao == gravacao.length) {
+            gravacao = Arrays.copyOf(gravacao, gravacao.length * 2);
+        }
+        double percent = Math.max(0, Math.min(1, percentNivel));
+        gravacao[tamanhoGravacao] = (char) Math.round(percent * ESCALA);
+        tick = tamanhoGravacao;
+        tamanhoGravacao++;
+    }
+
+    /**
+     * Termina a tentativa actual, que passa a ser um fantasma.
+     */
+    synchronized void terminarNivel() {
+        if (tamanhoGravacao == 0) {
+            return;
+        }
+        trajectorias[proximo] = Arrays.copyOf(gravacao, tamanhoGravacao);
+        proximo = (proximo + 1) % MAXIMO;
+        if (numero < MAXIMO) {
+            numero++;
+        }
+        tamanhoGravacao = 0;
+    }
+
+    /**
+     * @return Número de fantasmas guardados.
+     */
+    synchronized int getNumero() {
+        return numero;
+    }
+
+    /**
+     * @return Tick da tentativa actual, que diz onde vai cada fantasma.
+     */
+    int getTick() {
+        return tick;
+    }
+
+    /**
+     * @return Número de fantasmas que cabem agora no orçamento de tempo, para
+     * ser guardado junto com o tick quando se pede um desenho.
+     */
+    synchronized int getLimite() {
+        return limite;
+    }
+
+    /**
+     * Calcula a área ocupada pelos fantasmas que seriam desenhados num tick,
+     * para o painel redesenhar só essa zona em vez de todo o painel. Escolhe
+     * os fantasmas como o <code>desenhar</code>, saltando as linhas
+     * repetidas, para a área ter todos os que lá vão ser desenhados.
+     *
+     * @param area Onde é guardada a área; fica vazia se não houver
+     * fantasmas.
+     * @param x Posição horizontal do ponto de referência das naves.
+     * @param altura Altura, em pixels, correspondente à percentagem 1.
+     * @param t Tick em que os fantasmas vão ser desenhados.
+     * @param limite Número máximo de fantasmas desenhados, o mesmo que vai
+     * ser passado ao <code>desenhar</code>.
+     */
+    synchronized void area(Rectangle area, int x, int altura, int t, int limite) {
+        int minimo = Integer.MAX_VALUE, maximo = Integer.MIN_VALUE;
+        if (numero > 0 && altura > 0) {
+            novoFrame(altura);
+            int contados = 0;
+            for (int k = 0; k < numero && contados < limite; k++) {
+                int y = posicao(k, altura, t);
+                if (linhas[y] != frame) {
+                    linhas[y] = frame;
+                    minimo = Math.min(minimo, y);
+                    maximo = Math.max(maximo, y);
+                    contados++;
+                }
+            }
+        }
+        if (minimo > maximo) {
+            area.setBounds(0, 0, 0, 0);
+        } else {
+            area.setBounds(x - DesenhoNave.ORIGEM_X, minimo - DesenhoNave.ORIGEM_Y, DesenhoNave.LARGURA, maximo - minimo + DesenhoNave.ALTURA);
+        }
+    }
+
+    /**
+     * Desenha os fantasmas no tick actual, dos mais recentes para os mais
+     * antigos, até ao limite que cabe no orçamento de tempo.
+     *
+     * @param g Onde se desenham os fantasmas.
+     * @param desenhoNave Cache das sprites das naves.
+     * @param x Posição horizontal do ponto de referência das naves.
+     * @param altura Altura, em pixels, correspondente à percentagem 1.
+     * @param tipo Tipo de nave a desenhar.
+     * @return Número de fantasmas desenhados.
+     */
+    int desenhar(Graphics2D g, DesenhoNave desenhoNave, int x, int altura, int tipo) {
+        return desenhar(g, desenhoNave, x, altura, tipo, tick, getLimite());
+    }
+
+    /**
+     * Desenha os fantasmas num tick dado e com um limite dado, por exemplo os
+     * mesmos para os quais se calculou a <code>area</code> a redesenhar.
+     *
+     * @param g Onde se desenham os fantasmas.
+     * @param desenhoNave Cache das sprites das naves.
+     * @param x Posição horizontal do ponto de referência das naves.
+     * @param altura Altura, em pixels, correspondente à percentagem 1.
+     * @param tipo Tipo de nave a desenhar.
+     * @param t Tick em que os fantasmas são desenhados.
+     * @param limite Número máximo de fantasmas desenhados.
+     * @return Número de fantasmas desenhados.
+     */
+    synchronized int desenhar(Graphics2D g, DesenhoNave desenhoNave, int x, int altura, int tipo, int t, int limite) {
+        if (numero == 0 || altura <= 0) {
+            return 0;
+        }
+        long inicio = System.nanoTime();
+        novoFrame(altura);
+        int desenhados = 0;
+        Composite anterior = g.getComposite();
+        g.setComposite(TRANSLUCIDO);
+        for (int k = 0; k < numero && desenhados < limite; k++) {
+            int y = posicao(k, altura, t);
+            if (linhas[y] != frame) {
+                linhas[y] = frame;
+                desenhoNave.desenhar(g, x, y, tipo);
+                desenhados++;
+            }
+        }
+        g.setComposite(anterior);
+        long duracao = System.nanoTime() - inicio;
+        if (duracao > ORCAMENTO) {
+            this.limite = Math.max(MINIMO, limite * 3 / 4);
+        } else if (duracao < ORCAMENTO / 2 && limite < MAXIMO) {
+            this.limite = Math.min(MAXIMO, limite + MINIMO);
+        }
+        return desenhados;
+    }
+
+    /**
+     * Começa um frame novo nas marcas das linhas de pixels.
+     *
+     * @param altura Altura, em pixels, correspondente à percentagem 1.
+     */
+    private void novoFrame(int altura) {
+        if (linhas.length <= altura) {
+            linhas = new int[altura + 1];
+        }
+        frame++;
+    }
+
+    /**
+     * @param k Fantasma, a contar do mais recente.
+     * @param altura Altura, em pixels, correspondente à percentagem 1.
+     * @param t Tick da posição.
+     * @return Linha de pixels do ponto de referência do fantasma no tick.
+     */
+    private int posicao(int k, int altura, int t) {
+        char[] trajectoria = trajectorias[(proximo - 1 - k + MAXIMO) % MAXIMO];
+        return (int) ((long) altura * trajectoria[Math.min(t, trajectoria.length - 1)] / ESCALA);
+    }
+}
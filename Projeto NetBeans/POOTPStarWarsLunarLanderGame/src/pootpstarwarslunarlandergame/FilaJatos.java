@@ -0,0 +1,97 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fila sem locks dos jatos pedidos pelo jogador, com o instante
+ * (<code>System.nanoTime()</code>) de cada pedido. Tem um só produtor, a
+ * thread do Swing onde chegam o botão e as teclas, e um só consumidor, a
+ * thread da física, que a esvazia no início de cada tick. Assim nenhum jato
+ * espera mais do que um tick e a latência entre o pedido e o efeito pode ser
+ * medida.
+ * <p>
+ * É um buffer circular de tamanho fixo: cada thread só escreve no seu
+ * índice, publicado com <code>lazySet</code>, e o produtor guarda a última
+ * posição lida do consumidor para não ter de a ler a cada pedido.
+ *
+ * @author C.M.P.Soares
+ * @see Nivel#hitJato()
+ */
+final class FilaJatos {
+
+    /**
+     * Número máximo de jatos à espera na fila (potência de 2).
+     */
+    static final int CAPACIDADE = 256;
+    /**
+     * Instantes dos pedidos, em nanosegundos.
+     */
+    private final long[] instantes = new long[CAPACIDADE];
+    /**
+     * Próxima posição a ler. Só o consumidor a escreve.
+     */
+    private final AtomicLong cabeca = new AtomicLong();
+    /**
+     * Próxima posição a escrever. Só o produtor a escreve.
+     */
+    private final AtomicLong cauda = new AtomicLong();
+    /**
+     * Última cabeça vista pelo produtor.
+     */
+    private long cabecaVista;
+    /**
+     * Pedidos perdidos por a fila estar cheia.
+     */
+    private volatile long perdidos;
+
+    /**
+     * Acrescenta um pedido de jato. Só pode ser chamado pelo produtor.
+     *
+     * @param instante Instante do pedido, dado pelo
+     * <code>System.nanoTime()</code>.
+     * @return 'false' se a fila estava cheia e o pedido se perdeu.
+     */
+    boolean oferecer(long instante) {
+        long posicao = cauda.get();
+        if (posicao - cabecaVista >= CAPACIDADE) {
+            cabecaVista = cabeca.get();
+            if (posicao - cabecaVista >= CAPACIDADE) {
+                perdidos++;
+                return false;
+            }
+        }
+        instantes[(int) posicao & (CAPACIDADE - 1)] = instante;
+        cauda.lazySet(posicao + 1);
+        return true;
+    }
+
+    /**
+     * Retira os pedidos à espera. Só pode ser chamado pelo consumidor.
+     *
+     * @param destino Array onde copiar os instantes dos pedidos, com pelo
+     * menos <code>CAPACIDADE</code> posições.
+     * @return Número de pedidos retirados.
+     */
+    int drenar(long[] destino) {
+        long inicio = cabeca.get();
+        long fim = cauda.get();
+        int n = (int) (fim - inicio);
+        for (int i = 0; i < n; i++) {
+            destino[i] = instantes[(int) (inicio + i) & (CAPACIDADE - 1)];
+        }
+        if (n > 0) {
+            cabeca.lazySet(fim);
+        }
+        return n;
+    }
+
+    /**
+     * @return Pedidos perdidos por a fila estar cheia.
+     */
+    long getPerdidos() {
+        return perdidos;
+    }
+}
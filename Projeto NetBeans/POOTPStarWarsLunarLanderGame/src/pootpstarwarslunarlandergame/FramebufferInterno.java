@@ -0,0 +1,145 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Imagem de resolução fixa onde se desenha a cena do jogo (fantasmas e nave)
+ * antes de ser copiada, com uma única chamada <code>drawImage</code>
+ * escalada, para o painel de jogo. A altura da imagem é sempre a mesma e a
+ * largura segue a proporção do painel, pelo que as naves ocupam a mesma
+ * fracção do painel em qualquer janela ou ecrã (incluindo HiDPI) e o custo de
+ * desenhar a cena não depende da resolução: só a cópia final é feita à
+ * resolução do ecrã.
+ * <p>
+ * A imagem é translúcida e limpa em cada frame, para o fundo arredondado do
+ * painel continuar a ser desenhado à resolução do ecrã por baixo dela. Sempre
+ * que há um ecrã a imagem é uma VolatileImage, que fica na memória gráfica:
+ * tanto o desenho da cena como a cópia escalada são feitos pela placa
+ * gráfica. Sem ecrã (por exemplo nos benchmarks) usa-se uma BufferedImage.
+ *
+ * @author C.M.P.Soares
+ * @see Opcoes#RENDER_INTERNO
+ */
+final class FramebufferInterno {
+
+    /**
+     * Altura, em pixels, da imagem interna.
+     */
+    private final int altura;
+    /**
+     * Valor de RenderingHints.KEY_INTERPOLATION usado ao escalar a imagem.
+     */
+    private final Object interpolacao;
+    /**
+     * A imagem interna, criada no primeiro frame e refeita quando muda a
+     * proporção do painel ou a configuração gráfica.
+     */
+    private Image imagem;
+    /**
+     * Configuração gráfica para a qual a imagem foi criada.
+     */
+    private GraphicsConfiguration configuracao;
+
+    /**
+     * Construtor obrigatório para criar a imagem interna.
+     *
+     * @param altura Altura, em pixels, da imagem interna.
+     * @param interpolacao Nome da interpolação usada ao escalar:
+     * "vizinho", "bilinear" ou "bicubico".
+     */
+    FramebufferInterno(int altura, String interpolacao) {
+        this.altura = altura;
+        this.interpolacao = interpolacaoDe(interpolacao);
+    }
+
+    /**
+     * @param nome Nome da interpolação.
+     * @return O valor de RenderingHints correspondente, bilinear se o nome
+     * for desconhecido.
+     */
+    private static Object interpolacaoDe(String nome) {
+        if ("vizinho".equalsIgnoreCase(nome)) {
+            return RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+        } else if ("bicubico".equalsIgnoreCase(nome)) {
+            return RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+        }
+        return RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+    }
+
+    /**
+     * Prepara a imagem interna para um frame, já limpa, com a proporção do
+     * destino.
+     *
+     * @param configuracao Configuração gráfica do destino, ou null para uma
+     * imagem normal ARGB.
+     * @param larguraDestino Largura do painel onde a imagem vai ser mostrada.
+     * @param alturaDestino Altura do painel onde a imagem vai ser mostrada.
+     * @return Onde se desenha a cena, com as dimensões da imagem interna. Tem
+     * de ser libertado com <code>dispose()</code>.
+     */
+    Graphics2D comecar(GraphicsConfiguration configuracao, int larguraDestino, int alturaDestino) {
+        int largura = Math.max(1, (int) Math.round((double) altura * larguraDestino / Math.max(1, alturaDestino)));
+        if (imagem == null || imagem.getWidth(null) != largura || configuracao != this.configuracao
+                || (imagem instanceof VolatileImage && ((VolatileImage) imagem).validate(configuracao) == VolatileImage.IMAGE_INCOMPATIBLE)) {
+            if (imagem != null) {
+                imagem.flush();
+            }
+            if (configuracao != null) {
+                imagem = configuracao.createCompatibleVolatileImage(largura, altura, Transparency.TRANSLUCENT);
+            } else {
+                imagem = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_ARGB);
+            }
+            this.configuracao = configuracao;
+        }
+        Graphics2D g = (Graphics2D) imagem.getGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, largura, altura);
+        g.setComposite(AlphaComposite.SrcOver);
+        return g;
+    }
+
+    /**
+     * Copia a imagem interna, escalada com a interpolação escolhida, para todo
+     * o destino. Se o conteúdo da VolatileImage se perdeu entretanto o frame
+     * não é copiado; o seguinte volta a desenhar a cena.
+     *
+     * @param g Onde se mostra a imagem.
+     * @param larguraDestino Largura do destino.
+     * @param alturaDestino Altura do destino.
+     */
+    void mostrar(Graphics2D g, int larguraDestino, int alturaDestino) {
+        if (imagem instanceof VolatileImage && ((VolatileImage) imagem).contentsLost()) {
+            return;
+        }
+        Object anterior = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolacao);
+        g.drawImage(imagem, 0, 0, larguraDestino, alturaDestino, null);
+        if (anterior != null) {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, anterior);
+        }
+    }
+
+    /**
+     * @return Largura, em pixels, da imagem interna do último frame.
+     */
+    int getLargura() {
+        return imagem.getWidth(null);
+    }
+
+    /**
+     * @return Altura, em pixels, da imagem interna.
+     */
+    int getAltura() {
+        return altura;
+    }
+}
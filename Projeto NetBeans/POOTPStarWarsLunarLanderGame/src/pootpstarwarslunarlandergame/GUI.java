@@ -3,33 +3,39 @@
  */
 package pootpstarwarslunarlandergame;
 
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
 import java.awt.Dimension;
 import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.FlowLayout;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GridLayout;
+import java.awt.ImageCapabilities;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.geom.GeneralPath;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferStrategy;
 
 import java.io.File;
 import java.io.IOException;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
-
+import javax.swing.AbstractAction;
+import javax.swing.Action;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenuBar;
@@ -39,6 +45,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JTextField;
+import javax.swing.KeyStroke;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
@@ -91,44 +98,67 @@ public class GUI extends JFrame {
      */
     private int dificuldadeJogo = Nave.NAVE_EASY;
     /**
-     * Apontador para uma instância de um Clip utilizado para poder colocar
-     * musica.
+     * Música de fundo, tocada em streaming depois de a janela aparecer.
+     *
+     * @see Musica
+     */
+    private final Musica musica;
+    /**
+     * Arranque em curso, até ser pintado o primeiro frame.
+     *
+     * @see Arranque
+     */
+    private Arranque arranque;
+    /**
+     * Tentativas anteriores do nível actual, desenhadas como fantasmas.
+     *
+     * @see Fantasmas
+     */
+    private final Fantasmas fantasmas = new Fantasmas();
+    /**
+     * Gravação da sessão, com todos os níveis começados desde que o jogo
+     * abriu, mesmo depois de um jogo novo ou de uma mudança de dificuldade.
+     *
+     * @see Replay
+     */
+    private final Replay replay = new Replay(System.nanoTime(), Opcoes.FISICA_HZ, Opcoes.FISICA_FIXA);
+    /**
+     * Fumo dos jatos, faíscas e poeira do nível actual.
+     *
+     * @see Particulas
+     */
+    private final Particulas particulas = new Particulas();
+    /**
+     * Pontuações guardadas, abertas em paralelo durante o arranque.
      *
-     * @see Clip
+     * @see Pontuacoes
      */
-    private Clip clip;
+    private final Future<Pontuacoes> pontuacoes;
 
     /**
      * Construtor Obrigatório que inicializa o jogo para ela poder funcionar de
-     * forma independente.
+     * forma independente. Tem de ser chamado na thread do Swing.
+     *
+     * @param arranque Arranque com o trabalho paralelo já em curso.
      */
-    GUI() {
+    GUI(Arranque arranque) {
         super("StarWars Lunar Lander!");
-
-        //Definir logo nivel 'Default'.
-        this.nivelJogado = new Nivel(dificuldadeJogo, this);
-
-        //Adicionar uma musiquinha...
-        try {
-            File soundFile = new File("StarWarsTheme.wav");
-            //Proximo comando para possíveis debugs.
-            //System.out.println(soundFile.getCanonicalPath());
-            AudioInputStream audioIn = AudioSystem.getAudioInputStream(soundFile);
-            clip = AudioSystem.getClip();
-            clip.open(audioIn);
-            clip.loop(Clip.LOOP_CONTINUOUSLY);
-        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
-            System.err.println("Error initializing music");
-            Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, e);
-        }
-        //Fim da pequena brincadeira!
+        long t = arranque.agora();
+        this.arranque = arranque;
+        this.musica = arranque.getMusica();
+        this.pontuacoes = arranque.getPontuacoes();
 
         //Definir que assume o LookAndFeel de cada SO.
         try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            UIManager.setLookAndFeel(arranque.getLookAndFeel());
         } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | UnsupportedLookAndFeelException ex) {
             Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, ex);
         }
+        t = fimDeFase("lookAndFeel", t);
+
+        //Definir logo nivel 'Default'.
+        this.nivelJogado = new Nivel(arranque.getSimulacao(), this);
+        t = fimDeFase("nivel", t);
 
         //Definir propriedades principais do GUI(JFrame).
         setPreferredSize(new Dimension((SCREEN_DIMENSION.width * 7 / 14), (SCREEN_DIMENSION.height * 8 / 9)));
@@ -139,21 +169,57 @@ public class GUI extends JFrame {
         //Adicionar os componentes do GUI aop mesmo.
         guiMenuBar = new GUIMenuBar();
         setJMenuBar(guiMenuBar);
+        t = fimDeFase("menus", t);
 
         guiDashBoard = new GUIDashBoard();
         guiDashBoard.setPreferredSize(new Dimension(SCREEN_DIMENSION.width * 6 / 25, SCREEN_DIMENSION.height * 7 / 8));
+        t = fimDeFase("dashboard", t);
 
         guiAnimation = new GUIAnimation();
         guiAnimation.setPreferredSize(new Dimension(SCREEN_DIMENSION.width / 3, SCREEN_DIMENSION.height * 7 / 8));
 
         add(guiAnimation, BorderLayout.CENTER);
         add(guiDashBoard, BorderLayout.EAST);
+        t = fimDeFase("animacao", t);
 
         //Colocar tudo nos tamanho definidos
         pack();
         //Centrar e mostrar no ecrã.
         setLocationRelativeTo(null);
         setVisible(true);
+        fimDeFase("pack e setVisible", t);
+
+        //Adicionar uma musiquinha, já com a janela no ecrã...
+        musica.start();
+        //Fim da pequena brincadeira!
+    }
+
+    /**
+     * Regista no arranque uma fase da construção da janela.
+     *
+     * @param nome Nome da fase.
+     * @param desde Instante em que a fase começou.
+     * @return Instante em que a fase acabou, para ser o início da seguinte.
+     * @see Arranque#fase(String, long)
+     */
+    private long fimDeFase(String nome, long desde) {
+        arranque.fase(nome, desde);
+        return arranque.agora();
+    }
+
+    /**
+     * Pinta a janela e, na primeira vez, avisa o arranque de que o primeiro
+     * frame já está no ecrã.
+     *
+     * @param g O Graphics da janela.
+     */
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (arranque != null) {
+            arranque.primeiroFrame();
+            arranque = null;
+        }
     }
 
     /**
@@ -187,7 +253,7 @@ public class GUI extends JFrame {
          *
          * @see JMenuItem
          */
-        JMenuItem menuItemInic, menuItemSair;
+        JMenuItem menuItemInic, menuItemReplay, menuItemSuspender, menuItemRetomar, menuItemSair;
         /**
          * Os ButtonGroups são necessários para poder ser feita uma selecção da
          * dificuldade e do som.
@@ -269,6 +335,77 @@ public class GUI extends JFrame {
             som.add(somOff);
             selectSom.add(somOff);
 
+            //Ficheiro -> Guardar Replay:
+            menuItemReplay = new JMenuItem("Guardar Replay...");
+            menuItemReplay.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    JFileChooser escolha = new JFileChooser();
+                    escolha.setSelectedFile(new File("sessao.llrp"));
+                    if (escolha.showSaveDialog(getGUI()) == JFileChooser.APPROVE_OPTION) {
+                        try {
+                            getGUI().getReplay().guardar(escolha.getSelectedFile());
+                        } catch (IOException ex) {
+                            JOptionPane.showMessageDialog(getGUI(), "Não foi possível guardar o replay.", "Erro", JOptionPane.ERROR_MESSAGE);
+                            Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, ex);
+                        }
+                    }
+                }
+            });
+            //End Of Task
+
+            //Ficheiro -> Suspender Jogo:
+            menuItemSuspender = new JMenuItem("Suspender Jogo");
+            menuItemSuspender.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    if (!getGUI().nivelJogado.isGameRunning()) {
+                        JOptionPane.showMessageDialog(getGUI(), "Não há nenhum nível a decorrer.", "Suspender Jogo", JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                    }
+                    if (!getGUI().nivelJogado.stopLevel()) {
+                        //A nave aterrou antes de o ciclo parar: o fim de nível já foi pedido.
+                        return;
+                    }
+                    try {
+                        Instantaneo.guardar(getGUI().nivelJogado.getSimulacao(), new File(Opcoes.INSTANTANEO));
+                        JOptionPane.showMessageDialog(getGUI(), "Jogo suspenso.\nPodes retomá-lo mais tarde no menu Ficheiro.", "Suspender Jogo", JOptionPane.INFORMATION_MESSAGE);
+                    } catch (IOException ex) {
+                        JOptionPane.showMessageDialog(getGUI(), "Não foi possível suspender o jogo.", "Erro", JOptionPane.ERROR_MESSAGE);
+                        Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, ex);
+                        getGUI().nivelJogado.startLevel();
+                    }
+                }
+            });
+            //End Of Task
+
+            //Ficheiro -> Retomar Jogo:
+            menuItemRetomar = new JMenuItem("Retomar Jogo");
+            menuItemRetomar.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    Simulacao simulacao;
+                    try {
+                        simulacao = Instantaneo.carregar(new File(Opcoes.INSTANTANEO));
+                    } catch (IOException ex) {
+                        JOptionPane.showMessageDialog(getGUI(), "Não há nenhum jogo suspenso.", "Retomar Jogo", JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                    }
+                    if (getGUI().nivelJogado.isGameRunning()) {
+                        getGUI().nivelJogado.stopLevel();
+                    }
+                    dificuldadeJogo = simulacao.getDifficulty();
+                    JRadioButtonMenuItem[] botoes = {easy, medium, hard, veryHard};
+                    botoes[dificuldadeJogo - Nave.NAVE_EASY].setSelected(true);
+                    getGUI().nivelJogado = new Nivel(simulacao, getGUI());
+                    getGUI().updateGUIDashBoardTitle();
+                    getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
+                    getGUI().updateSpaceShip(simulacao.getPercentNivel());
+                    getGUI().nivelJogado.startLevel();
+                }
+            });
+            //End Of Task
+
             //Ficheiro -> Sair:
             menuItemSair = new JMenuItem("Sair");
             menuItemSair.addActionListener(new ActionListener() {
@@ -292,6 +429,11 @@ public class GUI extends JFrame {
             menu.addSeparator();
             menu.add(som);
             menu.addSeparator();
+            menu.add(menuItemReplay);
+            menu.addSeparator();
+            menu.add(menuItemSuspender);
+            menu.add(menuItemRetomar);
+            menu.addSeparator();
             menu.add(menuItemSair);
             //Adicionar Menu ao MenuBar:
             add(menu);
@@ -341,12 +483,12 @@ public class GUI extends JFrame {
                     Object botaoFonte = e.getSource();
 
                     if (botaoFonte.equals(somOn)) {
-                        if (!clip.isActive()) {
-                            clip.loop(Clip.LOOP_CONTINUOUSLY);
+                        if (musica.isPausada()) {
+                            musica.retomar();
                         }
                     } else {
-                        if (clip.isActive()) {
-                            clip.stop();
+                        if (!musica.isPausada()) {
+                            musica.pausar();
                         }
                     }
 
@@ -480,6 +622,11 @@ public class GUI extends JFrame {
          * @see JTextField
          */
         private JTextField combustivelText = new JTextField("0");
+        /**
+         * Valores mostrados nos campos de texto, para só se mudar o texto
+         * quando o valor muda.
+         */
+        private int velocidadeMaximaMostrada, altitudeMostrada, velocidadeMostrada, combustivelMostrado;
         /**
          * Botão utilizado para quando pressionado se activar o jato se
          * possível.
@@ -556,14 +703,21 @@ public class GUI extends JFrame {
             jatoButton.setPreferredSize(new Dimension(SCREEN_DIMENSION.width * 1 / 10, SCREEN_DIMENSION.height * 1 / 15));
             jatoButton.setAlignmentX(Component.CENTER_ALIGNMENT);
             jatoButton.setOpaque(false);
-            jatoButton.addActionListener(new ActionListener() {
+            //O jato também pode ser dado com o espaço ou a seta para cima,
+            //esteja o foco onde estiver na janela.
+            Action jato = new AbstractAction("Jato") {
                 @Override
                 public void actionPerformed(ActionEvent e) {
                     if (nivelJogado.isGameRunning()) {
                         nivelJogado.hitJato();
                     }
                 }
-            });
+            };
+            jatoButton.setAction(jato);
+            jatoButton.setFocusable(false);
+            getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_SPACE, 0), "jato");
+            getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_UP, 0), "jato");
+            getActionMap().put("jato", jato);
 
             jPSouthButtons.add(jatoButton);
 
@@ -596,6 +750,14 @@ public class GUI extends JFrame {
          * @see GamePanel
          */
         private GamePanel actionPanel = new GamePanel(15, true);
+        /**
+         * Canvas de desenho activo que substitui o actionPanel quando a opção
+         * <code>lander.render.activo</code> está definida, senão é null.
+         *
+         * @see GameCanvas
+         * @see Opcoes#RENDER_ACTIVO
+         */
+        private GameCanvas gameCanvas;
 
         /**
          * Construtor obrigatório para criar o 'painel das animações'.
@@ -605,12 +767,20 @@ public class GUI extends JFrame {
             setLayout(new FlowLayout(FlowLayout.CENTER, 18, 18));
             setBackground(Color.getHSBColor(0.57f, 0.75f, 0.9f));
 
-            actionPanel.setPreferredSize(new Dimension(SCREEN_DIMENSION.width * 6 / 25, SCREEN_DIMENSION.height * 28 / 36));
-            actionPanel.setAlignmentX(CENTER_ALIGNMENT);
-            actionPanel.setAlignmentY(CENTER_ALIGNMENT);
-            actionPanel.setOpaque(false);
+            if (Opcoes.RENDER_ACTIVO) {
+                gameCanvas = new GameCanvas(15);
+                gameCanvas.setPreferredSize(new Dimension(SCREEN_DIMENSION.width * 6 / 25, SCREEN_DIMENSION.height * 28 / 36));
+                gameCanvas.setBackground(getBackground());
 
-            add(actionPanel);
+                add(gameCanvas);
+            } else {
+                actionPanel.setPreferredSize(new Dimension(SCREEN_DIMENSION.width * 6 / 25, SCREEN_DIMENSION.height * 28 / 36));
+                actionPanel.setAlignmentX(CENTER_ALIGNMENT);
+                actionPanel.setAlignmentY(CENTER_ALIGNMENT);
+                actionPanel.setOpaque(false);
+
+                add(actionPanel);
+            }
         }
     }
 
@@ -637,6 +807,52 @@ public class GUI extends JFrame {
          * Variável a partir do qual se sabe qual a nave a desenhar.
          */
         private int shipType;
+        /**
+         * Cache das sprites das naves deste painel.
+         *
+         * @see DesenhoNave
+         */
+        private final DesenhoNave desenhoNave = new DesenhoNave();
+        /**
+         * Imagem interna onde se desenha a cena, ou null se a cena é
+         * desenhada directamente no painel.
+         *
+         * @see Opcoes#RENDER_INTERNO
+         */
+        private final FramebufferInterno framebuffer = Opcoes.RENDER_INTERNO > 0
+                ? new FramebufferInterno(Opcoes.RENDER_INTERNO, Opcoes.RENDER_INTERPOLACAO) : null;
+        /**
+         * Área do painel ocupada pela nave no último desenho pedido.
+         */
+        private final Rectangle areaNave = new Rectangle();
+        /**
+         * Área a redesenhar quando a nave se move: a união da área antiga com
+         * a nova. É reutilizada para não se alocar nada em cada frame.
+         */
+        private final Rectangle areaSuja = new Rectangle();
+        /**
+         * Área ocupada pelos fantasmas e partículas no último desenho pedido.
+         */
+        private final Rectangle areaCena = new Rectangle();
+        /**
+         * Área ocupada pelos fantasmas e partículas no desenho que vai ser
+         * pedido.
+         */
+        private final Rectangle areaNova = new Rectangle();
+        /**
+         * Área ocupada pelas partículas no desenho que vai ser pedido.
+         */
+        private final Rectangle areaParticulas = new Rectangle();
+        /**
+         * Tick dos fantasmas no último desenho pedido, para o desenho ser o
+         * mesmo da área calculada.
+         */
+        private int tickFantasmas;
+        /**
+         * Número máximo de fantasmas no último desenho pedido, guardado com o
+         * tick porque o limite dos Fantasmas pode mudar antes do desenho.
+         */
+        private int limiteFantasmas = Fantasmas.MAXIMO;
 
         /**
          * Construtor que cria um painel de jogo vazio.
@@ -693,217 +909,44 @@ public class GUI extends JFrame {
 
         /**
          * Utiliza-se este método para, conforme o tipo de nave definido na
-         * instância desta classe, desenhar a respetiva classe.
+         * instância desta classe, desenhar a respetiva classe. A nave é
+         * copiada da sprite já desenhada pelo DesenhoNave. Com a imagem
+         * interna activa a nave é desenhada nela e a imagem é depois escalada
+         * para o painel.
          *
          * @param g Parâmetro que vai buscar do <code>paintComponent()</code>
          * para desenhar a nave.
+         * @see DesenhoNave
+         * @see FramebufferInterno
          */
         private void designNave(Graphics g) {
-            Graphics2D g2 = (Graphics2D) g;
-
-            if (shipType == Nave.NAVE_VERY_HARD) {
-                //Desenho Principal:
-                g2.setColor(Color.LIGHT_GRAY);
-                g2.fillOval((int) ((this.getWidth() / 2)), (int) ((this.getHeight() * shipHeightPercent) + 1), 6, 30);
-                g2.drawOval((int) ((this.getWidth() / 2)), (int) ((this.getHeight() * shipHeightPercent) + 1), 6, 30);
-
-                g2.setColor(Color.DARK_GRAY);
-                g2.fillOval((int) ((this.getWidth() / 2) + 2), (int) ((this.getHeight() * shipHeightPercent) + 4), 2, 20);
-                g2.drawOval((int) ((this.getWidth() / 2) + 2), (int) ((this.getHeight() * shipHeightPercent) + 4), 2, 20);
-
-                g2.setColor(Color.LIGHT_GRAY);
-                g2.fillOval((int) ((this.getWidth() / 2) - 1), (int) ((this.getHeight() * shipHeightPercent) + 9), 8, 30);
-                g2.drawOval((int) ((this.getWidth() / 2) - 1), (int) ((this.getHeight() * shipHeightPercent) + 9), 8, 30);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) + 1), (int) ((this.getHeight() * shipHeightPercent) + 10), 4, 30, 5, 5);
-                g2.drawRoundRect((int) ((this.getWidth() / 2) + 1), (int) ((this.getHeight() * shipHeightPercent) + 10), 4, 30, 5, 5);
-
-                g2.setColor(Color.DARK_GRAY);
-                g2.drawRoundRect((int) ((this.getWidth() / 2) + 1), (int) ((this.getHeight() * shipHeightPercent) + 17), 4, 10, 5, 5);
-
-                //Arma Direita:
-                g2.setColor(Color.GRAY);
-                g2.drawRect((int) ((this.getWidth() / 2) + 24), (int) ((this.getHeight() * shipHeightPercent) + 14), 3, 2);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) + 25), (int) ((this.getHeight() * shipHeightPercent)), 2, 16, 2, 2);
-
-                //Asa Direita:
-                g2.setColor(Color.RED);
-                g2.drawRoundRect((int) ((this.getWidth() / 2) + 8), (int) ((this.getHeight() * shipHeightPercent) + 12), 4, 3, 2, 2);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) + 8), (int) ((this.getHeight() * shipHeightPercent) + 12), 4, 3, 2, 2);
-                g2.drawRoundRect((int) ((this.getWidth() / 2) + 24), (int) ((this.getHeight() * shipHeightPercent) + 15), 4, 3, 2, 2);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) + 24), (int) ((this.getHeight() * shipHeightPercent) + 15), 4, 3, 2, 2);
-
-                g2.setColor(Color.LIGHT_GRAY);
-                GeneralPath gp = new GeneralPath();
-                gp.moveTo((float) ((this.getWidth() / 2) + 8), (float) ((this.getHeight() * shipHeightPercent) + 14));
-                gp.lineTo((float) ((this.getWidth() / 2) + 25), (float) (this.getHeight() * shipHeightPercent) + 15);
-                gp.lineTo((float) ((this.getWidth() / 2) + 25), (float) (this.getHeight() * shipHeightPercent) + 19);
-                gp.lineTo((float) ((this.getWidth() / 2) + 8), (float) (this.getHeight() * shipHeightPercent) + 23);
-                gp.closePath();
-                g2.draw(gp);
-                g2.fill(gp);
-
-                g2.setColor(Color.GRAY);
-                g2.drawRect((int) ((this.getWidth() / 2) + 9), (int) ((this.getHeight() * shipHeightPercent) + 17), 2, 8);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) + 9), (int) ((this.getHeight() * shipHeightPercent) + 17), 2, 10, 2, 2);
-
-                //Arma Esquerda:
-                g2.setColor(Color.GRAY);
-                g2.drawRect((int) ((this.getWidth() / 2) - 20), (int) ((this.getHeight() * shipHeightPercent) + 14), 3, 2);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) - 19), (int) ((this.getHeight() * shipHeightPercent)), 2, 16, 2, 2);
-
-                //Asa Esquerda:
-                g2.setColor(Color.RED);
-                g2.drawRoundRect((int) ((this.getWidth() / 2) - 6), (int) ((this.getHeight() * shipHeightPercent) + 12), 4, 3, 2, 2);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) - 6), (int) ((this.getHeight() * shipHeightPercent) + 12), 4, 3, 2, 2);
-                g2.drawRoundRect((int) ((this.getWidth() / 2) - 22), (int) ((this.getHeight() * shipHeightPercent) + 15), 4, 3, 2, 2);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) - 22), (int) ((this.getHeight() * shipHeightPercent) + 15), 4, 3, 2, 2);
-
-                g2.setColor(Color.LIGHT_GRAY);
-                gp = new GeneralPath();
-                gp.moveTo((float) ((this.getWidth() / 2) - 2), (float) ((this.getHeight() * shipHeightPercent) + 14));
-                gp.lineTo((float) ((this.getWidth() / 2) - 19), (float) (this.getHeight() * shipHeightPercent) + 15);
-                gp.lineTo((float) ((this.getWidth() / 2) - 19), (float) (this.getHeight() * shipHeightPercent) + 19);
-                gp.lineTo((float) ((this.getWidth() / 2) - 2), (float) (this.getHeight() * shipHeightPercent) + 23);
-                gp.closePath();
-                g2.draw(gp);
-                g2.fill(gp);
-
-                g2.setColor(Color.GRAY);
-                g2.drawRect((int) ((this.getWidth() / 2) - 5), (int) ((this.getHeight() * shipHeightPercent) + 17), 2, 8);
-                g2.fillRoundRect((int) ((this.getWidth() / 2) - 5), (int) ((this.getHeight() * shipHeightPercent) + 17), 2, 10, 2, 2);
-
-                //Details:
-                g2.setColor(Color.DARK_GRAY);
-                g2.drawRect((int) ((this.getWidth() / 2) + 8), (int) ((this.getHeight() * shipHeightPercent) + 14), 4, 3);
-                g2.drawRect((int) ((this.getWidth() / 2) - 6), (int) ((this.getHeight() * shipHeightPercent) + 14), 4, 3);
-
-                g2.setColor(Color.GRAY);
-                gp = new GeneralPath();
-                gp.moveTo((float) ((this.getWidth() / 2) + 5), (float) ((this.getHeight() * shipHeightPercent) + 27));
-                gp.lineTo((float) ((this.getWidth() / 2) + 6), (float) ((this.getHeight() * shipHeightPercent) + 29));
-                gp.lineTo((float) ((this.getWidth() / 2) + 4), (float) ((this.getHeight() * shipHeightPercent) + 40));
-                gp.closePath();
-                g2.draw(gp);
-
-                gp = new GeneralPath();
-                gp.moveTo((float) ((this.getWidth() / 2) + 1), (float) ((this.getHeight() * shipHeightPercent) + 27));
-                gp.lineTo((float) ((this.getWidth() / 2)), (float) ((this.getHeight() * shipHeightPercent) + 29));
-                gp.lineTo((float) ((this.getWidth() / 2) + 2), (float) ((this.getHeight() * shipHeightPercent) + 40));
-                gp.closePath();
-                g2.draw(gp);
-
-            } else if (shipType == Nave.NAVE_HARD) {
-                //Desenho Principal: 
-                g2.setColor(Color.GRAY);
-                g2.fillRect((int) ((this.getWidth() / 2) + 7), (int) ((this.getHeight() * shipHeightPercent) + 8), 7, 2);
-                g2.drawRect((int) ((this.getWidth() / 2) + 7), (int) ((this.getHeight() * shipHeightPercent) + 8), 7, 2);
-
-                GeneralPath gp = new GeneralPath();
-                gp.moveTo((float) ((this.getWidth() / 2) - 5), (float) ((this.getHeight() * shipHeightPercent) + 10));
-                gp.lineTo((float) ((this.getWidth() / 2) - 1), (float) (this.getHeight() * shipHeightPercent));
-                gp.lineTo((float) ((this.getWidth() / 2) + 4), (float) (this.getHeight() * shipHeightPercent));
-                gp.lineTo((float) ((this.getWidth() / 2) + 4), (float) (this.getHeight() * shipHeightPercent) + 22);
-                gp.lineTo((float) ((this.getWidth() / 2) - 5), (float) ((this.getHeight() * shipHeightPercent) + 22));
-                gp.closePath();
-                g2.draw(gp);
-                g2.fill(gp);
-
-                gp = new GeneralPath();
-                gp.moveTo((float) ((this.getWidth() / 2) + 26), ((float) (this.getHeight() * shipHeightPercent) + 10));
-                gp.lineTo((float) ((this.getWidth() / 2) + 22), (float) (this.getHeight() * shipHeightPercent));
-                gp.lineTo((float) ((this.getWidth() / 2) + 17), (float) (this.getHeight() * shipHeightPercent));
-                gp.lineTo((float) ((this.getWidth() / 2) + 17), (float) (this.getHeight() * shipHeightPercent) + 22);
-                gp.lineTo((float) ((this.getWidth() / 2) + 26), (float) ((this.getHeight() * shipHeightPercent) + 22));
-                g2.draw(gp);
-                g2.fill(gp);
-
-                g2.fillOval((int) ((this.getWidth() / 2) - 5), (int) ((this.getHeight() * shipHeightPercent) + 10), 30, 30);
-                g2.drawOval((int) ((this.getWidth() / 2) - 5), (int) ((this.getHeight() * shipHeightPercent) + 10), 30, 30);
-
-                //CockPit:
-                g2.fillOval((int) ((this.getWidth() / 2) + 28), (int) ((this.getHeight() * shipHeightPercent) + 8), 4, 9);
-                g2.drawOval((int) ((this.getWidth() / 2) + 28), (int) ((this.getHeight() * shipHeightPercent) + 8), 4, 9);
-                g2.fillOval((int) ((this.getWidth() / 2) + 24), (int) ((this.getHeight() * shipHeightPercent) + 13), 7, 5);
-                g2.drawOval((int) ((this.getWidth() / 2) + 24), (int) ((this.getHeight() * shipHeightPercent) + 13), 7, 5);
-
-                //Detalhe Cockpit:
-                g2.setColor(Color.LIGHT_GRAY);
-                g2.fillOval((int) ((this.getWidth() / 2) + 29), (int) ((this.getHeight() * shipHeightPercent) + 9), 3, 2);
-                g2.drawOval((int) ((this.getWidth() / 2) + 29), (int) ((this.getHeight() * shipHeightPercent) + 9), 3, 2);
-
-                //Details:
-                //Bolinhas de baixo:
-                g2.setColor(Color.DARK_GRAY);
-                g2.fillOval((int) ((this.getWidth() / 2) + 3), (int) ((this.getHeight() * shipHeightPercent) + 31), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 3), (int) ((this.getHeight() * shipHeightPercent) + 31), 3, 3);
-                g2.fillOval((int) ((this.getWidth() / 2) + 9), (int) ((this.getHeight() * shipHeightPercent) + 32), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 9), (int) ((this.getHeight() * shipHeightPercent) + 32), 3, 3);
-                g2.fillOval((int) ((this.getWidth() / 2) + 15), (int) ((this.getHeight() * shipHeightPercent) + 31), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 15), (int) ((this.getHeight() * shipHeightPercent) + 31), 3, 3);
-
-                //Bolinhas do meio:
-                g2.fillOval((int) ((this.getWidth() / 2) + 4), (int) ((this.getHeight() * shipHeightPercent) + 26), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 4), (int) ((this.getHeight() * shipHeightPercent) + 26), 3, 3);
-                g2.fillOval((int) ((this.getWidth() / 2) + 9), (int) ((this.getHeight() * shipHeightPercent) + 27), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 9), (int) ((this.getHeight() * shipHeightPercent) + 27), 3, 3);
-                g2.fillOval((int) ((this.getWidth() / 2) + 14), (int) ((this.getHeight() * shipHeightPercent) + 26), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 14), (int) ((this.getHeight() * shipHeightPercent) + 26), 3, 3);
-
-                //Bolinhas do lado Esquerdo:
-                g2.fillOval((int) ((this.getWidth() / 2)), (int) ((this.getHeight() * shipHeightPercent) + 3), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2)), (int) ((this.getHeight() * shipHeightPercent) + 3), 3, 3);
-                g2.fillOval((int) ((this.getWidth() / 2) + 1), (int) ((this.getHeight() * shipHeightPercent) + 13), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 1), (int) ((this.getHeight() * shipHeightPercent) + 13), 3, 3);
-
-                //Bolinhas do lado Direito:
-                g2.fillOval((int) ((this.getWidth() / 2) + 18), (int) ((this.getHeight() * shipHeightPercent) + 3), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 18), (int) ((this.getHeight() * shipHeightPercent) + 3), 3, 3);
-                g2.fillOval((int) ((this.getWidth() / 2) + 17), (int) ((this.getHeight() * shipHeightPercent) + 13), 3, 3);
-                g2.drawOval((int) ((this.getWidth() / 2) + 17), (int) ((this.getHeight() * shipHeightPercent) + 13), 3, 3);
-
-                //Circulo Central:
-                g2.drawOval((int) ((this.getWidth() / 2) + 7), (int) ((this.getHeight() * shipHeightPercent) + 17), 7, 7);
-
-            } else if (shipType == Nave.NAVE_MEDIUM) {
-                g2.setColor(Color.LIGHT_GRAY);
-                g2.fillOval((int) (this.getWidth() / 2), (int) (this.getHeight() * shipHeightPercent), 14, 40);
-                g2.drawOval((int) (this.getWidth() / 2), (int) (this.getHeight() * shipHeightPercent), 14, 40);
-                g2.fillOval((int) ((this.getWidth() / 2) - 5), (int) ((this.getHeight() * shipHeightPercent) + 30), 5, 20);
-                g2.drawOval((int) ((this.getWidth() / 2) - 5), (int) ((this.getHeight() * shipHeightPercent) + 30), 5, 20);
-                g2.fillOval((int) ((this.getWidth() / 2) + 15), (int) ((this.getHeight() * shipHeightPercent) + 30), 5, 20);
-                g2.drawOval((int) ((this.getWidth() / 2) + 15), (int) ((this.getHeight() * shipHeightPercent) + 30), 5, 20);
-                g2.fillOval((int) ((this.getWidth() / 2) - 5), (int) ((this.getHeight() * shipHeightPercent) + 30), 25, 15);
-                g2.drawOval((int) ((this.getWidth() / 2) - 5), (int) ((this.getHeight() * shipHeightPercent) + 30), 25, 15);
-                g2.setColor(Color.WHITE);
-                g2.fillOval((int) ((this.getWidth() / 2) + 3), (int) ((this.getHeight() * shipHeightPercent) + 15), 8, 2);
-                g2.drawOval((int) ((this.getWidth() / 2) + 3), (int) ((this.getHeight() * shipHeightPercent) + 15), 8, 2);
-
-            } else {
-                g2.setColor(Color.YELLOW);
-                g2.fillOval((int) (this.getWidth() / 2), (int) (this.getHeight() * shipHeightPercent), 9, 40);
-                g2.drawOval((int) (this.getWidth() / 2), (int) (this.getHeight() * shipHeightPercent), 9, 40);
-                g2.fillOval((int) ((this.getWidth() / 2) - 8), (int) ((this.getHeight() * shipHeightPercent) + 3), 5, 25);
-                g2.drawOval((int) ((this.getWidth() / 2) - 8), (int) ((this.getHeight() * shipHeightPercent) + 3), 5, 25);
-                g2.fillOval((int) ((this.getWidth() / 2) + 12), (int) ((this.getHeight() * shipHeightPercent) + 3), 5, 25);
-                g2.drawOval((int) ((this.getWidth() / 2) + 12), (int) ((this.getHeight() * shipHeightPercent) + 3), 5, 25);
-                g2.fillOval((int) ((this.getWidth() / 2) - 8), (int) ((this.getHeight() * shipHeightPercent) + 10), 25, 5);
-                g2.drawOval((int) ((this.getWidth() / 2) - 8), (int) ((this.getHeight() * shipHeightPercent) + 10), 25, 5);
-
-                g2.setColor(Color.LIGHT_GRAY);
-                g2.fillOval((int) ((this.getWidth() / 2) + 1), (int) ((this.getHeight() * shipHeightPercent)), 7, 10);
-                g2.drawOval((int) ((this.getWidth() / 2) + 1), (int) ((this.getHeight() * shipHeightPercent)), 7, 10);
-                g2.fillOval((int) ((this.getWidth() / 2) - 8), (int) ((this.getHeight() * shipHeightPercent) + 3), 5, 10);
-                g2.drawOval((int) ((this.getWidth() / 2) - 8), (int) ((this.getHeight() * shipHeightPercent) + 3), 5, 10);
-                g2.fillOval((int) ((this.getWidth() / 2) + 12), (int) ((this.getHeight() * shipHeightPercent) + 3), 5, 10);
-                g2.drawOval((int) ((this.getWidth() / 2) + 12), (int) ((this.getHeight() * shipHeightPercent) + 3), 5, 10);
-                g2.fillOval((int) ((this.getWidth() / 2) - 8), (int) ((this.getHeight() * shipHeightPercent) + 7), 25, 2);
-                g2.drawOval((int) ((this.getWidth() / 2) - 8), (int) ((this.getHeight() * shipHeightPercent) + 7), 25, 2);
-
-                g2.setColor(Color.DARK_GRAY);
-                g2.fillOval((int) ((this.getWidth() / 2) + 2), (int) ((this.getHeight() * shipHeightPercent) + 6), 5, 14);
-                g2.drawOval((int) ((this.getWidth() / 2) + 2), (int) ((this.getHeight() * shipHeightPercent) + 6), 5, 14);
-
+            if (framebuffer == null) {
+                designNave((Graphics2D) g, getWidth(), getHeight());
+                return;
+            }
+            Graphics2D interno = framebuffer.comecar(getGraphicsConfiguration(), getWidth(), getHeight());
+            try {
+                designNave(interno, framebuffer.getLargura(), framebuffer.getAltura());
+            } finally {
+                interno.dispose();
             }
+            framebuffer.mostrar((Graphics2D) g, getWidth(), getHeight());
+        }
+
+        /**
+         * Desenha os fantasmas e a nave numa área com as dimensões indicadas.
+         *
+         * @param g Onde se desenha.
+         * @param largura Largura da área.
+         * @param altura Altura da área.
+         */
+        private void designNave(Graphics2D g, int largura, int altura) {
+            int x = largura / 2;
+            int y = (int) (altura * shipHeightPercent);
+            int alturaSolo = (int) (altura * fatorAltura(shipType));
+            fantasmas.desenhar(g, desenhoNave, x, alturaSolo, shipType, tickFantasmas, limiteFantasmas);
+            particulas.desenhar(g, x, alturaSolo, DesenhoNave.ALTURA - DesenhoNave.ORIGEM_Y, largura, altura);
+            desenhoNave.desenhar(g, x, y, shipType);
         }
 
         /**
@@ -916,14 +959,59 @@ public class GUI extends JFrame {
          * desenhar.
          */
         public void resetPainting(double shipHeightPercent, int shipType) {
+            boolean redesenharTudo = !shipIsActivated || this.shipType != shipType;
             shipIsActivated = true;
             this.shipType = shipType;
-            if (shipType == Nave.NAVE_MEDIUM) {
-                this.shipHeightPercent = 0.912 * shipHeightPercent;
-            } else {
-                this.shipHeightPercent = 0.93 * shipHeightPercent;
+            this.shipHeightPercent = fatorAltura(shipType) * shipHeightPercent;
+            particulas.adquirir();
+            tickFantasmas = fantasmas.getTick();
+            limiteFantasmas = fantasmas.getLimite();
+            repaintNave(redesenharTudo);
+        }
+
+        /**
+         * Pede ao Swing para redesenhar só a zona por onde a nave passou, ou
+         * seja a união da área onde estava com a área onde está agora, em vez
+         * do painel todo. Se houver fantasmas ou partículas junta-se a área
+         * que ocupavam no desenho anterior e a que vão ocupar neste.
+         *
+         * @param redesenharTudo Se 'true' redesenha o painel todo, por exemplo
+         * quando muda o tipo de nave. Com a imagem interna o painel é sempre
+         * redesenhado todo, porque a nave é escalada.
+         */
+        private void repaintNave(boolean redesenharTudo) {
+            int x = getWidth() / 2 - DesenhoNave.ORIGEM_X;
+            int y = (int) (getHeight() * shipHeightPercent) - DesenhoNave.ORIGEM_Y;
+            int alturaSolo = (int) (getHeight() * fatorAltura(shipType));
+            fantasmas.area(areaNova, getWidth() / 2, alturaSolo, tickFantasmas, limiteFantasmas);
+            particulas.area(areaParticulas, getWidth() / 2, alturaSolo, DesenhoNave.ALTURA - DesenhoNave.ORIGEM_Y);
+            if (areaNova.isEmpty()) {
+                areaNova.setBounds(areaParticulas);
+            } else if (!areaParticulas.isEmpty()) {
+                areaNova.add(areaParticulas);
+            }
+
+            if (redesenharTudo || framebuffer != null) {
+                areaNave.setBounds(x, y, DesenhoNave.LARGURA, DesenhoNave.ALTURA);
+                areaCena.setBounds(areaNova);
+                repaint();
+                return;
+            }
+
+            int x1 = Math.min(areaNave.x, x);
+            int y1 = Math.min(areaNave.y, y);
+            int x2 = Math.max(areaNave.x, x) + DesenhoNave.LARGURA;
+            int y2 = Math.max(areaNave.y, y) + DesenhoNave.ALTURA;
+            areaSuja.setBounds(x1, y1, x2 - x1, y2 - y1);
+            areaNave.setBounds(x, y, DesenhoNave.LARGURA, DesenhoNave.ALTURA);
+            if (!areaCena.isEmpty()) {
+                areaSuja.add(areaCena);
             }
-            repaint();
+            if (!areaNova.isEmpty()) {
+                areaSuja.add(areaNova);
+            }
+            areaCena.setBounds(areaNova);
+            repaint(areaSuja);
         }
 
         /**
@@ -937,6 +1025,8 @@ public class GUI extends JFrame {
          */
         @Override
         public void paintComponent(Graphics g) {
+            long inicio = System.nanoTime();
+            Object evento = EventosJfr.iniciarDesenho();
             super.paintComponent(g);
 
             if (shipIsActivated) {
@@ -944,6 +1034,209 @@ public class GUI extends JFrame {
                 designNave(g);
 
             }
+            EventosJfr.terminarDesenho(evento, GamePanel.class);
+            MetricasJogo.get().frame(inicio, System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Classe interna privada que desenha o jogo de forma activa num Canvas
+     * com uma BufferStrategy de dois ou três buffers. Ao contrário do
+     * GamePanel, que pede um <code>repaint()</code> e fica à espera do
+     * RepaintManager do Swing, aqui é quem chama o <code>render()</code> (o
+     * Timer ou o CicloJogo) que desenha e mostra o frame logo, por isso o
+     * tempo de cada frame é previsível e é medido nas MetricasJogo.
+     *
+     * @see GamePanel
+     * @see BufferStrategy
+     * @see MetricasJogo#getDesenhoMaximo()
+     * @see Opcoes#RENDER_ACTIVO
+     */
+    private class GameCanvas extends Canvas {
+
+        /**
+         * Versão da classe para a serialização.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Cor da borda do painel, igual à do RoundedPanel.
+         */
+        private final Color COR_BORDA = new Color(0, 0, 0, 70);
+        /**
+         * Raio utilizado para arredondar os cantos.
+         */
+        private final int RADIUS;
+        /**
+         * Objecto usado para que só uma thread de cada vez desenhe no Canvas.
+         */
+        private final Object lock = new Object();
+        /**
+         * Cache das sprites das naves deste Canvas.
+         *
+         * @see DesenhoNave
+         */
+        private final DesenhoNave desenhoNave = new DesenhoNave();
+        /**
+         * Imagem interna onde se desenha a cena, ou null se a cena é
+         * desenhada directamente no Canvas.
+         *
+         * @see Opcoes#RENDER_INTERNO
+         */
+        private final FramebufferInterno framebuffer = Opcoes.RENDER_INTERNO > 0
+                ? new FramebufferInterno(Opcoes.RENDER_INTERNO, Opcoes.RENDER_INTERPOLACAO) : null;
+        /**
+         * A BufferStrategy onde se desenha, criada no primeiro frame.
+         */
+        private BufferStrategy estrategia;
+        /**
+         * Percentagem da altura do Canvas a que se encontra o desenho da nave,
+         * a contar vindo de cima.
+         */
+        private double shipHeightPercent;
+        /**
+         * Variável a partir do qual se sabe qual a nave a desenhar.
+         */
+        private int shipType = Nave.NAVE_EASY;
+        /**
+         * Variável utilizada para definir se o Canvas tem a nave desenhada.
+         */
+        private boolean shipIsActivated;
+
+        /**
+         * Construtor obrigatório para criar o Canvas.
+         *
+         * @param cornerRadius Raio utilizado para arredondar os cantos.
+         */
+        GameCanvas(int cornerRadius) {
+            super();
+            RADIUS = cornerRadius;
+        }
+
+        /**
+         * Cria a BufferStrategy. Com vsync pede-se troca de páginas (page
+         * flipping); se o sistema não a suportar usa-se a estratégia normal.
+         */
+        private void criarEstrategia() {
+            if (Opcoes.RENDER_VSYNC) {
+                BufferCapabilities capacidades = new BufferCapabilities(new ImageCapabilities(true), new ImageCapabilities(true), BufferCapabilities.FlipContents.UNDEFINED);
+                try {
+                    createBufferStrategy(Opcoes.RENDER_BUFFERS, capacidades);
+                } catch (AWTException ex) {
+                    createBufferStrategy(Opcoes.RENDER_BUFFERS);
+                }
+            } else {
+                createBufferStrategy(Opcoes.RENDER_BUFFERS);
+            }
+            estrategia = getBufferStrategy();
+        }
+
+        /**
+         * Desenha e mostra um frame com a nave na posição indicada. Pode ser
+         * chamado de qualquer thread.
+         *
+         * @param shipHeightPercent Percentagem da altura do Canvas a que se
+         * encontra o desenho da nave, a contar vindo de cima.
+         * @param shipType Variável a partir do qual se sabe qual a nave a
+         * desenhar.
+         */
+        void render(double shipHeightPercent, int shipType) {
+            synchronized (lock) {
+                shipIsActivated = true;
+                this.shipType = shipType;
+                this.shipHeightPercent = fatorAltura(shipType) * shipHeightPercent;
+                particulas.adquirir();
+                renderFrame();
+            }
+        }
+
+        /**
+         * Desenha o frame com os valores actuais e troca de buffer, repetindo
+         * se o conteúdo dos buffers se perder pelo caminho.
+         */
+        private void renderFrame() {
+            if (!isDisplayable() || getWidth() <= 0 || getHeight() <= 0) {
+                return;
+            }
+            long inicio = System.nanoTime();
+            Object evento = EventosJfr.iniciarDesenho();
+            if (estrategia == null) {
+                criarEstrategia();
+            }
+            do {
+                do {
+                    Graphics2D g = (Graphics2D) estrategia.getDrawGraphics();
+                    try {
+                        desenharCena(g);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (estrategia.contentsRestored());
+                estrategia.show();
+            } while (estrategia.contentsLost());
+            if (Opcoes.RENDER_VSYNC) {
+                Toolkit.getDefaultToolkit().sync();
+            }
+            EventosJfr.terminarDesenho(evento, GameCanvas.class);
+            MetricasJogo.get().frame(inicio, System.nanoTime() - inicio);
+        }
+
+        /**
+         * Desenha o fundo arredondado, tal como o RoundedPanel preto, e a nave
+         * e os fantasmas se a nave estiver activa, directamente ou através da
+         * imagem interna.
+         *
+         * @param g Onde se desenha o frame.
+         * @see FramebufferInterno
+         */
+        private void desenharCena(Graphics2D g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setColor(Color.BLACK);
+            g.fillRoundRect(0, 0, getWidth() - 1, getHeight() - 1, RADIUS, RADIUS);
+            g.setColor(COR_BORDA);
+            g.drawRoundRect(0, 0, getWidth() - 1, getHeight() - 1, RADIUS, RADIUS);
+
+            if (!shipIsActivated) {
+                return;
+            }
+            if (framebuffer == null) {
+                desenharNave(g, getWidth(), getHeight());
+                return;
+            }
+            Graphics2D interno = framebuffer.comecar(getGraphicsConfiguration(), getWidth(), getHeight());
+            try {
+                desenharNave(interno, framebuffer.getLargura(), framebuffer.getAltura());
+            } finally {
+                interno.dispose();
+            }
+            framebuffer.mostrar(g, getWidth(), getHeight());
+        }
+
+        /**
+         * Desenha os fantasmas e a nave numa área com as dimensões indicadas.
+         *
+         * @param g Onde se desenha.
+         * @param largura Largura da área.
+         * @param altura Altura da área.
+         */
+        private void desenharNave(Graphics2D g, int largura, int altura) {
+            int alturaSolo = (int) (altura * fatorAltura(shipType));
+            fantasmas.desenhar(g, desenhoNave, largura / 2, alturaSolo, shipType);
+            particulas.desenhar(g, largura / 2, alturaSolo, DesenhoNave.ALTURA - DesenhoNave.ORIGEM_Y, largura, altura);
+            desenhoNave.desenhar(g, largura / 2, (int) (altura * shipHeightPercent), shipType);
+        }
+
+        /**
+         * Quando o sistema pede para redesenhar o Canvas (por exemplo depois
+         * de uma janela o tapar) volta-se a desenhar o último frame.
+         *
+         * @param g Não é usado, o desenho é feito na BufferStrategy.
+         */
+        @Override
+        public void paint(Graphics g) {
+            synchronized (lock) {
+                renderFrame();
+            }
         }
     }
 
@@ -962,10 +1255,51 @@ public class GUI extends JFrame {
      * @param velocidade Velocidade vigente da nave.
      */
     public void updateLevelValues(int altitude, int combustivel, int velocidade) {
-        guiDashBoard.altitudeText.setText(Integer.toString(altitude));
-        guiDashBoard.combustivelText.setText(Integer.toString(combustivel));
-        guiDashBoard.velocidadeText.setText(Integer.toString(velocidade));
-        guiDashBoard.velocidadeMaximaText.setText(Integer.toString(nivelJogado.getVelocidadeMaxima()));
+        updateLevelValues(altitude, combustivel, velocidade, nivelJogado.getVelocidadeMaxima());
+    }
+
+    /**
+     * Recebe os valores do DashBoard e actualiza apenas os campos cujo valor
+     * mudou, para não se gerarem eventos e revalidações do Swing à toa.
+     *
+     * @param altitude Altitude vigente da nave.
+     * @param combustivel Combustível que a nave ainda tem disponível.
+     * @param velocidade Velocidade vigente da nave.
+     * @param velocidadeMaxima Velocidade máxima para se passar de nível.
+     */
+    private void updateLevelValues(int altitude, int combustivel, int velocidade, int velocidadeMaxima) {
+        long inicio = System.nanoTime();
+        if (altitude != guiDashBoard.altitudeMostrada) {
+            guiDashBoard.altitudeMostrada = altitude;
+            guiDashBoard.altitudeText.setText(Integer.toString(altitude));
+        }
+        if (combustivel != guiDashBoard.combustivelMostrado) {
+            guiDashBoard.combustivelMostrado = combustivel;
+            guiDashBoard.combustivelText.setText(Integer.toString(combustivel));
+        }
+        if (velocidade != guiDashBoard.velocidadeMostrada) {
+            guiDashBoard.velocidadeMostrada = velocidade;
+            guiDashBoard.velocidadeText.setText(Integer.toString(velocidade));
+        }
+        if (velocidadeMaxima != guiDashBoard.velocidadeMaximaMostrada) {
+            guiDashBoard.velocidadeMaximaMostrada = velocidadeMaxima;
+            guiDashBoard.velocidadeMaximaText.setText(Integer.toString(velocidadeMaxima));
+        }
+        MetricasJogo.get().painel(System.nanoTime() - inicio);
+    }
+
+    /**
+     * Mostra um estado publicado pela física: actualiza o DashBoard e, se o
+     * desenho não for activo, a posição da nave.
+     *
+     * @param estado Estado a mostrar.
+     * @see EstadoNivel
+     */
+    void mostrarEstado(EstadoNivel estado) {
+        updateLevelValues(estado.getAltitude(), estado.getCombustivel(), estado.getVelocidade(), estado.getVelocidadeMaxima());
+        if (!isRenderActivo()) {
+            updateSpaceShip(estado.getPercentNivel());
+        }
     }
 
     /**
@@ -977,7 +1311,72 @@ public class GUI extends JFrame {
      * ou seja, finalizar o nivel.
      */
     void updateSpaceShip(double percentNivel) {
-        guiAnimation.actionPanel.resetPainting(percentNivel, dificuldadeJogo);
+        if (guiAnimation.gameCanvas != null) {
+            guiAnimation.gameCanvas.render(percentNivel, dificuldadeJogo);
+        } else {
+            guiAnimation.actionPanel.resetPainting(percentNivel, dificuldadeJogo);
+        }
+    }
+
+    /**
+     * Fracção da altura do painel de jogo que corresponde ao fim do nível,
+     * para a nave ficar pousada no fundo do painel.
+     *
+     * @param shipType Tipo de nave desenhada.
+     * @return Fracção da altura do painel onde fica a nave quando aterra.
+     */
+    private static double fatorAltura(int shipType) {
+        if (shipType == Nave.NAVE_MEDIUM) {
+            return 0.912;
+        }
+        return 0.93;
+    }
+
+    /**
+     * @return As pontuações guardadas, ou null se não foi possível abrir o
+     * ficheiro. Espera que a abertura termine, se ainda não tiver terminado.
+     */
+    Pontuacoes getPontuacoes() {
+        try {
+            return pontuacoes.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, ex.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * @return Tentativas anteriores do nível actual, desenhadas como
+     * fantasmas no painel de jogo.
+     */
+    Fantasmas getFantasmas() {
+        return fantasmas;
+    }
 
+    /**
+     * @return A gravação da sessão jogada desde que o jogo abriu.
+     * @see Replay
+     */
+    public Replay getReplay() {
+        return replay;
+    }
+
+    /**
+     * @return As partículas desenhadas no painel de jogo.
+     */
+    Particulas getParticulas() {
+        return particulas;
+    }
+
+    /**
+     * @return 'true' se o jogo está a ser desenhado de forma activa, caso em
+     * que o <code>updateSpaceShip()</code> pode ser chamado de fora da thread
+     * do Swing.
+     * @see GameCanvas
+     */
+    boolean isRenderActivo() {
+        return guiAnimation.gameCanvas != null;
     }
 }
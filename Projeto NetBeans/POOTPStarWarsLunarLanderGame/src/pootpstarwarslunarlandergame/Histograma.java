@@ -0,0 +1,138 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de durações em nanosegundos com baldes logarítmicos. Cada
+ * potência de 2 está dividida em 4 baldes, pelo que um percentil tem um erro
+ * máximo de 25%, com apenas 248 contadores para todos os valores de um long.
+ * Registar um valor é só um incremento atómico num AtomicLongArray, sem locks
+ * nem alocação de memória, e pode ser feito por várias threads ao mesmo
+ * tempo.
+ *
+ * @author C.M.P.Soares
+ * @see MetricasJogo
+ */
+final class Histograma {
+
+    /**
+     * Número de baldes por potência de 2 (potência de 2).
+     */
+    private static final int SUB_BALDES = 4;
+    /**
+     * Número de bits do índice dentro da potência de 2.
+     */
+    private static final int BITS_SUB_BALDE = 2;
+    /**
+     * Número total de baldes.
+     */
+    private static final int BALDES = 62 * SUB_BALDES;
+    /**
+     * Número de valores em cada balde.
+     */
+    private final AtomicLongArray contagens = new AtomicLongArray(BALDES);
+    /**
+     * Número de valores registados.
+     */
+    private final AtomicLong total = new AtomicLong();
+    /**
+     * Maior valor registado.
+     */
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Regista um valor.
+     *
+     * @param valor Valor a registar, em nanosegundos. Os valores negativos
+     * contam como 0.
+     */
+    void registar(long valor) {
+        if (valor < 0) {
+            valor = 0;
+        }
+        contagens.incrementAndGet(balde(valor));
+        total.incrementAndGet();
+        long m = maximo.get();
+        while (valor > m && !maximo.compareAndSet(m, valor)) {
+            m = maximo.get();
+        }
+    }
+
+    /**
+     * @param valor Valor não negativo.
+     * @return Índice do balde do valor.
+     */
+    private static int balde(long valor) {
+        if (valor < SUB_BALDES) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) (valor >>> (expoente - BITS_SUB_BALDE)) & (SUB_BALDES - 1);
+        return (expoente - BITS_SUB_BALDE + 1) * SUB_BALDES + sub;
+    }
+
+    /**
+     * @param balde Índice do balde.
+     * @return Maior valor que cabe no balde.
+     */
+    private static long limiteSuperior(int balde) {
+        if (balde < SUB_BALDES) {
+            return balde;
+        }
+        int deslocamento = balde / SUB_BALDES - 1;
+        long inferior = (long) (SUB_BALDES + balde % SUB_BALDES) << deslocamento;
+        return inferior + (1L << deslocamento) - 1;
+    }
+
+    /**
+     * Calcula um percentil dos valores registados.
+     *
+     * @param percentil Percentil, entre 0 e 100.
+     * @return Limite superior do balde onde está o percentil (nunca maior que
+     * o máximo registado), ou 0 se não houver valores.
+     */
+    long getPercentil(double percentil) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long posicao = Math.max(1, (long) Math.ceil(percentil / 100 * n));
+        long acumulado = 0;
+        for (int i = 0; i < BALDES; i++) {
+            acumulado += contagens.get(i);
+            if (acumulado >= posicao) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    /**
+     * @return Número de valores registados.
+     */
+    long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return Maior valor registado.
+     */
+    long getMaximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Esquece todos os valores registados.
+     */
+    void limpar() {
+        for (int i = 0; i < BALDES; i++) {
+            contagens.set(i, 0);
+        }
+        total.set(0);
+        maximo.set(0);
+    }
+}
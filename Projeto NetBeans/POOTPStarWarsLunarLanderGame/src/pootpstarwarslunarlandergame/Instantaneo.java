@@ -0,0 +1,124 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * Instantâneo binário de um jogo a meio de um nível: nível(level),
+ * dificuldade, altitude, velocidade, jatos em espera, combustível, gravidade
+ * e o resto do estado da Simulacao, incluindo o checksum. Serve para
+ * suspender e retomar um jogo e para passar uma sessão de um ServidorJogo
+ * para outro.
+ * <p>
+ * O formato é escrito à mão, sem reflexão nem serialização do Java, e tem
+ * tamanho fixo: a assinatura "LI" em 2 bytes, 1 byte de versão e o corpo da
+ * versão 1, escrito e lido pela própria Simulacao, com todos os números em
+ * big-endian. Como não há Strings nem tamanhos variáveis, escrever ou ler um
+ * instantâneo são só algumas dezenas de <code>put</code> e <code>get</code>
+ * num ByteBuffer, bem abaixo de um microsegundo.
+ *
+ * @author C.M.P.Soares
+ * @see Simulacao
+ */
+public final class Instantaneo {
+
+    /**
+     * Primeiros 2 bytes de um instantâneo ("LI").
+     */
+    private static final short ASSINATURA = 0x4C49;
+    /**
+     * Versão do formato escrita pelo <code>escrever</code>.
+     */
+    private static final byte VERSAO = 1;
+    /**
+     * Tamanho do corpo da versão 1: 2 bytes de estado e dificuldade, 11 int, 6
+     * double e 4 long.
+     */
+    static final int TAMANHO_CORPO = 2 + 11 * 4 + 6 * 8 + 4 * 8;
+    /**
+     * Tamanho total de um instantâneo, em bytes.
+     */
+    public static final int TAMANHO = 3 + TAMANHO_CORPO;
+
+    /**
+     * Não há instâncias: só os métodos estáticos de escrita e leitura.
+     */
+    private Instantaneo() {
+    }
+
+    /**
+     * Escreve o instantâneo de uma simulação na posição actual do buffer. O
+     * buffer tem de estar em big-endian, como é por omissão.
+     *
+     * @param simulacao Simulação a guardar.
+     * @param destino Buffer com pelo menos <code>TAMANHO</code> bytes livres.
+     */
+    public static void escrever(Simulacao simulacao, ByteBuffer destino) {
+        destino.putShort(ASSINATURA);
+        destino.put(VERSAO);
+        simulacao.escrever(destino);
+    }
+
+    /**
+     * Lê um instantâneo a partir da posição actual do buffer e cria a
+     * Simulacao correspondente, pronta a continuar no tick seguinte.
+     *
+     * @param origem Buffer, em big-endian, posicionado no início do
+     * instantâneo.
+     * @return A simulação restaurada.
+     * @throws IllegalArgumentException Se os bytes não forem um instantâneo
+     * válido ou a versão for desconhecida.
+     */
+    public static Simulacao ler(ByteBuffer origem) {
+        if (origem.remaining() < 3 || origem.getShort() != ASSINATURA) {
+            throw new IllegalArgumentException("Não é um instantâneo de jogo.");
+        }
+        byte versao = origem.get();
+        if (versao != VERSAO) {
+            throw new IllegalArgumentException("Versão de instantâneo desconhecida: " + versao);
+        }
+        if (origem.remaining() < TAMANHO_CORPO) {
+            throw new IllegalArgumentException("Instantâneo incompleto.");
+        }
+        return new Simulacao(origem);
+    }
+
+    /**
+     * Guarda o instantâneo de uma simulação num ficheiro.
+     *
+     * @param simulacao Simulação a guardar.
+     * @param ficheiro Ficheiro de destino, substituído se já existir.
+     * @throws IOException Se não for possível escrever o ficheiro.
+     */
+    public static void guardar(Simulacao simulacao, File ficheiro) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANHO);
+        escrever(simulacao, buffer);
+        try (RandomAccessFile saida = new RandomAccessFile(ficheiro, "rw")) {
+            saida.setLength(0);
+            saida.write(buffer.array());
+        }
+    }
+
+    /**
+     * Lê o instantâneo guardado num ficheiro.
+     *
+     * @param ficheiro Ficheiro com o instantâneo.
+     * @return A simulação restaurada.
+     * @throws IOException Se não for possível ler o ficheiro ou ele não tiver
+     * um instantâneo válido.
+     */
+    public static Simulacao carregar(File ficheiro) throws IOException {
+        try (RandomAccessFile entrada = new RandomAccessFile(ficheiro, "r")) {
+            byte[] bytes = new byte[(int) Math.min(entrada.length(), TAMANHO)];
+            entrada.readFully(bytes);
+            return ler(ByteBuffer.wrap(bytes));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Métricas de desempenho do jogo: duração dos ticks da física, do desenho e
+ * da actualização do painel de controlo, intervalo e jitter entre frames e
+ * latência dos jatos. Cada métrica é um Histograma, pelo que medir não usa
+ * locks nem aloca memória. Há uma só instância, registada no servidor de
+ * MBeans da plataforma com o nome
+ * <code>pootpstarwarslunarlandergame:type=MetricasJogo</code>.
+ *
+ * @author C.M.P.Soares
+ * @see MetricasJogoMBean
+ */
+public final class MetricasJogo implements MetricasJogoMBean {
+
+    /**
+     * Nome JMX das métricas.
+     */
+    public static final String NOME_JMX = "pootpstarwarslunarlandergame:type=MetricasJogo";
+    /**
+     * A única instância, criada e registada no JMX quando a classe é
+     * carregada.
+     */
+    private static final MetricasJogo INSTANCIA = new MetricasJogo();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCIA, new ObjectName(NOME_JMX));
+        } catch (JMException ex) {
+            Logger.getLogger(MetricasJogo.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+
+    /**
+     * Duração dos ticks da física.
+     */
+    private final Histograma tick = new Histograma();
+    /**
+     * Duração do desenho dos frames.
+     */
+    private final Histograma desenho = new Histograma();
+    /**
+     * Intervalo entre frames.
+     */
+    private final Histograma intervaloFrame = new Histograma();
+    /**
+     * Diferença entre dois intervalos de frame seguidos.
+     */
+    private final Histograma jitterFrame = new Histograma();
+    /**
+     * Duração da actualização do painel de controlo.
+     */
+    private final Histograma painel = new Histograma();
+    /**
+     * Latência entre o pedido de um jato e o tick em que é aplicado.
+     */
+    private final Histograma latenciaJato = new Histograma();
+    /**
+     * Instante do último frame, ou 0 se ainda não houve nenhum.
+     */
+    private final AtomicLong ultimoFrame = new AtomicLong();
+    /**
+     * Intervalo entre os dois últimos frames, ou -1 se ainda não se sabe.
+     */
+    private final AtomicLong ultimoIntervalo = new AtomicLong(-1);
+
+    /**
+     * Só há a instância devolvida pelo <code>get()</code>.
+     */
+    private MetricasJogo() {
+    }
+
+    /**
+     * @return As métricas do jogo.
+     */
+    public static MetricasJogo get() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Regista a duração de um tick da física.
+     *
+     * @param nanos Duração em nanosegundos.
+     */
+    void tick(long nanos) {
+        tick.registar(nanos);
+    }
+
+    /**
+     * Regista um frame: a duração do desenho e, a partir do instante em que
+     * começou, o intervalo e o jitter em relação ao frame anterior.
+     *
+     * @param inicio Instante, dado pelo <code>System.nanoTime()</code>, em que
+     * o desenho começou.
+     * @param nanos Duração do desenho em nanosegundos.
+     */
+    void frame(long inicio, long nanos) {
+        desenho.registar(nanos);
+        long anterior = ultimoFrame.getAndSet(inicio);
+        if (anterior != 0) {
+            long intervalo = inicio - anterior;
+            intervaloFrame.registar(intervalo);
+            long intervaloAnterior = ultimoIntervalo.getAndSet(intervalo);
+            if (intervaloAnterior >= 0) {
+                jitterFrame.registar(Math.abs(intervalo - intervaloAnterior));
+            }
+        }
+    }
+
+    /**
+     * Regista a duração de uma actualização do painel de controlo.
+     *
+     * @param nanos Duração em nanosegundos.
+     */
+    void painel(long nanos) {
+        painel.registar(nanos);
+    }
+
+    /**
+     * Regista a latência de um jato.
+     *
+     * @param nanos Latência em nanosegundos.
+     */
+    void latenciaJato(long nanos) {
+        latenciaJato.registar(nanos);
+    }
+
+    @Override
+    public long getTickContagem() {
+        return tick.getTotal();
+    }
+
+    @Override
+    public long getTickP50() {
+        return tick.getPercentil(50) / 1000;
+    }
+
+    @Override
+    public long getTickP99() {
+        return tick.getPercentil(99) / 1000;
+    }
+
+    @Override
+    public long getTickMaximo() {
+        return tick.getMaximo() / 1000;
+    }
+
+    @Override
+    public long getDesenhoContagem() {
+        return desenho.getTotal();
+    }
+
+    @Override
+    public long getDesenhoP50() {
+        return desenho.getPercentil(50) / 1000;
+    }
+
+    @Override
+    public long getDesenhoP99() {
+        return desenho.getPercentil(99) / 1000;
+    }
+
+    @Override
+    public long getDesenhoMaximo() {
+        return desenho.getMaximo() / 1000;
+    }
+
+    @Override
+    public long getIntervaloFrameP50() {
+        return intervaloFrame.getPercentil(50) / 1000;
+    }
+
+    @Override
+    public long getJitterFrameP50() {
+        return jitterFrame.getPercentil(50) / 1000;
+    }
+
+    @Override
+    public long getJitterFrameP99() {
+        return jitterFrame.getPercentil(99) / 1000;
+    }
+
+    @Override
+    public long getPainelP50() {
+        return painel.getPercentil(50) / 1000;
+    }
+
+    @Override
+    public long getPainelP99() {
+        return painel.getPercentil(99) / 1000;
+    }
+
+    @Override
+    public long getJatoContagem() {
+        return latenciaJato.getTotal();
+    }
+
+    @Override
+    public long getLatenciaJatoP50() {
+        return latenciaJato.getPercentil(50) / 1000;
+    }
+
+    @Override
+    public long getLatenciaJatoP99() {
+        return latenciaJato.getPercentil(99) / 1000;
+    }
+
+    @Override
+    public long getLatenciaJatoMaximo() {
+        return latenciaJato.getMaximo() / 1000;
+    }
+
+    @Override
+    public void limpar() {
+        tick.limpar();
+        desenho.limpar();
+        intervaloFrame.limpar();
+        jitterFrame.limpar();
+        painel.limpar();
+        latenciaJato.limpar();
+        ultimoFrame.set(0);
+        ultimoIntervalo.set(-1);
+    }
+}
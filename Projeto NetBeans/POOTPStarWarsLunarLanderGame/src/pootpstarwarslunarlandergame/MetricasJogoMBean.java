@@ -0,0 +1,106 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+/**
+ * Interface JMX das métricas do jogo, para se poderem ler com o jconsole ou
+ * outra consola JMX. Todos os tempos estão em microsegundos.
+ *
+ * @author C.M.P.Soares
+ * @see MetricasJogo
+ */
+public interface MetricasJogoMBean {
+
+    /**
+     * @return Número de ticks da física medidos.
+     */
+    long getTickContagem();
+
+    /**
+     * @return Mediana da duração de um tick da física.
+     */
+    long getTickP50();
+
+    /**
+     * @return Percentil 99 da duração de um tick da física.
+     */
+    long getTickP99();
+
+    /**
+     * @return Maior duração de um tick da física.
+     */
+    long getTickMaximo();
+
+    /**
+     * @return Número de frames desenhados.
+     */
+    long getDesenhoContagem();
+
+    /**
+     * @return Mediana da duração do desenho de um frame.
+     */
+    long getDesenhoP50();
+
+    /**
+     * @return Percentil 99 da duração do desenho de um frame.
+     */
+    long getDesenhoP99();
+
+    /**
+     * @return Maior duração do desenho de um frame.
+     */
+    long getDesenhoMaximo();
+
+    /**
+     * @return Mediana do intervalo entre frames.
+     */
+    long getIntervaloFrameP50();
+
+    /**
+     * @return Mediana do jitter, a diferença entre dois intervalos de frame
+     * seguidos.
+     */
+    long getJitterFrameP50();
+
+    /**
+     * @return Percentil 99 do jitter entre frames.
+     */
+    long getJitterFrameP99();
+
+    /**
+     * @return Mediana da duração da actualização do painel de controlo.
+     */
+    long getPainelP50();
+
+    /**
+     * @return Percentil 99 da duração da actualização do painel de controlo.
+     */
+    long getPainelP99();
+
+    /**
+     * @return Número de jatos medidos.
+     */
+    long getJatoContagem();
+
+    /**
+     * @return Mediana da latência entre o pedido de um jato e o tick em que é
+     * aplicado.
+     */
+    long getLatenciaJatoP50();
+
+    /**
+     * @return Percentil 99 da latência dos jatos.
+     */
+    long getLatenciaJatoP99();
+
+    /**
+     * @return Maior latência de um jato.
+     */
+    long getLatenciaJatoMaximo();
+
+    /**
+     * Esquece todas as medições feitas até agora.
+     */
+    void limpar();
+}
@@ -0,0 +1,386 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Motor que simula um lote de naves de uma só vez, para afinação e treino de
+ * agentes. Em vez de um Nivel, uma Nave e um Astro por nave, o estado de todas
+ * as naves está em arrays de inteiros (altitude, velocidade, combustível, jatos
+ * em espera, gravidade, ...), indexados pelo número da nave.
+ * <p>
+ * O tick é o mesmo do <code>Simulacao.step()</code>, incluindo o caso de o
+ * combustível poder ficar negativo no último jato e ser posto a zero no tick
+ * seguinte em que há um jato em espera. Cada condição do tick é calculada
+ * como 0 ou 1 e usada em multiplicações, em vez de ifs, para o ciclo não ter
+ * saltos e o JIT o poder vectorizar. Os lotes grandes são divididos em
+ * intervalos por tarefas fork/join.
+ *
+ * @author C.M.P.Soares
+ * @see Simulacao#step()
+ */
+public class MotorLote {
+
+    /**
+     * Número de naves a partir do qual um intervalo é dividido em dois.
+     */
+    private static final int NAVES_POR_TAREFA = 16384;
+    /**
+     * Número de naves do lote.
+     */
+    private final int tamanho;
+    /**
+     * Altitude vigente de cada nave.
+     */
+    private final int[] altitude;
+    /**
+     * Velocidade vigente de cada nave.
+     */
+    private final int[] velocidade;
+    /**
+     * Combustível de cada nave.
+     */
+    private final int[] combustivel;
+    /**
+     * Jatos em espera de cada nave.
+     */
+    private final int[] jatos;
+    /**
+     * Aceleração da gravidade do astro de cada nave.
+     */
+    private final int[] gravidade;
+    /**
+     * Aceleração por jato de cada nave.
+     */
+    private final int[] aceleracaoJato;
+    /**
+     * Combustível gasto por jato de cada nave.
+     */
+    private final int[] gastoJato;
+    /**
+     * Altitude inicial do nível de cada nave.
+     */
+    private final int[] altitudeInicial;
+    /**
+     * Velocidade máxima de aterragem de cada nave.
+     */
+    private final int[] velocidadeMaxima;
+    /**
+     * Ticks executados por cada nave desde o início do nível.
+     */
+    private final int[] ticks;
+    /**
+     * 1 se a nave já tocou no solo, 0 caso contrário.
+     */
+    private final int[] aterrou;
+    /**
+     * Conjunto de threads onde correm os intervalos.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Construtor que usa o pool partilhado, com uma thread por processador.
+     *
+     * @param tamanho Número de naves do lote.
+     * @see PoolPartilhado
+     */
+    public MotorLote(int tamanho) {
+        this(tamanho, PoolPartilhado.get());
+    }
+
+    /**
+     * Construtor que usa um ForkJoinPool próprio.
+     *
+     * @param tamanho Número de naves do lote.
+     * @param pool Conjunto de threads onde correm os intervalos.
+     */
+    public MotorLote(int tamanho, ForkJoinPool pool) {
+        this.tamanho = tamanho;
+        this.pool = pool;
+        altitude = new int[tamanho];
+        velocidade = new int[tamanho];
+        combustivel = new int[tamanho];
+        jatos = new int[tamanho];
+        gravidade = new int[tamanho];
+        aceleracaoJato = new int[tamanho];
+        gastoJato = new int[tamanho];
+        altitudeInicial = new int[tamanho];
+        velocidadeMaxima = new int[tamanho];
+        ticks = new int[tamanho];
+        aterrou = new int[tamanho];
+    }
+
+    /**
+     * Põe uma nave no início do nível(level) indicado, com os mesmos
+     * parâmetros da Simulacao.
+     *
+     * @param i Número da nave.
+     * @param difficulty Nível de dificuldade do jogo.
+     * @param level Nível(level) a simular.
+     */
+    public void iniciar(int i, int difficulty, int level) {
+        iniciar(i, new Simulacao(difficulty, level));
+    }
+
+    /**
+     * Copia para uma nave o estado de uma Simulacao.
+     *
+     * @param i Número da nave.
+     * @param simulacao Simulação a copiar.
+     */
+    public void iniciar(int i, Simulacao simulacao) {
+        altitude[i] = simulacao.getAltitude();
+        velocidade[i] = simulacao.getVelocidadeActual();
+        combustivel[i] = simulacao.getCombustivel();
+        jatos[i] = simulacao.getJatos();
+        gravidade[i] = simulacao.getAstro().getAceleracao();
+        aceleracaoJato[i] = simulacao.getNave().getAceleracaoPorJato();
+        gastoJato[i] = simulacao.getNave().getGastoPorClick();
+        altitudeInicial[i] = simulacao.getAltitudeInicial();
+        velocidadeMaxima[i] = simulacao.getVelocidadeMaxima();
+        ticks[i] = simulacao.getTick();
+        aterrou[i] = simulacao.isAterrou() ? 1 : 0;
+    }
+
+    /**
+     * Põe todas as naves no início do mesmo nível(level).
+     *
+     * @param difficulty Nível de dificuldade do jogo.
+     * @param level Nível(level) a simular.
+     */
+    public void iniciarTodas(int difficulty, int level) {
+        Simulacao simulacao = new Simulacao(difficulty, level);
+        for (int i = 0; i < tamanho; i++) {
+            iniciar(i, simulacao);
+        }
+    }
+
+    /**
+     * Adiciona um jato em espera a uma nave.
+     *
+     * @param i Número da nave.
+     */
+    public void hitJato(int i) {
+        jatos[i]++;
+    }
+
+    /**
+     * Avança todas as naves um tick.
+     */
+    public void step() {
+        step(1);
+    }
+
+    /**
+     * Avança todas as naves vários ticks seguidos. Cada intervalo de naves faz
+     * os ticks todos de uma vez, enquanto os seus arrays estão na cache.
+     *
+     * @param n Número de ticks.
+     */
+    public void step(int n) {
+        if (tamanho <= NAVES_POR_TAREFA) {
+            step(0, tamanho, n);
+        } else {
+            pool.invoke(new Intervalo(0, tamanho, n));
+        }
+    }
+
+    /**
+     * Avança as naves de um intervalo vários ticks seguidos.
+     *
+     * @param de Primeira nave do intervalo.
+     * @param ate Nave a seguir à última do intervalo.
+     * @param n Número de ticks.
+     */
+    void step(int de, int ate, int n) {
+        for (int t = 0; t < n; t++) {
+            for (int i = de; i < ate; i++) {
+                int activa = aterrou[i] ^ 1;
+                int alt = altitude[i];
+                int vel = velocidade[i] - gravidade[i] * activa;
+                // (x - 1) >>> 31 é 1 se x <= 0, e (-x) >>> 31 é 1 se x > 0.
+                int aterra = activa & ((alt - 1) >>> 31);
+                int voa = activa ^ aterra;
+                int comJato = voa & ((-jatos[i]) >>> 31);
+                int comCombustivel = (-combustivel[i]) >>> 31;
+                int queima = comJato & comCombustivel;
+                int semCombustivel = comJato ^ queima;
+                combustivel[i] = (combustivel[i] - gastoJato[i] * queima) * (semCombustivel ^ 1);
+                vel = vel + aceleracaoJato[i] * queima;
+                jatos[i] = jatos[i] - queima;
+                velocidade[i] = vel;
+                altitude[i] = (alt + vel * voa) * (aterra ^ 1);
+                ticks[i] = ticks[i] + activa;
+                aterrou[i] = aterrou[i] | aterra;
+            }
+        }
+    }
+
+    /**
+     * Tarefa fork/join que divide o lote em intervalos.
+     */
+    private final class Intervalo extends RecursiveAction {
+
+        /**
+         * Versão da classe para a serialização.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Primeira nave do intervalo.
+         */
+        private final int de;
+        /**
+         * Nave a seguir à última do intervalo.
+         */
+        private final int ate;
+        /**
+         * Número de ticks.
+         */
+        private final int n;
+
+        /**
+         * @param de Primeira nave do intervalo.
+         * @param ate Nave a seguir à última do intervalo.
+         * @param n Número de ticks.
+         */
+        Intervalo(int de, int ate, int n) {
+            this.de = de;
+            this.ate = ate;
+            this.n = n;
+        }
+
+        @Override
+        protected void compute() {
+            if (ate - de <= NAVES_POR_TAREFA) {
+                step(de, ate, n);
+            } else {
+                int meio = (de + ate) >>> 1;
+                invokeAll(new Intervalo(de, meio, n), new Intervalo(meio, ate, n));
+            }
+        }
+    }
+
+    /**
+     * @return Número de naves que já tocaram no solo.
+     */
+    public int contarAterradas() {
+        int total = 0;
+        for (int i = 0; i < tamanho; i++) {
+            total += aterrou[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return Número de naves do lote.
+     */
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return 'true' se a nave já tocou no solo.
+     */
+    public boolean isAterrou(int i) {
+        return aterrou[i] != 0;
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return 'true' se a nave já aterrou sem ultrapassar a velocidade
+     * máxima.
+     * @see Simulacao#isNivelGanho()
+     */
+    public boolean isNivelGanho(int i) {
+        return aterrou[i] != 0 && -velocidade[i] <= velocidadeMaxima[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Altitude vigente da nave.
+     */
+    public int getAltitude(int i) {
+        return altitude[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Altitude inicial do nível da nave.
+     */
+    public int getAltitudeInicial(int i) {
+        return altitudeInicial[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Velocidade vigente da nave.
+     */
+    public int getVelocidade(int i) {
+        return velocidade[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Velocidade máxima de aterragem da nave.
+     */
+    public int getVelocidadeMaxima(int i) {
+        return velocidadeMaxima[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Combustível da nave.
+     */
+    public int getCombustivel(int i) {
+        return combustivel[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Jatos em espera da nave.
+     */
+    public int getJatos(int i) {
+        return jatos[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Aceleração da gravidade do Astro da nave.
+     */
+    public int getGravidade(int i) {
+        return gravidade[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Aceleração dada por um jato da nave.
+     */
+    public int getAceleracaoJato(int i) {
+        return aceleracaoJato[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Ticks executados pela nave desde o início do nível.
+     */
+    public int getTick(int i) {
+        return ticks[i];
+    }
+
+    /**
+     * @param i Número da nave.
+     * @return Percentagem em que a nave se encontra de finalizar o nível.
+     * @see Simulacao#getPercentNivel()
+     */
+    public double getPercentNivel(int i) {
+        if (aterrou[i] != 0) {
+            return 1;
+        }
+        double percent = (double) (altitudeInicial[i] - altitude[i]) / altitudeInicial[i];
+        return percent > 1 ? 1 : percent;
+    }
+}
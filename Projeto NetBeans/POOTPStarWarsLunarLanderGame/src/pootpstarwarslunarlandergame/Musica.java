@@ -0,0 +1,221 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Música de fundo tocada em streaming. Em vez de descodificar a música toda
+ * para um Clip, uma thread própria lê-a aos bocados e escreve-os numa
+ * SourceDataLine com um buffer pequeno (cerca de um quarto de segundo), e
+ * volta ao início quando a música acaba. A música é procurada no classpath,
+ * ao lado desta classe, e, se não estiver lá, num ficheiro na pasta de
+ * trabalho, como antigamente. O projecto não inclui a música: para ela ir
+ * dentro do jar copia-se o ficheiro para junto desta classe em
+ * <code>src</code>, senão tem de estar na pasta de onde se corre o jogo.
+ * <p>
+ * A thread tem uma prioridade só um pouco acima da normal, para não tirar
+ * tempo à thread do Swing nem à da física; o buffer da linha chega para
+ * aguentar os atrasos do escalonador.
+ *
+ * @author C.M.P.Soares
+ */
+class Musica implements Runnable {
+
+    /**
+     * Duração, em segundos, do buffer da SourceDataLine.
+     */
+    private static final float SEGUNDOS_BUFFER = 0.25f;
+    /**
+     * Nome do recurso, ou do ficheiro, com a música.
+     */
+    private final String nome;
+    /**
+     * Indica se a música está em pausa.
+     */
+    private boolean pausada;
+    /**
+     * Indica se a música deve parar de vez.
+     */
+    private volatile boolean terminada;
+    /**
+     * Linha onde a música está a ser tocada.
+     */
+    private SourceDataLine linha;
+    /**
+     * Música aberta e ainda por tocar até ao fim. Depois de preparada só é
+     * usada pela thread da música.
+     */
+    private AudioInputStream audio;
+    /**
+     * Bocado da música lido de cada vez, com um quarto do tamanho do buffer
+     * da linha.
+     */
+    private byte[] bocado;
+    /**
+     * Thread que lê a música e a escreve na linha.
+     */
+    private Thread thread;
+
+    /**
+     * Construtor obrigatório para criar a música de fundo.
+     *
+     * @param nome Nome do recurso, ou do ficheiro, com a música.
+     */
+    Musica(String nome) {
+        this.nome = nome;
+    }
+
+    /**
+     * Começa a tocar a música numa thread própria. Não espera que a música
+     * seja aberta.
+     */
+    void start() {
+        thread = new Thread(this, "Musica");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY + 1);
+        thread.start();
+    }
+
+    /**
+     * Põe a música em pausa.
+     */
+    synchronized void pausar() {
+        pausada = true;
+        if (linha != null) {
+            linha.stop();
+        }
+    }
+
+    /**
+     * Continua a música a partir de onde foi posta em pausa.
+     */
+    synchronized void retomar() {
+        pausada = false;
+        if (linha != null) {
+            linha.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Pára a música de vez e liberta a linha de som.
+     */
+    void stop() {
+        terminada = true;
+        retomar();
+    }
+
+    /**
+     * @return 'true' se a música está em pausa.
+     */
+    synchronized boolean isPausada() {
+        return pausada;
+    }
+
+    /**
+     * Abre a música e a linha de som, sem começar a tocar. Pode ser chamado
+     * noutra thread antes do <code>start()</code>, para a música estar pronta
+     * quando for precisa; se não for, é chamado pela thread da música.
+     *
+     * @throws UnsupportedAudioFileException Se o formato não for suportado.
+     * @throws IOException Se não for possível ler a música.
+     * @throws LineUnavailableException Se a linha de som estiver ocupada.
+     */
+    synchronized void preparar() throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+        if (linha != null) {
+            return;
+        }
+        audio = abrir();
+        AudioFormat formato = audio.getFormat();
+        int tamanhoBuffer = (int) (formato.getFrameRate() * SEGUNDOS_BUFFER) * formato.getFrameSize();
+        SourceDataLine nova = AudioSystem.getSourceDataLine(formato);
+        nova.open(formato, tamanhoBuffer);
+        bocado = new byte[Math.max(1, nova.getBufferSize() / 4 / formato.getFrameSize()) * formato.getFrameSize()];
+        linha = nova;
+    }
+
+    @Override
+    public void run() {
+        try {
+            preparar();
+            synchronized (this) {
+                if (!pausada) {
+                    linha.start();
+                }
+            }
+            while (!terminada) {
+                if (audio == null) {
+                    audio = abrir();
+                }
+                try {
+                    for (int lidos = audio.read(bocado); lidos > 0 && !terminada; lidos = audio.read(bocado)) {
+                        esperarSeEmPausa();
+                        linha.write(bocado, 0, lidos);
+                    }
+                } finally {
+                    audio.close();
+                    audio = null;
+                }
+            }
+        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException | IllegalArgumentException e) {
+            // IllegalArgumentException: não há nenhuma linha de som para o
+            // formato da música (por exemplo, sem placa de som).
+            System.err.println("Error initializing music");
+            Logger.getLogger(Musica.class.getName()).log(Level.SEVERE, null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (linha != null) {
+                linha.close();
+            }
+        }
+    }
+
+    /**
+     * Bloqueia a thread da música enquanto estiver em pausa.
+     *
+     * @throws InterruptedException Se a thread for interrompida.
+     */
+    private synchronized void esperarSeEmPausa() throws InterruptedException {
+        while (pausada && !terminada) {
+            wait();
+        }
+    }
+
+    /**
+     * Abre a música, do classpath ou da pasta de trabalho, já convertida para
+     * PCM se vier noutro formato.
+     *
+     * @return A música pronta a ler desde o início.
+     * @throws UnsupportedAudioFileException Se o formato não for suportado.
+     * @throws IOException Se não for possível ler a música.
+     */
+    private AudioInputStream abrir() throws UnsupportedAudioFileException, IOException {
+        InputStream entrada = Musica.class.getResourceAsStream(nome);
+        if (entrada == null) {
+            entrada = new FileInputStream(new File(nome));
+        }
+        AudioInputStream audio = AudioSystem.getAudioInputStream(new BufferedInputStream(entrada));
+        AudioFormat formato = audio.getFormat();
+        if (formato.getEncoding() != AudioFormat.Encoding.PCM_SIGNED && formato.getEncoding() != AudioFormat.Encoding.PCM_UNSIGNED) {
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, formato.getSampleRate(), 16, formato.getChannels(),
+                    formato.getChannels() * 2, formato.getSampleRate(), false);
+            audio = AudioSystem.getAudioInputStream(pcm, audio);
+        }
+        return audio;
+    }
+}
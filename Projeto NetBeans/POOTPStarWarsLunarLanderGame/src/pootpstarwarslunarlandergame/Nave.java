@@ -98,9 +98,11 @@ public class Nave {
 
         if (combustivel <= 0) {
             combustivel = 0;
+            EventosJfr.jato(combustivel, false);
             return false;
         } else {
             combustivel = combustivel - GASTO_POR_CLICK;
+            EventosJfr.jato(combustivel, true);
             return true;
         }
 
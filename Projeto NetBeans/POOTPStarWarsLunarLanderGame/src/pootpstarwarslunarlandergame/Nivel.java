@@ -3,9 +3,16 @@
  */
 package pootpstarwarslunarlandergame;
 
+import java.awt.DisplayMode;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 /**
@@ -13,70 +20,100 @@ import javax.swing.Timer;
  * e sempre que se chega ao fim do nível passa, conforme escolha do utilizador
  * para o nível seguinte, repete o mesmo ou recomeça o jogo. Funciona de forma
  * independente e actualiza o Interface Gráfico do Utilizador conforme vai
- * jogando. Em suma, é o centro do funcionamento correcto do jogo.
+ * jogando. Em suma, é o centro do funcionamento correcto do jogo. O estado e
+ * as regras de cada tick estão na Simulacao, este Nivel só a faz avançar e
+ * mostra o resultado no GUI.
+ * <p>
+ * Se a opção <code>lander.fisica.hz</code> estiver definida, em vez do Timer
+ * é usado um CicloJogo com passo fixo e desenho interpolado. Nesse caso a
+ * física publica um EstadoNivel imutável a cada frame e a thread do Swing
+ * mostra o mais recente, sem que a física tenha de esperar pelo Swing.
  *
+ * @see Opcoes#FISICA_HZ
  * @author C.M.P.Soares
  */
 public class Nivel {
 
     /**
-     * Variável que contém o valor da altitude vigente.
+     * Núcleo da simulação com o estado do nível actual.
+     *
+     * @see Simulacao
      */
-    private int altitude;
+    private final Simulacao simulacao;
     /**
-     * Valor da altitude inicial do nível.
+     * Indica se o nível actual está a ser gravado no replay do GUI. Um nível
+     * retomado de um Instantaneo a meio não é gravado, porque o replay só sabe
+     * reproduzir níveis desde o início.
+     *
+     * @see Instantaneo
      */
-    private int altitudeInicial;
+    private boolean aGravarReplay;
     /**
-     * Valor da velocidade máxima para se conseguir passar de nível.
+     * Jatos pedidos pelo jogador que ainda não chegaram à simulação.
+     *
+     * @see FilaJatos
      */
-    private int velocidadeMaxima;
+    private final FilaJatos filaJatos = new FilaJatos();
     /**
-     * Valor da velocidade actualizada de segundo em segundo.
+     * Instantes dos jatos retirados da fila, reutilizado em todos os ticks.
+     * Só é usado pela thread da física.
      */
-    private int velocidadeActual;
+    private final long[] jatosRetirados = new long[FilaJatos.CAPACIDADE];
     /**
-     * Variável que nos indica quantos 'jatos' ainda se encontram em espera.
+     * Combustível da nave no tick anterior, para saber quando um jato foi
+     * gasto. Só é usado pela thread da física.
      */
-    private int jatos;
+    private int combustivelAnterior;
     /**
-     * Nível de dificuldade do jogo.
-     *
-     * @see Nave#NAVE_EASY
-     * @see Nave#NAVE_MEDIUM
-     * @see Nave#NAVE_HARD
-     * @see Nave#NAVE_VERY_HARD
+     * Latência, em nanosegundos, entre o pedido do último jato e o tick em
+     * que foi aplicado.
      */
-    private int difficulty;
+    private volatile long latenciaJato;
     /**
-     * Valor inteiro que define dentro do nível/ grau de dificuldade qual é o
-     * nível(level) em que se encontra o jogador.
+     * Maior latência de um jato, em nanosegundos, até agora.
      */
-    private int level;
+    private volatile long latenciaJatoMaxima;
     /**
-     * Percentagem em que a nave se encontra de finalizar o nível(level). O
-     * valor 1.00 significa que aterrou.
+     * Timer para se poder efectuar a animação e calculo do jogo de x em x
+     * segundos (1000 microsegundos).
+     *
+     * @see Timer
      */
-    private double percentNivel;
+    private Timer timer;
     /**
-     * Instância de um Astro para guardar/utilizar dados actuais do nível.
+     * Ciclo de jogo usado em vez do Timer quando a física corre a uma
+     * frequência própria.
      *
-     * @see Astro
+     * @see CicloJogo
      */
-    private Astro astro;
+    private CicloJogo ciclo;
     /**
-     * Instância de uma Nave para guardar/utilizar dados actuais do nível.
-     *
-     * @see Nave
+     * Quem recebe os pedidos de desenho e o fim de nível do CicloJogo e os
+     * passa para a thread do Swing.
      */
-    private Nave nave;
+    private CicloJogo.Consumidor consumidorCiclo;
     /**
-     * Timer para se poder efectuar a animação e calculo do jogo de x em x
-     * segundos (1000 microsegundos).
+     * Indica se já há um desenho pedido à thread do Swing que ainda não foi
+     * feito, para não se encherem a fila de eventos.
+     */
+    private final AtomicBoolean desenhoPendente = new AtomicBoolean();
+    /**
+     * Último estado publicado pela thread da física. Só essa thread escreve e
+     * só a thread do Swing lê; os estados intermédios que o Swing não chegue a
+     * ler são simplesmente substituídos.
      *
-     * @see Timer
+     * @see EstadoNivel
      */
-    private Timer timer;
+    private final AtomicReference<EstadoNivel> estadoPublicado = new AtomicReference<>();
+    /**
+     * Último estado mostrado no GUI. Só é usado na thread do Swing.
+     */
+    private EstadoNivel estadoMostrado;
+    /**
+     * Tarefa, reutilizada em todos os frames, que actualiza o GUI com os
+     * valores pedidos pelo CicloJogo.
+     */
+    private Runnable desenho;
     /**
      * Apontador para o GUI em utilização.
      *
@@ -96,50 +133,87 @@ public class Nivel {
      * @param guiUtilizado Apontador para o GUI em utilização.
      */
     public Nivel(int difficulty, GUI guiUtilizado) {
-        this.difficulty = difficulty;
-        this.guiUtilizado = guiUtilizado;
-
-        level = 1;
+        this(new Simulacao(difficulty), guiUtilizado);
+    }
 
-        if (difficulty == Nave.NAVE_EASY) {
-            percentNivel = 0;
-            jatos = 0;
-            velocidadeActual = 0;
-            velocidadeMaxima = 50;
-            altitudeInicial = 100;
-            altitude = altitudeInicial;
-            astro = new Astro(5, level);
-            nave = new Nave(8, 51, 1);
-        } else {
-            setNewLevelParametres();
-        }
+    /**
+     * Construtor que usa uma Simulacao já preparada, por exemplo durante o
+     * arranque do jogo.
+     *
+     * @param simulacao Simulação do primeiro nível.
+     * @param guiUtilizado Apontador para o GUI em utilização.
+     * @see Arranque
+     */
+    Nivel(final Simulacao simulacao, GUI guiUtilizado) {
+        this.guiUtilizado = guiUtilizado;
+        this.simulacao = simulacao;
 
         timer = new Timer(1000, new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                getGUI().updateLevelValues(altitude, nave.getCombustivel(), velocidadeActual);
-                getGUI().updateSpaceShip(percentNivel);
-                velocidadeActual = velocidadeActual - astro.getAceleracao();
-                if (altitude <= 0) {
+                getGUI().getFantasmas().gravar(simulacao.getPercentNivel());
+                getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
+                getGUI().updateSpaceShip(simulacao.getPercentNivel());
+                double percentMostrado = simulacao.getPercentNivel();
+                long inicio = System.nanoTime();
+                Object evento = EventosJfr.iniciarTick();
+                aplicarJatos();
+                boolean aterrou = simulacao.step();
+                EventosJfr.terminarTick(evento, simulacao, aterrou);
+                actualizarParticulas(1, percentMostrado);
+                MetricasJogo.get().tick(System.nanoTime() - inicio);
+                if (aterrou) {
                     stopLevel();
-                    altitude = 0;
-                    percentNivel = (double) 1;
-                    getGUI().updateLevelValues(altitude, nave.getCombustivel(), velocidadeActual);
-                    getGUI().updateSpaceShip(percentNivel);
+                    getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
+                    getGUI().updateSpaceShip(simulacao.getPercentNivel());
                     nivelActual.EOLevel();
-                } else if (jatos > 0) {
-                    if (nave.useCombustivel()) {
-                        velocidadeActual = velocidadeActual + nave.getAceleracaoPorJato();
-                        jatos--;
-                    }
-                }
-                altitude = altitude + velocidadeActual;
-                percentNivel = (double) (altitudeInicial - altitude) / altitudeInicial;
-                if (percentNivel > 1) {
-                    percentNivel = 1;
                 }
             }
         });
+        desenho = new Runnable() {
+            @Override
+            public void run() {
+                desenhoPendente.set(false);
+                EstadoNivel estado = estadoPublicado.get();
+                if (estado != null && estado != estadoMostrado) {
+                    estadoMostrado = estado;
+                    getGUI().mostrarEstado(estado);
+                }
+            }
+        };
+
+        consumidorCiclo = new CicloJogo.Consumidor() {
+            @Override
+            public void entrada(Simulacao simulacao) {
+                getGUI().getFantasmas().gravar(simulacao.getPercentNivel());
+                actualizarParticulas(1.0 / Opcoes.FISICA_HZ, simulacao.getPercentNivel());
+                aplicarJatos();
+            }
+
+            @Override
+            public void desenhar(Simulacao simulacao, double alfa) {
+                EstadoNivel estado = new EstadoNivel(simulacao, alfa);
+                estadoPublicado.lazySet(estado);
+                if (getGUI().isRenderActivo()) {
+                    getGUI().updateSpaceShip(estado.getPercentNivel());
+                }
+                if (desenhoPendente.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(desenho);
+                }
+            }
+
+            @Override
+            public void fimDeNivel(final Simulacao simulacao) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
+                        getGUI().updateSpaceShip(simulacao.getPercentNivel());
+                        nivelActual.EOLevel();
+                    }
+                });
+            }
+        };
         nivelActual = getNivel();
     }
 
@@ -167,25 +241,83 @@ public class Nivel {
     /**
      * Método que faz um reset as variáveis necessárias para começar um novo
      * Nível(level).
+     *
+     * @see Simulacao#setNewLevelParametres()
      */
     private void setNewLevelParametres() {
-        percentNivel = 0;
-        velocidadeActual = 0;
-        jatos = 0;
+        simulacao.setNewLevelParametres();
+        EventosJfr.novoNivel(simulacao);
+    }
+
+    /**
+     * Método que adiciona um jato quanto este é chamado. O jato fica na fila,
+     * com o instante do pedido, até ao início do próximo tick. Tem de ser
+     * chamado na thread do Swing.
+     *
+     * @see FilaJatos
+     */
+    public void hitJato() {
+        filaJatos.oferecer(System.nanoTime());
+    }
 
-        velocidadeMaxima = 50 + (5 + difficulty) * level / difficulty;
+    /**
+     * Passa para a simulação os jatos pedidos desde o tick anterior, grava-os
+     * no replay com o tick em que são aplicados e mede a latência de cada
+     * um. Chamado na thread da física, no início de cada tick.
+     */
+    private void aplicarJatos() {
+        int n = filaJatos.drenar(jatosRetirados);
+        if (n == 0) {
+            return;
+        }
+        long agora = System.nanoTime();
+        long maxima = latenciaJatoMaxima;
+        for (int i = 0; i < n; i++) {
+            if (aGravarReplay) {
+                getGUI().getReplay().registarJato(simulacao.getTick());
+            }
+            simulacao.hitJato();
+            MetricasJogo.get().latenciaJato(agora - jatosRetirados[i]);
+            maxima = Math.max(maxima, agora - jatosRetirados[i]);
+        }
+        latenciaJato = agora - jatosRetirados[n - 1];
+        latenciaJatoMaxima = maxima;
+    }
 
-        altitude = altitudeInicial = 100 * (level + difficulty);
+    /**
+     * Avança as partículas um tick e lança o fumo de um jato se a nave gastou
+     * combustível desde o tick anterior (isto é, se o
+     * <code>Nave.useCombustivel()</code> teve sucesso). Chamado na thread da
+     * física.
+     *
+     * @param dt Duração do tick em segundos.
+     * @param percentNivel Percentagem do nível onde a nave está desenhada.
+     * @see Particulas
+     */
+    private void actualizarParticulas(double dt, double percentNivel) {
+        Particulas particulas = getGUI().getParticulas();
+        particulas.actualizar((float) dt);
+        int combustivel = simulacao.getCombustivel();
+        if (combustivel < combustivelAnterior) {
+            particulas.jato(percentNivel);
+        }
+        combustivelAnterior = combustivel;
+        particulas.publicar();
+    }
 
-        astro = new Astro(5 + (level * difficulty / 3), level);
-        nave = new Nave(8 + (level * difficulty / 2), 50 + level * 5, (1 + difficulty) / difficulty);
+    /**
+     * @return Latência, em nanosegundos, entre o pedido do último jato e o
+     * tick em que foi aplicado.
+     */
+    long getLatenciaJato() {
+        return latenciaJato;
     }
 
     /**
-     * Método que adiciona um jato quanto este é chamado.
+     * @return Maior latência de um jato, em nanosegundos, até agora.
      */
-    public void hitJato() {
-        jatos++;
+    long getLatenciaJatoMaxima() {
+        return latenciaJatoMaxima;
     }
 
     /**
@@ -193,7 +325,9 @@ public class Nivel {
      * títulos.
      */
     public String LevelTitleToString() {
-        switch (difficulty) {
+        int level = simulacao.getLevel();
+        Astro astro = simulacao.getAstro();
+        switch (simulacao.getDifficulty()) {
             case Nave.NAVE_VERY_HARD: {
                 return ("Very Hard " + "- nível " + level + " - " + astro.getNomeAstro() + ": ");
             }
@@ -210,28 +344,70 @@ public class Nivel {
     }
 
     /**
-     * Inicia o timer.
+     * Inicia o timer, ou o ciclo de jogo se a física tiver frequência própria,
+     * e começa a gravar o nível no replay e nos fantasmas, sem as partículas do
+     * nível anterior.
      *
      * @see Timer
+     * @see CicloJogo
      */
     public void startLevel() {
-        timer.start();
+        aGravarReplay = simulacao.getTick() == 0;
+        if (aGravarReplay) {
+            getGUI().getReplay().iniciarNivel(simulacao.getDifficulty(), simulacao.getLevel(), simulacao.isParametrosIniciais());
+        }
+        getGUI().getFantasmas().iniciarNivel(simulacao.getDifficulty(), simulacao.getLevel());
+        getGUI().getParticulas().limpar();
+        getGUI().getParticulas().publicar();
+        combustivelAnterior = simulacao.getCombustivel();
+        if (Opcoes.FISICA_HZ > 0) {
+            ciclo = new CicloJogo(simulacao, Opcoes.FISICA_HZ, Opcoes.FISICA_FIXA, frequenciaDesenho(), consumidorCiclo);
+            ciclo.start();
+        } else {
+            timer.start();
+        }
     }
 
     /**
      * @return 'true' se jogo está a correr e 'false' caso contrário.
      */
     public boolean isGameRunning() {
-        return timer.isRunning();
+        return timer.isRunning() || (ciclo != null && ciclo.isRunning());
     }
 
     /**
-     * Para o timer.
+     * Para o timer e o ciclo de jogo. O ciclo de jogo é esperado até acabar
+     * o tick em curso, pelo que a Simulacao pode ser lida logo a seguir; uma
+     * aterragem nesse tick é descartada.
      *
+     * @return 'true' se havia um nível a decorrer que foi parado, 'false' se
+     * já tinha terminado.
      * @see Timer
+     * @see CicloJogo
      */
-    void stopLevel() {
+    boolean stopLevel() {
+        boolean aCorrer = timer.isRunning();
         timer.stop();
+        if (ciclo != null) {
+            aCorrer |= ciclo.stop();
+        }
+        return aCorrer;
+    }
+
+    /**
+     * @return Quantas vezes por segundo se deve desenhar no modo de ciclo de
+     * jogo: a opção <code>lander.render.hz</code> se estiver definida, senão a
+     * frequência do ecrã onde está o GUI (60 Hz se for desconhecida).
+     */
+    private int frequenciaDesenho() {
+        if (Opcoes.RENDER_HZ > 0) {
+            return Opcoes.RENDER_HZ;
+        }
+        int frequencia = getGUI().getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+        if (frequencia == DisplayMode.REFRESH_RATE_UNKNOWN) {
+            frequencia = 60;
+        }
+        return frequencia;
     }
 
     /**
@@ -242,26 +418,45 @@ public class Nivel {
         Object[] optionsLevelCompleted = {"Cancelar", "Começar de Novo", "Recomeçar Nível", "Próximo Nível"};
         Object[] optionsLevelFailed = {"Cancelar", "Começar de Novo", "Recomeçar Nível"};
         int option;
+        int level = simulacao.getLevel();
+        EventosJfr.fimNivel(simulacao);
+        if (aGravarReplay) {
+            getGUI().getReplay().terminarNivel(simulacao.getChecksum());
+        }
+        getGUI().getFantasmas().gravar(simulacao.getPercentNivel());
+        getGUI().getFantasmas().terminarNivel();
+        int lugar = registarPontuacao();
+        if (simulacao.isNivelGanho()) {
+            getGUI().getParticulas().poeira();
+        } else {
+            getGUI().getParticulas().faiscas(simulacao.getPercentNivel());
+        }
+        getGUI().getParticulas().publicar();
+        getGUI().updateSpaceShip(simulacao.getPercentNivel());
 
-        if (-velocidadeActual <= velocidadeMaxima) {
-            option = JOptionPane.showOptionDialog(getGUI(), "Parabéns! Completaste o Nível " + Integer.toString(level) + "!", "Nível Bem Sucedido!", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE, null, optionsLevelCompleted, optionsLevelCompleted[3]);
+        if (simulacao.isNivelGanho()) {
+            String mensagem = "Parabéns! Completaste o Nível " + Integer.toString(level) + "!";
+            if (lugar > 0) {
+                mensagem = mensagem + "\nFicaste em " + lugar + "º lugar nas melhores aterragens deste nível.";
+            }
+            option = JOptionPane.showOptionDialog(getGUI(), mensagem, "Nível Bem Sucedido!", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE, null, optionsLevelCompleted, optionsLevelCompleted[3]);
             if (option == 1) {
-                level = 1;
+                simulacao.setLevel(1);
                 getGUI().updateGUIDashBoardTitle();
                 JOptionPane.showMessageDialog(getGUI(), "Pronto?", LevelTitleToString(), JOptionPane.DEFAULT_OPTION);
                 setNewLevelParametres();
-                getGUI().updateLevelValues(altitude, nave.getCombustivel(), velocidadeActual);
+                getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
                 startLevel();
             } else if (option == 2) {
                 JOptionPane.showMessageDialog(getGUI(), "Pronto?", LevelTitleToString(), JOptionPane.DEFAULT_OPTION);
                 setNewLevelParametres();
-                getGUI().updateLevelValues(altitude, nave.getCombustivel(), velocidadeActual);
+                getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
                 startLevel();
             } else if (option == 3) {
-                level++;
+                simulacao.setLevel(level + 1);
                 setNewLevelParametres();
                 getGUI().updateGUIDashBoardTitle();
-                getGUI().updateLevelValues(altitude, nave.getCombustivel(), velocidadeActual);
+                getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
                 JOptionPane.showMessageDialog(getGUI(), "Pronto?", LevelTitleToString(), JOptionPane.DEFAULT_OPTION);
                 startLevel();
             } else {
@@ -270,16 +465,16 @@ public class Nivel {
         } else {
             option = JOptionPane.showOptionDialog(getGUI(), "Game Over! Perdeu o Nível " + Integer.toString(level) + "!", "Nível Bem Sucedido!", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE, null, optionsLevelFailed, optionsLevelFailed[2]);
             if (option == 1) {
-                level = 1;
+                simulacao.setLevel(1);
                 getGUI().updateGUIDashBoardTitle();
                 JOptionPane.showMessageDialog(getGUI(), "Pronto?", LevelTitleToString(), JOptionPane.DEFAULT_OPTION);
                 setNewLevelParametres();
-                getGUI().updateLevelValues(altitude, nave.getCombustivel(), velocidadeActual);
+                getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
                 startLevel();
             } else if (option == 2) {
                 JOptionPane.showMessageDialog(getGUI(), "Pronto?", LevelTitleToString(), JOptionPane.DEFAULT_OPTION);
                 setNewLevelParametres();
-                getGUI().updateLevelValues(altitude, nave.getCombustivel(), velocidadeActual);
+                getGUI().updateLevelValues(simulacao.getAltitude(), simulacao.getCombustivel(), simulacao.getVelocidadeActual());
                 startLevel();
             } else {
                 JOptionPane.showMessageDialog(getGUI(), "Desistes pa?!", "Loser!", JOptionPane.DEFAULT_OPTION);
@@ -287,10 +482,40 @@ public class Nivel {
         }
     }
 
+    /**
+     * Acrescenta o resultado do nível que acabou às pontuações guardadas.
+     *
+     * @return Posição da aterragem nas melhores do nível, ou 0 se não ficou
+     * entre elas ou as pontuações não estão disponíveis.
+     * @see Pontuacoes
+     */
+    private int registarPontuacao() {
+        Pontuacoes pontuacoes = getGUI().getPontuacoes();
+        if (pontuacoes == null) {
+            return 0;
+        }
+        long duracao = Opcoes.FISICA_HZ > 0 ? (long) simulacao.getTick() * 1000 / Opcoes.FISICA_HZ : simulacao.getTick() * 1000L;
+        try {
+            return pontuacoes.acrescentar(simulacao.getDifficulty(), simulacao.getLevel(), simulacao.isNivelGanho(),
+                    simulacao.getVelocidadeActual(), simulacao.getCombustivel(), (int) Math.min(duracao, Integer.MAX_VALUE));
+        } catch (IOException ex) {
+            Logger.getLogger(Nivel.class.getName()).log(Level.WARNING, "Não foi possível guardar a pontuação.", ex);
+            return 0;
+        }
+    }
+
     /**
      * @return Valor da velocidade máxima para se conseguir passar de nível.
      */
     public int getVelocidadeMaxima() {
-        return velocidadeMaxima;
+        return simulacao.getVelocidadeMaxima();
+    }
+
+    /**
+     * @return O núcleo da simulação usado por este Nivel.
+     * @see Simulacao
+     */
+    public Simulacao getSimulacao() {
+        return simulacao;
     }
 }
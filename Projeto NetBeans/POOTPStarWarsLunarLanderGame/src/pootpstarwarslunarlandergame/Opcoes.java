@@ -0,0 +1,90 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.File;
+
+/**
+ * Classe que reúne as opções do jogo que podem ser escolhidas na linha de
+ * comandos através de propriedades do sistema (por exemplo
+ * <code>-Dlander.fisica.hz=120</code>, que pode ser colocado no
+ * <code>run.jvmargs</code> do projecto). Sem nenhuma propriedade definida o
+ * jogo funciona como sempre funcionou.
+ *
+ * @author C.M.P.Soares
+ */
+final class Opcoes {
+
+    /**
+     * Frequência, em Hz, da física no modo de ciclo de jogo. Com o valor 0
+     * (por omissão) é usado o Timer clássico de um tick por segundo.
+     *
+     * @see CicloJogo
+     */
+    static final int FISICA_HZ = Integer.getInteger("lander.fisica.hz", 0);
+    /**
+     * Se 'true' a física do modo de ciclo de jogo é feita em vírgula fixa,
+     * com resultados iguais em qualquer máquina, em vez de em vírgula
+     * flutuante.
+     *
+     * @see Simulacao#stepFixo(int)
+     */
+    static final boolean FISICA_FIXA = Boolean.getBoolean("lander.fisica.fixa");
+    /**
+     * Frequência, em Hz, do desenho no modo de ciclo de jogo. Com o valor 0
+     * (por omissão) é usada a frequência de actualização do ecrã.
+     *
+     * @see CicloJogo
+     */
+    static final int RENDER_HZ = Integer.getInteger("lander.render.hz", 0);
+    /**
+     * Se 'true' o painel de jogo é substituído por um Canvas desenhado de
+     * forma activa com uma BufferStrategy, em vez de se pedir um
+     * <code>repaint()</code> ao Swing.
+     */
+    static final boolean RENDER_ACTIVO = Boolean.getBoolean("lander.render.activo");
+    /**
+     * Número de buffers da BufferStrategy no desenho activo (2 ou 3).
+     */
+    static final int RENDER_BUFFERS = Integer.getInteger("lander.render.buffers", 2);
+    /**
+     * Se 'true' o desenho activo tenta trocar de página alinhado com o
+     * varrimento do ecrã (vsync).
+     */
+    static final boolean RENDER_VSYNC = Boolean.getBoolean("lander.render.vsync");
+    /**
+     * Altura, em pixels, da imagem interna onde se desenha a cena do jogo
+     * antes de ser escalada para o painel. Com o valor 0 (por omissão) a cena
+     * é desenhada directamente no painel.
+     *
+     * @see FramebufferInterno
+     */
+    static final int RENDER_INTERNO = Integer.getInteger("lander.render.interno", 0);
+    /**
+     * Interpolação usada ao escalar a imagem interna: "vizinho", "bilinear"
+     * (por omissão) ou "bicubico".
+     */
+    static final String RENDER_INTERPOLACAO = System.getProperty("lander.render.interpolacao", "bilinear");
+    /**
+     * Ficheiro onde são guardadas as pontuações, por omissão na pasta do
+     * utilizador.
+     *
+     * @see Pontuacoes
+     */
+    static final String PONTUACOES = System.getProperty("lander.pontuacoes",
+            System.getProperty("user.home") + File.separator + ".starwarslunarlander-pontuacoes");
+    /**
+     * Ficheiro onde fica o jogo suspenso, por omissão na pasta do utilizador.
+     *
+     * @see Instantaneo
+     */
+    static final String INSTANTANEO = System.getProperty("lander.instantaneo",
+            System.getProperty("user.home") + File.separator + ".starwarslunarlander-suspenso");
+
+    /**
+     * Classe só com constantes, não é para ser instanciada.
+     */
+    private Opcoes() {
+    }
+}
@@ -3,9 +3,26 @@
  */
 package pootpstarwarslunarlandergame;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
 /**
  * Classe Driver. Só instância a classe GUI que inicia a interface grafica do
- * jogo. Só contem o method principal <bold>main</bold>.
+ * jogo, na thread do Swing e com o Arranque a preparar em paralelo o que não
+ * depende da janela. Só contem o method principal <bold>main</bold>.
+ * <p>
+ * Com argumentos corre outros modos sem interface gráfica:
+ * <ul>
+ * <li><code>--resolver N</code>: resolve os níveis 1 a N de todas as
+ * dificuldades e mostra os níveis impossíveis.</li>
+ * <li><code>--replay ficheiro [--tempo-real]</code>: reproduz um replay
+ * gravado no jogo, à velocidade máxima ou em tempo real.</li>
+ * <li><code>--servidor [porta]</code>: corre o ServidorJogo, com muitas
+ * sessões de jogo ligadas por TCP, até o processo ser terminado.</li>
+ * </ul>
  *
  * @author C.M.P.Soares
  */
@@ -16,8 +33,87 @@ public class POOTPMoonLanderGame {
      */
     public static void main(String[] args) {
 
-        GUI gui;
-        gui = new GUI();
+        if (args.length > 0 && args[0].equals("--resolver")) {
+            int niveis = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+            new SolucionadorAterragem().relatorio(niveis, System.out);
+            return;
+        }
+
+        if (args.length > 1 && args[0].equals("--replay")) {
+            reproduzirReplay(new File(args[1]), args.length > 2 && args[2].equals("--tempo-real"));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            int porta = args.length > 1 ? Integer.parseInt(args[1]) : ServidorJogo.PORTA;
+            correrServidor(porta);
+            return;
+        }
+
+        //Começar já o trabalho que não depende da janela e construir a
+        //janela na thread do Swing.
+        final Arranque arranque = new Arranque(new Musica("StarWarsTheme.wav"), Nave.NAVE_EASY);
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                GUI gui;
+                gui = new GUI(arranque);
+            }
+        });
+
+    }
+
+    /**
+     * Corre o servidor de jogo e mostra de 10 em 10 segundos o número de
+     * sessões e a latência dos ticks.
+     *
+     * @param porta Porta TCP do servidor.
+     */
+    private static void correrServidor(int porta) {
+        ServidorJogo servidor = new ServidorJogo(porta, Runtime.getRuntime().availableProcessors(), Opcoes.FISICA_HZ);
+        try {
+            servidor.start();
+            System.out.println("Servidor à escuta em localhost:" + servidor.getPorta());
+            while (true) {
+                Thread.sleep(10000);
+                servidor.relatorio(System.out);
+                servidor.limparLatencias();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(POOTPMoonLanderGame.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (InterruptedException ex) {
+            servidor.stop();
+        }
+    }
 
+    /**
+     * Reproduz um replay sem interface gráfica e mostra o resultado de cada
+     * nível.
+     *
+     * @param ficheiro Ficheiro do replay.
+     * @param tempoReal 'true' para reproduzir em tempo real, 'false' para
+     * reproduzir à velocidade máxima.
+     */
+    private static void reproduzirReplay(File ficheiro, boolean tempoReal) {
+        try {
+            Replay replay = Replay.carregar(ficheiro);
+            long nanosPorTick = 0;
+            if (tempoReal) {
+                nanosPorTick = replay.getFrequencia() > 0 ? 1000000000L / replay.getFrequencia() : 1000000000L;
+            }
+            long inicio = System.nanoTime();
+            int[] resultados = replay.reproduzir(nanosPorTick);
+            long duracao = System.nanoTime() - inicio;
+            for (int i = 0; i < resultados.length; i++) {
+                String resultado = resultados[i] == Replay.NIVEL_GANHO ? "ganho"
+                        : resultados[i] == Replay.NIVEL_PERDIDO ? "perdido" : "por terminar";
+                System.out.println("Nível " + (i + 1) + ": " + resultado);
+            }
+            System.out.println(resultados.length + " níveis e " + replay.getNumeroJatos() + " jatos reproduzidos em " + (duracao / 1000) + " us.");
+        } catch (IOException ex) {
+            Logger.getLogger(POOTPMoonLanderGame.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (IllegalStateException ex) {
+            System.out.println(ex.getMessage());
+        }
     }
 }
@@ -0,0 +1,444 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sistema de partículas do painel de jogo: o fumo dos jatos, as faíscas de
+ * uma aterragem falhada e a poeira de uma aterragem bem sucedida.
+ * <p>
+ * Para se poderem ter dezenas de milhares de partículas sem criar objectos,
+ * cada propriedade é um array de primitivas com <code>CAPACIDADE</code>
+ * posições, reservado de uma vez. As posições livres formam uma pilha (a
+ * free-list) e as ocupadas uma lista compacta, para que actualizar e desenhar
+ * só percorram as partículas vivas. As partículas são criadas e actualizadas
+ * na thread da física e desenhadas de uma só vez: os pixels de todas são
+ * escritos directamente no raster de uma imagem, que é depois copiada com um
+ * único <code>drawImage</code>.
+ * <p>
+ * A física e o desenho não partilham locks. Os arrays das partículas são só
+ * da thread da física (ou da thread do Swing quando a física está parada,
+ * por exemplo no fim do nível), que no fim de cada tick publica um Quadro com
+ * a posição e a cor de cada partícula viva. Há três quadros: o que a física
+ * escreve, o último publicado e o que está a ser desenhado, trocados com uma
+ * única variável atómica, como num triple buffer. Assim a física nunca
+ * espera pelo desenho nem o desenho pela física, e nada é alocado.
+ * <p>
+ * As posições estão nas mesmas unidades que a percentagem do nível: y vai de
+ * 0 (topo) a 1 (solo) e x é o afastamento do centro do painel, na mesma
+ * escala. O ponto de referência é o fundo da nave, de onde sai o fumo e que
+ * no fim do nível está no solo.
+ *
+ * @author C.M.P.Soares
+ * @see Fantasmas
+ */
+final class Particulas {
+
+    /**
+     * Número máximo de partículas vivas. Partículas pedidas com o sistema
+     * cheio são ignoradas.
+     */
+    static final int CAPACIDADE = 16384;
+    /**
+     * Partículas de fumo lançadas por cada jato.
+     */
+    private static final int POR_JATO = 96;
+    /**
+     * Partículas de poeira lançadas numa aterragem bem sucedida.
+     */
+    private static final int POR_POEIRA = 1500;
+    /**
+     * Partículas de faíscas lançadas numa aterragem falhada.
+     */
+    private static final int POR_FAISCAS = 800;
+    /**
+     * Gravidade aplicada às faíscas e à poeira, em unidades por segundo ao
+     * quadrado.
+     */
+    private static final float GRAVIDADE = 0.6f;
+    /**
+     * Fracção da velocidade que se perde por segundo, por atrito.
+     */
+    private static final float ATRITO = 1.5f;
+    /**
+     * Cores (RGB) do fumo, das faíscas e da poeira.
+     */
+    private static final int COR_FUMO = 0xB4C8FF, COR_FAISCA = 0xFFA028, COR_POEIRA = 0xA08C78;
+    /**
+     * Bit que, no índice do quadro publicado, indica que ainda não foi lido.
+     */
+    private static final int NOVO = 4;
+    /**
+     * Posição horizontal de cada partícula.
+     */
+    private final float[] x = new float[CAPACIDADE];
+    /**
+     * Posição vertical de cada partícula.
+     */
+    private final float[] y = new float[CAPACIDADE];
+    /**
+     * Velocidade horizontal de cada partícula, em unidades por segundo.
+     */
+    private final float[] vx = new float[CAPACIDADE];
+    /**
+     * Velocidade vertical de cada partícula, em unidades por segundo.
+     */
+    private final float[] vy = new float[CAPACIDADE];
+    /**
+     * Tempo de vida que resta a cada partícula, em segundos.
+     */
+    private final float[] vida = new float[CAPACIDADE];
+    /**
+     * Inverso do tempo de vida inicial de cada partícula, para a opacidade.
+     */
+    private final float[] inversoDuracao = new float[CAPACIDADE];
+    /**
+     * Cor (RGB) de cada partícula.
+     */
+    private final int[] cor = new int[CAPACIDADE];
+    /**
+     * Indica, para cada partícula, se a gravidade se lhe aplica.
+     */
+    private final boolean[] pesada = new boolean[CAPACIDADE];
+    /**
+     * Índices das partículas vivas, nas primeiras <code>numero</code>
+     * posições.
+     */
+    private final int[] vivas = new int[CAPACIDADE];
+    /**
+     * Número de partículas vivas.
+     */
+    private int numero;
+    /**
+     * Pilha dos índices livres, nas primeiras <code>numeroLivres</code>
+     * posições.
+     */
+    private final int[] livres = new int[CAPACIDADE];
+    /**
+     * Número de índices livres.
+     */
+    private int numeroLivres;
+    /**
+     * Estado do gerador pseudo-aleatório (xorshift), que não cria objectos.
+     */
+    private long semente = 0x2545F4914F6CDD1DL;
+    /**
+     * Os três quadros do triple buffer.
+     */
+    private final Quadro[] quadros = {new Quadro(), new Quadro(), new Quadro()};
+    /**
+     * Quadro que a física está a escrever. Só é usado por ela.
+     */
+    private int escrita = 0;
+    /**
+     * Índice do último quadro publicado, com o bit NOVO se ainda não foi
+     * lido pelo desenho.
+     */
+    private final AtomicInteger publicado = new AtomicInteger(1);
+    /**
+     * Quadro que está a ser desenhado. Só é usado pelo desenho.
+     */
+    private int leitura = 2;
+    /**
+     * Número de partículas do último quadro publicado.
+     */
+    private volatile int numeroPublicado;
+    /**
+     * Imagem onde são escritos os pixels das partículas.
+     */
+    private BufferedImage imagem;
+    /**
+     * Pixels da imagem, em ARGB pré-multiplicado.
+     */
+    private int[] pixels;
+    /**
+     * Primeira e última linha da imagem escritas no frame anterior, as únicas
+     * que é preciso limpar.
+     */
+    private int linhaMinima, linhaMaxima = -1;
+
+    /**
+     * Posições e cores das partículas vivas num dado tick, tal como a física
+     * as publicou para o desenho.
+     */
+    private static final class Quadro {
+
+        /**
+         * Posição horizontal de cada partícula.
+         */
+        final float[] x = new float[CAPACIDADE];
+        /**
+         * Posição vertical de cada partícula.
+         */
+        final float[] y = new float[CAPACIDADE];
+        /**
+         * Cor de cada partícula, em ARGB pré-multiplicado e já com a
+         * opacidade do fim de vida.
+         */
+        final int[] pixel = new int[CAPACIDADE];
+        /**
+         * Número de partículas do quadro.
+         */
+        int numero;
+        /**
+         * Limites das posições de todas as partículas do quadro.
+         */
+        float xMinimo, xMaximo, yMinimo, yMaximo;
+    }
+
+    /**
+     * Construtor que cria o sistema vazio, com todas as posições livres.
+     */
+    Particulas() {
+        limpar();
+    }
+
+    /**
+     * Apaga todas as partículas, por exemplo no início de um nível.
+     */
+    void limpar() {
+        numero = 0;
+        numeroLivres = CAPACIDADE;
+        for (int i = 0; i < CAPACIDADE; i++) {
+            livres[i] = CAPACIDADE - 1 - i;
+        }
+    }
+
+    /**
+     * @return Número de partículas do último quadro publicado. Pode ser
+     * chamado de qualquer thread.
+     */
+    int getNumero() {
+        return numeroPublicado;
+    }
+
+    /**
+     * @return Número de partículas vivas, incluindo as que ainda não foram
+     * publicadas. Só pode ser chamado pela thread que actualiza as
+     * partículas.
+     */
+    int getVivas() {
+        return numero;
+    }
+
+    /**
+     * Publica o estado actual das partículas para o desenho. Chamado pela
+     * thread que as actualiza, depois de as actualizar e de lançar as novas.
+     */
+    void publicar() {
+        Quadro quadro = quadros[escrita];
+        float xMinimo = Float.MAX_VALUE, xMaximo = -Float.MAX_VALUE, yMinimo = Float.MAX_VALUE, yMaximo = -Float.MAX_VALUE;
+        for (int k = 0; k < numero; k++) {
+            int i = vivas[k];
+            quadro.x[k] = x[i];
+            quadro.y[k] = y[i];
+            xMinimo = Math.min(xMinimo, x[i]);
+            xMaximo = Math.max(xMaximo, x[i]);
+            yMinimo = Math.min(yMinimo, y[i]);
+            yMaximo = Math.max(yMaximo, y[i]);
+            int alfa = (int) (255 * Math.min(1, vida[i] * inversoDuracao[i]));
+            int rgb = cor[i];
+            quadro.pixel[k] = alfa << 24 | (((rgb >> 16) & 0xFF) * alfa >> 8) << 16 | (((rgb >> 8) & 0xFF) * alfa >> 8) << 8 | ((rgb & 0xFF) * alfa >> 8);
+        }
+        quadro.numero = numero;
+        quadro.xMinimo = xMinimo;
+        quadro.xMaximo = xMaximo;
+        quadro.yMinimo = yMinimo;
+        quadro.yMaximo = yMaximo;
+        numeroPublicado = numero;
+        escrita = publicado.getAndSet(escrita | NOVO) & ~NOVO;
+    }
+
+    /**
+     * Passa a desenhar o último quadro publicado, se houver um que ainda não
+     * foi lido. Chamado só por quem desenha, antes de desenhar.
+     */
+    void adquirir() {
+        if ((publicado.get() & NOVO) != 0) {
+            leitura = publicado.getAndSet(leitura) & ~NOVO;
+        }
+    }
+
+    /**
+     * Avança todas as partículas e liberta as que chegaram ao fim da vida.
+     * Chamado na thread da física, uma vez por tick.
+     *
+     * @param dt Duração do tick em segundos.
+     */
+    void actualizar(float dt) {
+        float travagem = Math.max(0, 1 - ATRITO * dt);
+        for (int k = 0; k < numero;) {
+            int i = vivas[k];
+            vida[i] -= dt;
+            if (vida[i] <= 0) {
+                livres[numeroLivres++] = i;
+                vivas[k] = vivas[--numero];
+                continue;
+            }
+            if (pesada[i]) {
+                vy[i] += GRAVIDADE * dt;
+            }
+            vx[i] *= travagem;
+            vy[i] *= travagem;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+            if (y[i] > 1) {
+                y[i] = 1;
+                vy[i] = -0.3f * vy[i];
+            }
+            k++;
+        }
+    }
+
+    /**
+     * Lança o fumo de um jato a sair do fundo da nave.
+     *
+     * @param percentNivel Percentagem do nível em que está a nave.
+     */
+    void jato(double percentNivel) {
+        for (int n = 0; n < POR_JATO; n++) {
+            criar(0.004f * aleatorio(), (float) percentNivel, 0.03f * aleatorio(), 0.25f + 0.15f * Math.abs(aleatorio()),
+                    0.3f + 0.3f * Math.abs(aleatorio()), COR_FUMO, false);
+        }
+    }
+
+    /**
+     * Lança as faíscas de uma aterragem falhada, em todas as direcções.
+     *
+     * @param percentNivel Percentagem do nível em que está a nave.
+     */
+    void faiscas(double percentNivel) {
+        for (int n = 0; n < POR_FAISCAS; n++) {
+            criar(0.01f * aleatorio(), (float) percentNivel, 0.4f * aleatorio(), -0.4f * Math.abs(aleatorio()),
+                    0.5f + 0.7f * Math.abs(aleatorio()), COR_FAISCA, true);
+        }
+    }
+
+    /**
+     * Lança a nuvem de poeira de uma aterragem bem sucedida, rente ao solo.
+     */
+    void poeira() {
+        for (int n = 0; n < POR_POEIRA; n++) {
+            float lado = aleatorio();
+            criar(0.02f * lado, 1, 0.25f * lado, -0.08f * Math.abs(aleatorio()),
+                    0.8f + 1.2f * Math.abs(aleatorio()), COR_POEIRA, true);
+        }
+    }
+
+    /**
+     * Ocupa uma posição livre com uma partícula nova.
+     *
+     * @return 'false' se não havia posições livres.
+     */
+    private boolean criar(float px, float py, float pvx, float pvy, float duracao, int rgb, boolean comGravidade) {
+        if (numeroLivres == 0) {
+            return false;
+        }
+        int i = livres[--numeroLivres];
+        x[i] = px;
+        y[i] = py;
+        vx[i] = pvx;
+        vy[i] = pvy;
+        vida[i] = duracao;
+        inversoDuracao[i] = 1 / duracao;
+        cor[i] = rgb;
+        pesada[i] = comGravidade;
+        vivas[numero++] = i;
+        return true;
+    }
+
+    /**
+     * @return Um número pseudo-aleatório entre -1 e 1.
+     */
+    private float aleatorio() {
+        semente ^= semente << 13;
+        semente ^= semente >>> 7;
+        semente ^= semente << 17;
+        return (int) (semente >>> 40) * (2f / (1 << 24)) - 1;
+    }
+
+    /**
+     * Calcula a área ocupada pelas partículas do último quadro adquirido, para
+     * o painel redesenhar só essa zona. Chamado só por quem desenha.
+     *
+     * @param area Onde é guardada a área; fica vazia se não houver
+     * partículas.
+     * @param centro Posição horizontal do centro do painel.
+     * @param alturaSolo Altura, em pixels, correspondente à percentagem 1.
+     * @param deslocamento Distância, em pixels, entre a posição guardada da
+     * nave e o seu fundo.
+     */
+    void area(Rectangle area, int centro, int alturaSolo, int deslocamento) {
+        Quadro quadro = quadros[leitura];
+        if (quadro.numero == 0 || alturaSolo <= 0) {
+            area.setBounds(0, 0, 0, 0);
+            return;
+        }
+        int x1 = centro + (int) Math.floor(quadro.xMinimo * alturaSolo) - 1;
+        int x2 = centro + (int) Math.ceil(quadro.xMaximo * alturaSolo) + 2;
+        int y1 = (int) Math.floor(quadro.yMinimo * alturaSolo) + deslocamento - 1;
+        int y2 = (int) Math.ceil(quadro.yMaximo * alturaSolo) + deslocamento + 2;
+        area.setBounds(x1, y1, x2 - x1, y2 - y1);
+    }
+
+    /**
+     * Desenha as partículas do último quadro adquirido: cada uma é um
+     * quadrado de 2x2 pixels escrito no raster da imagem interna, e no fim a
+     * zona com partículas é copiada de uma vez. Chamado só por quem desenha,
+     * uma thread de cada vez.
+     *
+     * @param g Onde se desenham as partículas.
+     * @param centro Posição horizontal do centro do painel.
+     * @param alturaSolo Altura, em pixels, correspondente à percentagem 1.
+     * @param deslocamento Distância, em pixels, entre a posição guardada da
+     * nave e o seu fundo.
+     * @param largura Largura da área de desenho.
+     * @param altura Altura da área de desenho.
+     * @return Número de partículas desenhadas.
+     * @see #adquirir()
+     */
+    int desenhar(Graphics2D g, int centro, int alturaSolo, int deslocamento, int largura, int altura) {
+        if (largura <= 1 || altura <= 1) {
+            return 0;
+        }
+        if (imagem == null || imagem.getWidth() != largura || imagem.getHeight() != altura) {
+            imagem = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_ARGB_PRE);
+            pixels = ((DataBufferInt) imagem.getRaster().getDataBuffer()).getData();
+            linhaMaxima = -1;
+        }
+        if (linhaMaxima >= linhaMinima) {
+            Arrays.fill(pixels, linhaMinima * largura, (linhaMaxima + 1) * largura, 0);
+        }
+        Quadro quadro = quadros[leitura];
+        int minima = altura, maxima = -1, desenhadas = 0;
+        for (int k = 0; k < quadro.numero; k++) {
+            int px = centro + (int) (quadro.x[k] * alturaSolo);
+            int py = (int) (quadro.y[k] * alturaSolo) + deslocamento;
+            if (px < 0 || py < 0 || px >= largura - 1 || py >= altura - 1) {
+                continue;
+            }
+            int pixel = quadro.pixel[k];
+            int p = py * largura + px;
+            pixels[p] = pixel;
+            pixels[p + 1] = pixel;
+            pixels[p + largura] = pixel;
+            pixels[p + largura + 1] = pixel;
+            minima = Math.min(minima, py);
+            maxima = Math.max(maxima, py + 1);
+            desenhadas++;
+        }
+        linhaMinima = minima;
+        linhaMaxima = maxima;
+        if (maxima >= minima) {
+            g.drawImage(imagem, 0, minima, largura, maxima + 1, 0, minima, largura, maxima + 1, null);
+        }
+        return desenhadas;
+    }
+}
@@ -0,0 +1,488 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registo persistente das pontuações: cada nível terminado (dificuldade,
+ * nível, se foi ganho, velocidade de aterragem, combustível que sobrou,
+ * duração e instante) é acrescentado ao fim de um ficheiro que nunca é
+ * reescrito. O ficheiro está mapeado em memória, por isso acrescentar é só
+ * escrever 32 bytes num MappedByteBuffer; o mapeamento duplica de tamanho
+ * quando fica cheio.
+ * <p>
+ * Para cada par (dificuldade, nível) há em memória as <code>TOPO</code>
+ * melhores aterragens ganhas, por ordem: mais combustível, depois menor
+ * velocidade de aterragem, depois menor duração. Pedir as K melhores é só
+ * copiar K registos. Ao abrir, o índice é reconstruído lendo o ficheiro do
+ * princípio ao fim; cada registo tem um checksum, e a leitura pára no
+ * primeiro registo vazio ou incompleto (por exemplo se o jogo foi morto a
+ * meio de uma escrita), que será escrito por cima.
+ * <p>
+ * O <code>acrescentar</code> é chamado na thread do Swing quando um nível
+ * acaba, por isso não espera pelo disco: os registos ficam no mapeamento, que
+ * o sistema operativo escreve no ficheiro mesmo que o jogo termine, e uma
+ * thread própria faz <code>force()</code> depois de cada escrita para os
+ * registos sobreviverem também a uma falha do sistema. O <code>close</code>
+ * faz o último <code>force()</code>.
+ *
+ * @author C.M.P.Soares
+ * @see Nivel
+ */
+public final class Pontuacoes implements Closeable {
+
+    /**
+     * Número de melhores aterragens guardadas no índice para cada
+     * dificuldade e nível.
+     */
+    public static final int TOPO = 100;
+    /**
+     * Bytes iniciais do ficheiro.
+     */
+    private static final int ASSINATURA = 0x4C4C5054;
+    /**
+     * Versão do formato do ficheiro.
+     */
+    private static final int VERSAO = 1;
+    /**
+     * Tamanho do cabeçalho, em bytes.
+     */
+    private static final int CABECALHO = 16;
+    /**
+     * Tamanho de cada registo, em bytes.
+     */
+    private static final int REGISTO = 32;
+    /**
+     * Tamanho mínimo do mapeamento, em bytes.
+     */
+    private static final long MAPEAMENTO_INICIAL = 1 << 20;
+    /**
+     * Canal do ficheiro.
+     */
+    private final FileChannel canal;
+    /**
+     * Mapeamento do ficheiro em memória.
+     */
+    private MappedByteBuffer mapa;
+    /**
+     * Número de registos válidos no ficheiro.
+     */
+    private int numero;
+    /**
+     * Melhores aterragens de cada dificuldade e nível, indexadas por
+     * <code>chave(dificuldade, nivel)</code>.
+     */
+    private final Map<Integer, Tabela> tabelas = new HashMap<>();
+    /**
+     * 'true' se há registos escritos no mapeamento que ainda não foram
+     * forçados para o disco.
+     */
+    private boolean porGravar;
+    /**
+     * 'true' depois do <code>close</code>.
+     */
+    private boolean fechado;
+
+    /**
+     * Abre o ficheiro e reconstrói o índice.
+     *
+     * @param ficheiro Ficheiro das pontuações, criado se não existir.
+     * @throws IOException Se não for possível ler o ficheiro ou este não
+     * for um ficheiro de pontuações.
+     */
+    private Pontuacoes(File ficheiro) throws IOException {
+        canal = FileChannel.open(ficheiro.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean novo = canal.size() == 0;
+        mapear(Math.max(MAPEAMENTO_INICIAL, canal.size()));
+        if (novo) {
+            mapa.putInt(0, ASSINATURA);
+            mapa.putInt(4, VERSAO);
+            mapa.putInt(8, REGISTO);
+        } else if (mapa.getInt(0) != ASSINATURA || mapa.getInt(4) != VERSAO || mapa.getInt(8) != REGISTO) {
+            canal.close();
+            throw new IOException("Não é um ficheiro de pontuações: " + ficheiro);
+        }
+        long posicao = CABECALHO;
+        while (posicao + REGISTO <= mapa.capacity() && isValido((int) posicao)) {
+            indexar(numero, (int) posicao);
+            numero++;
+            posicao = posicao + REGISTO;
+        }
+    }
+
+    /**
+     * Abre um ficheiro de pontuações e reconstrói o índice.
+     *
+     * @param ficheiro Ficheiro das pontuações, criado se não existir.
+     * @return As pontuações do ficheiro.
+     * @throws IOException Se não for possível ler o ficheiro ou este não
+     * for um ficheiro de pontuações.
+     */
+    public static Pontuacoes abrir(File ficheiro) throws IOException {
+        final Pontuacoes pontuacoes = new Pontuacoes(ficheiro);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pontuacoes.gravar();
+            }
+        }, "Pontuacoes");
+        thread.setDaemon(true);
+        thread.start();
+        return pontuacoes;
+    }
+
+    /**
+     * Ciclo da thread de gravação: espera por registos novos e força-os para
+     * o disco sem segurar o monitor, para o <code>acrescentar</code> nunca
+     * esperar por um <code>force()</code>. Termina com o <code>close</code>.
+     */
+    private void gravar() {
+        while (true) {
+            MappedByteBuffer aGravar;
+            synchronized (this) {
+                while (!porGravar && !fechado) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if (fechado) {
+                    return;
+                }
+                porGravar = false;
+                aGravar = mapa;
+            }
+            aGravar.force();
+        }
+    }
+
+    /**
+     * Mapeia os primeiros bytes do ficheiro, aumentando-o se for preciso.
+     *
+     * @param tamanho Número de bytes a mapear.
+     * @throws IOException Se não for possível mapear.
+     */
+    private void mapear(long tamanho) throws IOException {
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanho);
+        mapa.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Acrescenta o resultado de um nível ao ficheiro e ao índice.
+     *
+     * @param dificuldade Dificuldade do nível.
+     * @param nivel Nível(level).
+     * @param ganho 'true' se o nível foi ganho.
+     * @param velocidade Velocidade de aterragem.
+     * @param combustivel Combustível que sobrou.
+     * @param duracao Duração do nível, em milisegundos.
+     * @return Posição (de 1 a <code>TOPO</code>) da aterragem nas melhores
+     * do nível, ou 0 se não ficou entre elas.
+     * @throws IOException Se não for possível aumentar o ficheiro.
+     */
+    public synchronized int acrescentar(int dificuldade, int nivel, boolean ganho, int velocidade, int combustivel, int duracao) throws IOException {
+        long posicao = CABECALHO + (long) numero * REGISTO;
+        if (posicao + REGISTO > mapa.capacity()) {
+            mapear(2L * mapa.capacity());
+        }
+        int p = (int) posicao;
+        mapa.put(p, (byte) dificuldade);
+        mapa.put(p + 1, (byte) (ganho ? 1 : 0));
+        mapa.putShort(p + 2, (short) 0);
+        mapa.putInt(p + 4, nivel);
+        mapa.putInt(p + 8, velocidade);
+        mapa.putInt(p + 12, combustivel);
+        mapa.putInt(p + 16, duracao);
+        mapa.putLong(p + 20, System.currentTimeMillis());
+        mapa.putInt(p + 28, checksum(p));
+        porGravar = true;
+        notifyAll();
+        int lugar = indexar(numero, p);
+        numero++;
+        return lugar;
+    }
+
+    /**
+     * Devolve as melhores aterragens ganhas de uma dificuldade e nível.
+     *
+     * @param dificuldade Dificuldade do nível.
+     * @param nivel Nível(level).
+     * @param k Número máximo de aterragens (no máximo <code>TOPO</code>).
+     * @return As melhores aterragens, da melhor para a pior.
+     */
+    public synchronized List<Pontuacao> getMelhores(int dificuldade, int nivel, int k) {
+        Tabela tabela = tabelas.get(chave(dificuldade, nivel));
+        int n = tabela == null ? 0 : Math.min(k, tabela.tamanho);
+        List<Pontuacao> melhores = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            melhores.add(ler(tabela.registos[i]));
+        }
+        return melhores;
+    }
+
+    /**
+     * @return Número de níveis registados.
+     */
+    public synchronized int getNumero() {
+        return numero;
+    }
+
+    /**
+     * Garante que tudo está no disco e fecha o ficheiro.
+     *
+     * @throws IOException Se não for possível fechar o ficheiro.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        fechado = true;
+        notifyAll();
+        mapa.force();
+        canal.close();
+    }
+
+    /**
+     * Põe um registo no índice, se for uma aterragem ganha entre as melhores
+     * do seu nível.
+     *
+     * @param registo Número do registo.
+     * @param p Posição do registo no mapeamento.
+     * @return Posição (de 1 a <code>TOPO</code>) nas melhores do nível, ou 0
+     * se não ficou entre elas.
+     */
+    private int indexar(int registo, int p) {
+        if (mapa.get(p + 1) == 0) {
+            return 0;
+        }
+        Integer chave = chave(mapa.get(p), mapa.getInt(p + 4));
+        Tabela tabela = tabelas.get(chave);
+        if (tabela == null) {
+            tabela = new Tabela();
+            tabelas.put(chave, tabela);
+        }
+        return tabela.inserir(ordem(mapa.getInt(p + 8), mapa.getInt(p + 12), mapa.getInt(p + 16)), registo);
+    }
+
+    /**
+     * @param p Posição de um registo no mapeamento.
+     * @return 'true' se o registo foi escrito por inteiro.
+     */
+    private boolean isValido(int p) {
+        int guardado = mapa.getInt(p + 28);
+        return guardado != 0 && guardado == checksum(p);
+    }
+
+    /**
+     * Calcula o checksum de um registo, que nunca é 0 (o valor de um registo
+     * por escrever).
+     *
+     * @param p Posição do registo no mapeamento.
+     * @return Checksum dos primeiros 28 bytes do registo.
+     */
+    private int checksum(int p) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < 28; i = i + 4) {
+            h = (h ^ mapa.getInt(p + i)) * 0xBF58476D1CE4E5B9L;
+        }
+        int c = (int) (h ^ (h >>> 32));
+        return c != 0 ? c : 1;
+    }
+
+    /**
+     * Lê um registo.
+     *
+     * @param registo Número do registo.
+     * @return O registo lido.
+     */
+    private Pontuacao ler(int registo) {
+        int p = CABECALHO + registo * REGISTO;
+        return new Pontuacao(mapa.get(p), mapa.getInt(p + 4), mapa.get(p + 1) != 0, mapa.getInt(p + 8),
+                mapa.getInt(p + 12), mapa.getInt(p + 16), mapa.getLong(p + 20));
+    }
+
+    /**
+     * @param dificuldade Dificuldade do nível.
+     * @param nivel Nível(level).
+     * @return Chave da tabela do nível.
+     */
+    private static int chave(int dificuldade, int nivel) {
+        return (nivel << 8) | (dificuldade & 0xFF);
+    }
+
+    /**
+     * Junta num só número os critérios de ordenação: quanto maior, melhor.
+     *
+     * @param velocidade Velocidade de aterragem.
+     * @param combustivel Combustível que sobrou.
+     * @param duracao Duração do nível, em milisegundos.
+     * @return Valor de ordenação da aterragem.
+     */
+    private static long ordem(int velocidade, int combustivel, int duracao) {
+        long c = Math.max(0, Math.min(combustivel, (1 << 22) - 1));
+        long v = (1 << 20) - 1 - Math.min(Math.abs((long) velocidade), (1 << 20) - 1);
+        long d = (1 << 21) - 1 - Math.max(0, Math.min(duracao, (1 << 21) - 1));
+        return (c << 41) | (v << 21) | d;
+    }
+
+    /**
+     * Melhores aterragens de um nível, ordenadas da melhor para a pior.
+     */
+    private static final class Tabela {
+
+        /**
+         * Valor de ordenação de cada aterragem.
+         */
+        private final long[] ordens = new long[TOPO];
+        /**
+         * Número do registo de cada aterragem.
+         */
+        private final int[] registos = new int[TOPO];
+        /**
+         * Número de aterragens na tabela.
+         */
+        private int tamanho;
+
+        /**
+         * Insere uma aterragem, se couber. Em caso de empate fica depois das
+         * que já lá estavam.
+         *
+         * @param ordem Valor de ordenação da aterragem.
+         * @param registo Número do registo.
+         * @return Posição (de 1 a <code>TOPO</code>) da aterragem, ou 0 se não
+         * coube.
+         */
+        int inserir(long ordem, int registo) {
+            if (tamanho == TOPO && ordem <= ordens[TOPO - 1]) {
+                return 0;
+            }
+            int i = Math.min(tamanho, TOPO - 1);
+            while (i > 0 && ordens[i - 1] < ordem) {
+                ordens[i] = ordens[i - 1];
+                registos[i] = registos[i - 1];
+                i--;
+            }
+            ordens[i] = ordem;
+            registos[i] = registo;
+            if (tamanho < TOPO) {
+                tamanho++;
+            }
+            return i + 1;
+        }
+    }
+
+    /**
+     * O resultado de um nível, tal como está no ficheiro.
+     */
+    public static final class Pontuacao {
+
+        /**
+         * Dificuldade do nível.
+         */
+        private final int dificuldade;
+        /**
+         * Nível(level).
+         */
+        private final int nivel;
+        /**
+         * Se o nível foi ganho.
+         */
+        private final boolean ganho;
+        /**
+         * Velocidade de aterragem.
+         */
+        private final int velocidade;
+        /**
+         * Combustível que sobrou.
+         */
+        private final int combustivel;
+        /**
+         * Duração do nível, em milisegundos.
+         */
+        private final int duracao;
+        /**
+         * Instante, em milisegundos desde 1970, em que o nível terminou.
+         */
+        private final long instante;
+
+        /**
+         * @param dificuldade Dificuldade do nível.
+         * @param nivel Nível(level).
+         * @param ganho Se o nível foi ganho.
+         * @param velocidade Velocidade de aterragem.
+         * @param combustivel Combustível que sobrou.
+         * @param duracao Duração do nível, em milisegundos.
+         * @param instante Instante em que o nível terminou.
+         */
+        Pontuacao(int dificuldade, int nivel, boolean ganho, int velocidade, int combustivel, int duracao, long instante) {
+            this.dificuldade = dificuldade;
+            this.nivel = nivel;
+            this.ganho = ganho;
+            this.velocidade = velocidade;
+            this.combustivel = combustivel;
+            this.duracao = duracao;
+            this.instante = instante;
+        }
+
+        /**
+         * @return Dificuldade do nível.
+         */
+        public int getDificuldade() {
+            return dificuldade;
+        }
+
+        /**
+         * @return Nível(level).
+         */
+        public int getNivel() {
+            return nivel;
+        }
+
+        /**
+         * @return 'true' se o nível foi ganho.
+         */
+        public boolean isGanho() {
+            return ganho;
+        }
+
+        /**
+         * @return Velocidade de aterragem.
+         */
+        public int getVelocidade() {
+            return velocidade;
+        }
+
+        /**
+         * @return Combustível que sobrou.
+         */
+        public int getCombustivel() {
+            return combustivel;
+        }
+
+        /**
+         * @return Duração do nível, em milisegundos.
+         */
+        public int getDuracao() {
+            return duracao;
+        }
+
+        /**
+         * @return Instante, em milisegundos desde 1970, em que o nível
+         * terminou.
+         */
+        public long getInstante() {
+            return instante;
+        }
+    }
+}
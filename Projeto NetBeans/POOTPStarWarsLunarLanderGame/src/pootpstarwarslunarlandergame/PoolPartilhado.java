@@ -0,0 +1,64 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ForkJoinPool usado por omissão pelas classes que dividem o trabalho em
+ * tarefas fork/join (SolucionadorAterragem, MotorLote e AmbienteLote). Criar
+ * um pool por instância deixava threads para trás sempre que uma instância
+ * era descartada, porque nenhuma destas classes tem um método para fechar o
+ * seu pool.
+ * <p>
+ * A partir do Java 8 é o <code>ForkJoinPool.commonPool()</code>, partilhado
+ * com o resto da JVM. Em Java 7, onde esse método não existe, é um único pool
+ * com uma thread por processador, criado no primeiro uso e nunca fechado; as
+ * threads de um ForkJoinPool são daemon, por isso não impedem a JVM de
+ * terminar.
+ *
+ * @author C.M.P.Soares
+ * @see SolucionadorAterragem
+ * @see MotorLote
+ * @see AmbienteLote
+ */
+final class PoolPartilhado {
+
+    /**
+     * Classe só com métodos estáticos, não é para ser instanciada.
+     */
+    private PoolPartilhado() {
+    }
+
+    /**
+     * @return O pool partilhado, criado na primeira chamada.
+     */
+    static ForkJoinPool get() {
+        return Instancia.POOL;
+    }
+
+    /**
+     * Guarda o pool partilhado, que só é procurado ou criado quando esta
+     * classe é carregada pelo primeiro <code>get()</code>.
+     */
+    private static final class Instancia {
+
+        /**
+         * O pool partilhado.
+         */
+        private static final ForkJoinPool POOL = criar();
+
+        /**
+         * @return O <code>commonPool()</code> se existir, senão um pool novo
+         * com uma thread por processador.
+         */
+        private static ForkJoinPool criar() {
+            try {
+                return (ForkJoinPool) ForkJoinPool.class.getMethod("commonPool").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return new ForkJoinPool();
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gravação de uma sessão de jogo para poder ser reproduzida de forma
+ * determinística. Para cada nível jogado guarda a dificuldade, o nível(level)
+ * e o tick em que foi carregado cada jato, e para a sessão guarda a semente e a
+ * frequência da física. Como a Simulacao é determinística isto chega para se
+ * voltar a obter exactamente o mesmo jogo.
+ * <p>
+ * O ficheiro é binário e compacto: depois do cabeçalho todos os números são
+ * escritos como varints (7 bits por byte) e os ticks dos jatos como a
+ * diferença para o jato anterior, por isso quase todos os jatos ocupam um
+ * único byte. Uma sessão de 10 minutos fica com poucos kilobytes.
+ * <p>
+ * Desde a versão 2 do formato fica também gravado se a física foi feita em
+ * vírgula fixa e, para cada nível que chegou ao fim, o checksum final da
+ * Simulacao. Ao reproduzir, um checksum diferente quer dizer que a
+ * reprodução divergiu do jogo gravado (por exemplo por a física em vírgula
+ * flutuante ter dado outro resultado noutra máquina). Um nível que não
+ * chegou ao fim (por exemplo por o jogador ter começado um jogo novo ou
+ * mudado a dificuldade a meio) não é reproduzido e aparece como por
+ * terminar.
+ *
+ * @author C.M.P.Soares
+ * @see Simulacao
+ */
+public class Replay {
+
+    /**
+     * Bytes iniciais de um ficheiro de replay.
+     */
+    private static final byte[] ASSINATURA = {'L', 'L', 'R', 'P'};
+    /**
+     * Versão do formato do ficheiro.
+     */
+    private static final int VERSAO = 2;
+    /**
+     * Resultado de um nível reproduzido em que a nave aterrou depressa demais.
+     */
+    public static final int NIVEL_PERDIDO = 0;
+    /**
+     * Resultado de um nível reproduzido que foi ganho.
+     */
+    public static final int NIVEL_GANHO = 1;
+    /**
+     * Resultado de um nível gravado que não chegou ao fim.
+     */
+    public static final int NIVEL_POR_TERMINAR = 2;
+    /**
+     * Semente da sessão. O jogo ainda não tem nada aleatório, mas a semente
+     * fica gravada para identificar a sessão e para o que vier a precisar
+     * dela.
+     */
+    private final long semente;
+    /**
+     * Frequência da física, em Hz, com que a sessão foi jogada. O valor 0
+     * quer dizer o tick clássico de um segundo.
+     *
+     * @see Simulacao#step()
+     * @see Simulacao#step(double)
+     */
+    private final int frequencia;
+    /**
+     * Indica se a física da sessão foi feita em vírgula fixa.
+     * @see Simulacao#stepFixo(int)
+     */
+    private final boolean fixa;
+    /**
+     * Dificuldade de cada nível gravado.
+     */
+    private int[] dificuldades = new int[8];
+    /**
+     * Nível(level) de cada nível gravado.
+     */
+    private int[] niveis = new int[8];
+    /**
+     * Indica, para cada nível gravado, se começou com os parâmetros de um
+     * jogo novo em vez dos do <code>setNewLevelParametres()</code>.
+     */
+    private boolean[] iniciais = new boolean[8];
+    /**
+     * Índice, no vector dos ticks, do primeiro jato de cada nível gravado.
+     */
+    private int[] primeiroJato = new int[8];
+    /**
+     * Indica, para cada nível gravado, se chegou ao fim e tem checksum.
+     */
+    private boolean[] terminados = new boolean[8];
+    /**
+     * Checksum da Simulacao no fim de cada nível gravado.
+     */
+    private long[] checksums = new long[8];
+    /**
+     * Indica se a gravação foi lida de um ficheiro da versão 1, que não diz
+     * que níveis chegaram ao fim. Nesse caso todos os níveis são reproduzidos
+     * até à aterragem.
+     */
+    private boolean semFins;
+    /**
+     * Número de níveis gravados.
+     */
+    private int numeroNiveis;
+    /**
+     * Tick de cada jato, de todos os níveis seguidos.
+     */
+    private int[] ticks = new int[64];
+    /**
+     * Número de jatos gravados.
+     */
+    private int numeroJatos;
+
+    /**
+     * Construtor que cria uma gravação vazia.
+     *
+     * @param semente Semente da sessão.
+     * @param frequencia Frequência da física, ou 0 para o tick clássico.
+     */
+    public Replay(long semente, int frequencia) {
+        this(semente, frequencia, false);
+    }
+
+    /**
+     * Construtor que cria uma gravação vazia.
+     * @param semente Semente da sessão.
+     * @param frequencia Frequência da física, ou 0 para o tick clássico.
+     * @param fixa 'true' se a física é feita em vírgula fixa.
+     */
+    public Replay(long semente, int frequencia, boolean fixa) {
+        this.semente = semente;
+        this.frequencia = frequencia;
+        this.fixa = fixa;
+    }
+
+    /**
+     * Começa a gravar um nível novo.
+     *
+     * @param difficulty Dificuldade do nível.
+     * @param level Nível(level).
+     * @param inicial 'true' se o nível usa os parâmetros de um jogo novo.
+     */
+    synchronized void iniciarNivel(int difficulty, int level, boolean inicial) {
+        if (numeroNiveis == niveis.length) {
+            int tamanho = niveis.length * 2;
+            dificuldades = Arrays.copyOf(dificuldades, tamanho);
+            niveis = Arrays.copyOf(niveis, tamanho);
+            iniciais = Arrays.copyOf(iniciais, tamanho);
+            primeiroJato = Arrays.copyOf(primeiroJato, tamanho);
+            terminados = Arrays.copyOf(terminados, tamanho);
+            checksums = Arrays.copyOf(checksums, tamanho);
+        }
+        dificuldades[numeroNiveis] = difficulty;
+        niveis[numeroNiveis] = level;
+        iniciais[numeroNiveis] = inicial;
+        primeiroJato[numeroNiveis] = numeroJatos;
+        terminados[numeroNiveis] = false;
+        numeroNiveis++;
+    }
+
+    /**
+     * Grava o fim do nível actual.
+     * @param checksum Checksum da Simulacao quando a nave aterrou.
+     * @see Simulacao#getChecksum()
+     */
+    synchronized void terminarNivel(long checksum) {
+        if (numeroNiveis == 0) {
+            return;
+        }
+        terminados[numeroNiveis - 1] = true;
+        checksums[numeroNiveis - 1] = checksum;
+    }
+
+    /**
+     * Grava um jato no nível actual.
+     *
+     * @param tick Número de ticks já executados no nível quando o jato foi
+     * carregado.
+     */
+    synchronized void registarJato(int tick) {
+        if (numeroNiveis == 0) {
+            return;
+        }
+        if (numeroJatos == ticks.length) {
+            ticks = Arrays.copyOf(ticks, ticks.length * 2);
+        }
+        ticks[numeroJatos++] = tick;
+    }
+
+    /**
+     * @return Semente da sessão.
+     */
+    public long getSemente() {
+        return semente;
+    }
+
+    /**
+     * @return Frequência da física, ou 0 para o tick clássico.
+     */
+    public int getFrequencia() {
+        return frequencia;
+    }
+
+    /**
+     * @return 'true' se a física da sessão foi feita em vírgula fixa.
+     */
+    public boolean isFixa() {
+        return fixa;
+    }
+
+    /**
+     * @return Número de níveis gravados.
+     */
+    public synchronized int getNumeroNiveis() {
+        return numeroNiveis;
+    }
+
+    /**
+     * @return Número de jatos gravados em todos os níveis.
+     */
+    public synchronized int getNumeroJatos() {
+        return numeroJatos;
+    }
+
+    /**
+     * Reproduz a sessão na Simulacao, nível a nível. Os níveis que não
+     * chegaram ao fim não são reproduzidos, porque depois do último jato
+     * gravado a nave cairia sem os jatos que o jogador ainda não tinha
+     * carregado.
+     *
+     * @param nanosPorTick Tempo real de cada tick, em nanosegundos, ou 0 para
+     * reproduzir à velocidade máxima.
+     * @return Para cada nível gravado, <code>NIVEL_GANHO</code>,
+     * <code>NIVEL_PERDIDO</code> ou <code>NIVEL_POR_TERMINAR</code>.
+     * @throws IllegalStateException Se o checksum de um nível for diferente
+     * do gravado, isto é, se a reprodução divergiu do jogo original.
+     */
+    public synchronized int[] reproduzir(long nanosPorTick) {
+        int[] resultados = new int[numeroNiveis];
+        double dt = frequencia > 0 ? 1.0 / frequencia : 1;
+        long proximo = System.nanoTime();
+
+        for (int i = 0; i < numeroNiveis; i++) {
+            if (!terminados[i] && !semFins) {
+                resultados[i] = NIVEL_POR_TERMINAR;
+                continue;
+            }
+            Simulacao simulacao = criarSimulacao(i);
+            int jato = primeiroJato[i];
+            int fim = i + 1 < numeroNiveis ? primeiroJato[i + 1] : numeroJatos;
+            boolean aterrou = false;
+            while (!aterrou) {
+                while (jato < fim && ticks[jato] == simulacao.getTick()) {
+                    simulacao.hitJato();
+                    jato++;
+                }
+                if (frequencia == 0) {
+                    aterrou = simulacao.step();
+                } else if (fixa) {
+                    aterrou = simulacao.stepFixo(frequencia);
+                } else {
+                    aterrou = simulacao.step(dt);
+                }
+                if (nanosPorTick > 0) {
+                    proximo = proximo + nanosPorTick;
+                    long espera = proximo - System.nanoTime();
+                    if (espera > 0) {
+                        LockSupport.parkNanos(espera);
+                    }
+                }
+            }
+            if (terminados[i] && simulacao.getChecksum() != checksums[i]) {
+                throw new IllegalStateException("O replay divergiu no nível " + (i + 1) + ".");
+            }
+            resultados[i] = simulacao.isNivelGanho() ? NIVEL_GANHO : NIVEL_PERDIDO;
+        }
+        return resultados;
+    }
+
+    /**
+     * Cria a simulação com que começou um dos níveis gravados.
+     *
+     * @param i Índice do nível gravado.
+     * @return A simulação no início desse nível.
+     */
+    private Simulacao criarSimulacao(int i) {
+        if (iniciais[i]) {
+            return new Simulacao(dificuldades[i]);
+        }
+        return new Simulacao(dificuldades[i], niveis[i]);
+    }
+
+    /**
+     * Escreve a gravação no formato binário.
+     *
+     * @param saida Onde escrever.
+     * @throws IOException Se não for possível escrever.
+     */
+    public synchronized void escrever(OutputStream saida) throws IOException {
+        saida.write(ASSINATURA);
+        saida.write(VERSAO);
+        escreverVarLong(saida, (semente << 1) ^ (semente >> 63));
+        escreverVarLong(saida, frequencia);
+        saida.write(fixa ? 1 : 0);
+        escreverVarLong(saida, numeroNiveis);
+        for (int i = 0; i < numeroNiveis; i++) {
+            int fim = i + 1 < numeroNiveis ? primeiroJato[i + 1] : numeroJatos;
+            escreverVarLong(saida, dificuldades[i]);
+            escreverVarLong(saida, niveis[i]);
+            saida.write(iniciais[i] ? 1 : 0);
+            escreverVarLong(saida, fim - primeiroJato[i]);
+            int anterior = 0;
+            for (int j = primeiroJato[i]; j < fim; j++) {
+                escreverVarLong(saida, ticks[j] - anterior);
+                anterior = ticks[j];
+            }
+            saida.write(terminados[i] ? 1 : 0);
+            if (terminados[i]) {
+                escreverVarLong(saida, checksums[i]);
+            }
+        }
+    }
+
+    /**
+     * Lê uma gravação no formato binário, da versão actual ou da 1 (sem
+     * vírgula fixa nem checksums).
+     *
+     * @param entrada De onde ler.
+     * @return A gravação lida.
+     * @throws IOException Se não for possível ler ou o formato não for válido.
+     */
+    public static Replay ler(InputStream entrada) throws IOException {
+        for (byte b : ASSINATURA) {
+            if (lerByte(entrada) != b) {
+                throw new IOException("Não é um ficheiro de replay.");
+            }
+        }
+        int versao = lerByte(entrada);
+        if (versao < 1 || versao > VERSAO) {
+            throw new IOException("Versão de replay desconhecida: " + versao);
+        }
+        long zigzag = lerVarLong(entrada);
+        int frequencia = (int) lerVarLong(entrada);
+        boolean fixa = versao >= 2 && lerByte(entrada) != 0;
+        Replay replay = new Replay((zigzag >>> 1) ^ -(zigzag & 1), frequencia, fixa);
+        replay.semFins = versao < 2;
+        int numero = (int) lerVarLong(entrada);
+        for (int i = 0; i < numero; i++) {
+            int difficulty = (int) lerVarLong(entrada);
+            int level = (int) lerVarLong(entrada);
+            boolean inicial = lerByte(entrada) != 0;
+            replay.iniciarNivel(difficulty, level, inicial);
+            int jatos = (int) lerVarLong(entrada);
+            int tick = 0;
+            for (int j = 0; j < jatos; j++) {
+                tick = tick + (int) lerVarLong(entrada);
+                replay.registarJato(tick);
+            }
+            if (versao >= 2 && lerByte(entrada) != 0) {
+                replay.terminarNivel(lerVarLong(entrada));
+            }
+        }
+        return replay;
+    }
+
+    /**
+     * Guarda a gravação num ficheiro.
+     *
+     * @param ficheiro Ficheiro onde guardar.
+     * @throws IOException Se não for possível escrever.
+     */
+    public void guardar(File ficheiro) throws IOException {
+        try (OutputStream saida = new BufferedOutputStream(new FileOutputStream(ficheiro))) {
+            escrever(saida);
+        }
+    }
+
+    /**
+     * Carrega uma gravação de um ficheiro.
+     *
+     * @param ficheiro Ficheiro a ler.
+     * @return A gravação lida.
+     * @throws IOException Se não for possível ler ou o formato não for válido.
+     */
+    public static Replay carregar(File ficheiro) throws IOException {
+        try (InputStream entrada = new BufferedInputStream(new FileInputStream(ficheiro))) {
+            return ler(entrada);
+        }
+    }
+
+    /**
+     * Escreve um número sem sinal como varint: 7 bits por byte, com o bit
+     * mais alto a dizer se há mais bytes.
+     *
+     * @param saida Onde escrever.
+     * @param valor Número a escrever.
+     * @throws IOException Se não for possível escrever.
+     */
+    private static void escreverVarLong(OutputStream saida, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            saida.write((int) ((valor & 0x7F) | 0x80));
+            valor = valor >>> 7;
+        }
+        saida.write((int) valor);
+    }
+
+    /**
+     * Lê um número escrito com <code>escreverVarLong()</code>.
+     *
+     * @param entrada De onde ler.
+     * @return O número lido.
+     * @throws IOException Se não for possível ler.
+     */
+    private static long lerVarLong(InputStream entrada) throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento = deslocamento + 7) {
+            int b = lerByte(entrada);
+            valor = valor | ((long) (b & 0x7F) << deslocamento);
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Varint inválido.");
+    }
+
+    /**
+     * @param entrada De onde ler.
+     * @return O próximo byte.
+     * @throws IOException Se o ficheiro acabar antes do tempo.
+     */
+    private static int lerByte(InputStream entrada) throws IOException {
+        int b = entrada.read();
+        if (b < 0) {
+            throw new EOFException("Replay incompleto.");
+        }
+        return b;
+    }
+}
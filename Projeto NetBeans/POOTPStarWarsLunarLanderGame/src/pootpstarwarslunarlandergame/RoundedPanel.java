@@ -5,6 +5,10 @@ package pootpstarwarslunarlandergame;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
 import javax.swing.JPanel;
 
 /**
@@ -14,6 +18,11 @@ import javax.swing.JPanel;
  *
  * <b><i>Nota:</i></b> Após de instanciar esta classe deverá definir a opacidade
  * como 'false'
+ * <p>
+ * O fundo arredondado, com a borda, é desenhado uma vez para uma imagem que é
+ * guardada e depois apenas copiada em cada <code>paintComponent()</code>. A
+ * imagem só é refeita quando muda o tamanho do painel, a cor ou a escala do
+ * ecrã.
  *
  * @author C.M.P.Soares
  * @see JPanel
@@ -33,6 +42,34 @@ class RoundedPanel extends JPanel {
      * transparente.
      */
     private final boolean COLOR_IS_BLACK;
+    /**
+     * Cor da borda do painel.
+     */
+    private static final Color COR_BORDA = new Color(0, 0, 0, 70);
+    /**
+     * Imagem com o fundo arredondado já desenhado.
+     */
+    private BufferedImage fundo;
+    /**
+     * Largura do painel para a qual o fundo foi desenhado.
+     */
+    private int larguraFundo;
+    /**
+     * Altura do painel para a qual o fundo foi desenhado.
+     */
+    private int alturaFundo;
+    /**
+     * Cor de base (fundo ou primeiro plano) com que o fundo foi desenhado.
+     */
+    private Color corFundo;
+    /**
+     * Configuração gráfica para a qual o fundo foi desenhado.
+     */
+    private GraphicsConfiguration configuracaoFundo;
+    /**
+     * Escala do ecrã para a qual o fundo foi desenhado.
+     */
+    private double escalaFundo;
 
     /**
      * Construtor obrigatório para criar uma instância desta classe.
@@ -46,19 +83,62 @@ class RoundedPanel extends JPanel {
     }
 
     /**
-     * Override do method que desenha o painel.
+     * Override do method que desenha o painel. Copia o fundo guardado,
+     * refazendo-o antes se o painel mudou de tamanho, de cor ou de ecrã.
      *
      * @param g Parâmetro base do metodo <code>paintComponent()</code>.
      * @see JPanel#paintComponent(java.awt.Graphics) 
      */
     @Override
     public void paintComponent(Graphics g) {
-        Color bg = getBackground();
-        if (!COLOR_IS_BLACK) {
-            g.setColor(new Color(bg.getRed(), bg.getGreen(), bg.getBlue(), 40));
+        int largura = getWidth();
+        int altura = getHeight();
+        if (largura <= 0 || altura <= 0) {
+            return;
+        }
+        Object evento = EventosJfr.iniciarDesenho();
+        Color cor = COLOR_IS_BLACK ? getForeground() : getBackground();
+        GraphicsConfiguration configuracao = ((Graphics2D) g).getDeviceConfiguration();
+
+        if (fundo == null || largura != larguraFundo || altura != alturaFundo || configuracao != configuracaoFundo || !cor.equals(corFundo)) {
+            desenharFundo(configuracao, largura, altura, cor);
+        }
+        if (escalaFundo == 1) {
+            g.drawImage(fundo, 0, 0, null);
+        } else {
+            g.drawImage(fundo, 0, 0, largura, altura, null);
+        }
+        EventosJfr.terminarDesenho(evento, RoundedPanel.class);
+    }
+
+    /**
+     * Desenha o fundo arredondado e a borda para uma imagem nova, que fica
+     * guardada até voltar a ser precisa outra.
+     *
+     * @param configuracao Configuração gráfica onde o fundo vai ser copiado.
+     * @param largura Largura do painel.
+     * @param altura Altura do painel.
+     * @param cor Cor de base do painel.
+     */
+    private void desenharFundo(GraphicsConfiguration configuracao, int largura, int altura, Color cor) {
+        double escala = Math.max(1, configuracao.getDefaultTransform().getScaleX());
+        fundo = configuracao.createCompatibleImage((int) Math.ceil(largura * escala), (int) Math.ceil(altura * escala), Transparency.TRANSLUCENT);
+        larguraFundo = largura;
+        alturaFundo = altura;
+        configuracaoFundo = configuracao;
+        escalaFundo = escala;
+        corFundo = cor;
+
+        Graphics2D g2 = fundo.createGraphics();
+        g2.scale(escala, escala);
+        if (COLOR_IS_BLACK) {
+            g2.setColor(cor);
+        } else {
+            g2.setColor(new Color(cor.getRed(), cor.getGreen(), cor.getBlue(), 40));
         }
-        g.fillRoundRect(0, 0, getWidth() - 1, getHeight() - 1, RADIUS, RADIUS);
-        g.setColor(new Color(0, 0, 0, 70));
-        g.drawRoundRect(0, 0, getWidth() - 1, getHeight() - 1, RADIUS, RADIUS);
+        g2.fillRoundRect(0, 0, largura - 1, altura - 1, RADIUS, RADIUS);
+        g2.setColor(COR_BORDA);
+        g2.drawRoundRect(0, 0, largura - 1, altura - 1, RADIUS, RADIUS);
+        g2.dispose();
     }
 }
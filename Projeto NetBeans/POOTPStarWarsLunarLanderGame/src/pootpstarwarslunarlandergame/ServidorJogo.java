@@ -0,0 +1,534 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Servidor que corre muitas sessões de jogo ao mesmo tempo, sem GUI. Cada
+ * cliente liga-se por TCP (só no endereço local) e usa um protocolo de linhas
+ * de texto:
+ * <ul>
+ * <li>cliente: <code>NOVO d</code> (começa um jogo com a dificuldade d, de 1 a
+ * 4), <code>RETOMAR instantaneo</code> (continua um jogo suspenso),
+ * <code>JATO</code>, <code>SUSPENDER</code> e <code>SAIR</code>;</li>
+ * <li>servidor: <code>OK id</code>, <code>NIVEL d nivel altitude vmax</code>,
+ * <code>ESTADO tick altitude velocidade combustivel</code> (a cada tick),
+ * <code>FIM GANHO|PERDIDO nivel</code>, <code>INSTANTANEO bytes</code> (o
+ * Instantaneo do jogo suspenso, em hexadecimal, antes de fechar a ligação) e
+ * <code>ERRO mensagem</code>.</li>
+ * </ul>
+ * <p>
+ * Em vez de um Timer por sessão, como no Nivel, as sessões são divididas por
+ * fatias e cada fatia é uma tarefa periódica num único
+ * ScheduledExecutorService com poucas threads (uma por processador, por
+ * omissão). Uma thread de rede faz todas as leituras com um Selector; as
+ * escritas são feitas directamente pela fatia e só passam pela thread de rede
+ * quando o socket está cheio. Assim o número de threads não depende do número
+ * de sessões.
+ * <p>
+ * Para cada tick de cada fatia é guardada a latência, isto é, o tempo entre o
+ * instante em que o tick devia começar e o fim do tick de todas as sessões da
+ * fatia, para se poderem calcular percentis.
+ *
+ * @author C.M.P.Soares
+ * @see SessaoJogo
+ * @see Simulacao
+ */
+public class ServidorJogo {
+
+    /**
+     * Porta usada por omissão.
+     */
+    public static final int PORTA = 7777;
+    /**
+     * Número de fatias por thread, para o trabalho ficar repartido mesmo que
+     * uma fatia fique com mais sessões que as outras.
+     */
+    private static final int FATIAS_POR_THREAD = 4;
+    /**
+     * Número de latências guardadas por fatia (as mais recentes).
+     */
+    private static final int AMOSTRAS_POR_FATIA = 4096;
+    /**
+     * Porta pedida (0 para uma porta livre qualquer).
+     */
+    private final int porta;
+    /**
+     * Número de threads que fazem os ticks.
+     */
+    private final int threads;
+    /**
+     * Frequência dos ticks em Hz, ou 0 para o tick clássico de um segundo.
+     */
+    private final int frequencia;
+    /**
+     * Fatias em que as sessões estão divididas.
+     */
+    private final Fatia[] fatias;
+    /**
+     * Sessões que esperam que o canal possa ser escrito.
+     */
+    private final Queue<SessaoJogo> esperamEscrita = new ConcurrentLinkedQueue<>();
+    /**
+     * Número de sessões a jogar.
+     */
+    private final AtomicInteger sessoesActivas = new AtomicInteger();
+    /**
+     * Próximo identificador de sessão.
+     */
+    private final AtomicInteger proximoId = new AtomicInteger(1);
+    /**
+     * Threads onde correm as fatias.
+     */
+    private ScheduledExecutorService agendador;
+    /**
+     * Canal onde são aceites as ligações.
+     */
+    private ServerSocketChannel canalServidor;
+    /**
+     * Selector da thread de rede.
+     */
+    private Selector selector;
+    /**
+     * Thread de rede.
+     */
+    private Thread threadRede;
+    /**
+     * Indica se o servidor está a correr.
+     */
+    private volatile boolean aCorrer;
+
+    /**
+     * Construtor que usa as opções por omissão: porta 7777, uma thread por
+     * processador e a frequência da física do jogo.
+     *
+     * @see Opcoes#FISICA_HZ
+     */
+    public ServidorJogo() {
+        this(PORTA, Runtime.getRuntime().availableProcessors(), Opcoes.FISICA_HZ);
+    }
+
+    /**
+     * Construtor obrigatório para criar o servidor.
+     *
+     * @param porta Porta TCP, ou 0 para uma porta livre qualquer.
+     * @param threads Número de threads que fazem os ticks.
+     * @param frequencia Frequência dos ticks em Hz, ou 0 para o tick clássico
+     * de um segundo.
+     */
+    public ServidorJogo(int porta, int threads, int frequencia) {
+        this.porta = porta;
+        this.threads = Math.max(1, threads);
+        this.frequencia = frequencia;
+        this.fatias = new Fatia[this.threads * FATIAS_POR_THREAD];
+        for (int i = 0; i < fatias.length; i++) {
+            fatias[i] = new Fatia();
+        }
+    }
+
+    /**
+     * Grupo de sessões que avançam juntas, sempre na mesma thread de cada vez.
+     */
+    private final class Fatia implements Runnable {
+
+        /**
+         * Sessões novas, acrescentadas por outras threads.
+         */
+        private final Queue<SessaoJogo> novas = new ConcurrentLinkedQueue<>();
+        /**
+         * Sessões desta fatia. Só é usada pela fatia.
+         */
+        private final List<SessaoJogo> sessoes = new ArrayList<>();
+        /**
+         * Latências, em nanosegundos, dos últimos ticks.
+         */
+        private final long[] latencias = new long[AMOSTRAS_POR_FATIA];
+        /**
+         * Número de ticks feitos.
+         */
+        private long ticks;
+        /**
+         * Instante em que o primeiro tick devia começar.
+         */
+        private long inicio;
+        /**
+         * Duração de um tick em nanosegundos.
+         */
+        private long periodo;
+
+        @Override
+        public void run() {
+            try {
+                for (SessaoJogo nova = novas.poll(); nova != null; nova = novas.poll()) {
+                    nova.iniciar();
+                    sessoes.add(nova);
+                }
+                double dt = frequencia > 0 ? 1.0 / frequencia : 0;
+                for (int i = sessoes.size() - 1; i >= 0; i--) {
+                    SessaoJogo sessao = sessoes.get(i);
+                    if (!sessao.isFechada()) {
+                        sessao.tick(dt);
+                    }
+                    if (sessao.isFechada()) {
+                        int ultima = sessoes.size() - 1;
+                        sessoes.set(i, sessoes.get(ultima));
+                        sessoes.remove(ultima);
+                        sessoesActivas.decrementAndGet();
+                    }
+                }
+                long fim = System.nanoTime();
+                synchronized (this) {
+                    latencias[(int) (ticks % AMOSTRAS_POR_FATIA)] = fim - (inicio + ticks * periodo);
+                    ticks++;
+                }
+            } catch (RuntimeException ex) {
+                // Uma excepção cancelaria a tarefa periódica e pararia todas as
+                // sessões da fatia.
+                Logger.getLogger(ServidorJogo.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        /**
+         * Copia as latências guardadas para uma lista.
+         *
+         * @param destino Lista onde acrescentar as latências.
+         */
+        synchronized void copiarLatencias(List<Long> destino) {
+            int n = (int) Math.min(ticks, AMOSTRAS_POR_FATIA);
+            for (int i = 0; i < n; i++) {
+                destino.add(latencias[i]);
+            }
+        }
+
+        /**
+         * Esquece as latências guardadas.
+         */
+        synchronized void limparLatencias() {
+            inicio += ticks * periodo;
+            ticks = 0;
+        }
+    }
+
+    /**
+     * Abre a porta e começa a fazer os ticks das sessões.
+     *
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        canalServidor = ServerSocketChannel.open();
+        canalServidor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta), 1024);
+        canalServidor.configureBlocking(false);
+        canalServidor.register(selector, SelectionKey.OP_ACCEPT);
+        aCorrer = true;
+
+        agendador = Executors.newScheduledThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger numero = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ServidorJogo-tick-" + numero.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        long periodo = frequencia > 0 ? 1000000000L / frequencia : 1000000000L;
+        long agora = System.nanoTime();
+        for (int i = 0; i < fatias.length; i++) {
+            // As fatias começam desfasadas para não acordarem todas ao mesmo
+            // tempo.
+            long atraso = periodo * i / fatias.length;
+            fatias[i].periodo = periodo;
+            fatias[i].inicio = agora + atraso;
+            agendador.scheduleAtFixedRate(fatias[i], atraso, periodo, TimeUnit.NANOSECONDS);
+        }
+
+        threadRede = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rede();
+            }
+        }, "ServidorJogo-rede");
+        threadRede.setDaemon(true);
+        threadRede.start();
+    }
+
+    /**
+     * Pára o servidor e fecha todas as ligações.
+     */
+    public void stop() {
+        aCorrer = false;
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (threadRede != null) {
+            try {
+                threadRede.join(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Ciclo da thread de rede: aceita ligações, lê os comandos e envia o que
+     * as fatias não conseguiram enviar.
+     */
+    private void rede() {
+        ByteBuffer lidos = ByteBuffer.allocateDirect(4096);
+        try {
+            while (aCorrer) {
+                selector.select();
+                for (SessaoJogo sessao = esperamEscrita.poll(); sessao != null; sessao = esperamEscrita.poll()) {
+                    SelectionKey chave = sessao.getCanal().keyFor(selector);
+                    if (chave != null && chave.isValid()) {
+                        chave.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+                Iterator<SelectionKey> chaves = selector.selectedKeys().iterator();
+                while (chaves.hasNext()) {
+                    SelectionKey chave = chaves.next();
+                    chaves.remove();
+                    if (!chave.isValid()) {
+                        continue;
+                    }
+                    if (chave.isAcceptable()) {
+                        aceitar();
+                        continue;
+                    }
+                    SessaoJogo sessao = (SessaoJogo) chave.attachment();
+                    if (chave.isWritable()) {
+                        synchronized (sessao) {
+                            sessao.despejar();
+                            if (!sessao.temSaidaPendente() && chave.isValid()) {
+                                chave.interestOps(SelectionKey.OP_READ);
+                            }
+                        }
+                    }
+                    if (chave.isValid() && chave.isReadable()) {
+                        ler(sessao, lidos);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ServidorJogo.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            for (SelectionKey chave : selector.keys()) {
+                try {
+                    chave.channel().close();
+                } catch (IOException ex) {
+                    Logger.getLogger(ServidorJogo.class.getName()).log(Level.FINE, null, ex);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                Logger.getLogger(ServidorJogo.class.getName()).log(Level.FINE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Aceita as ligações pendentes e cria as respectivas sessões.
+     *
+     * @throws IOException Se não for possível aceitar uma ligação.
+     */
+    private void aceitar() throws IOException {
+        for (SocketChannel canal = canalServidor.accept(); canal != null; canal = canalServidor.accept()) {
+            canal.configureBlocking(false);
+            canal.socket().setTcpNoDelay(true);
+            SessaoJogo sessao = new SessaoJogo(proximoId.getAndIncrement(), canal, this);
+            try {
+                canal.register(selector, SelectionKey.OP_READ, sessao);
+            } catch (ClosedChannelException ex) {
+                Logger.getLogger(ServidorJogo.class.getName()).log(Level.FINE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Lê os bytes disponíveis de uma sessão e trata os comandos recebidos.
+     *
+     * @param sessao Sessão com bytes para ler.
+     * @param lidos Buffer de leitura, reutilizado entre sessões.
+     */
+    private void ler(SessaoJogo sessao, ByteBuffer lidos) {
+        // Pelo Buffer: o ByteBuffer.clear() de um JDK 9 ou mais recente não
+        // existe em Java 7 e 8.
+        ((Buffer) lidos).clear();
+        int n;
+        try {
+            n = sessao.getCanal().read(lidos);
+        } catch (IOException ex) {
+            n = -1;
+        }
+        if (n < 0) {
+            sessao.fechar();
+            return;
+        }
+        ((Buffer) lidos).flip();
+        if (sessao.receber(lidos)) {
+            adicionar(sessao);
+        }
+    }
+
+    /**
+     * Coloca uma sessão numa fatia, que a começa no próximo tick.
+     *
+     * @param sessao Sessão a começar, já com a Simulacao criada.
+     */
+    private void adicionar(SessaoJogo sessao) {
+        sessoesActivas.incrementAndGet();
+        fatias[(sessao.getId() & 0x7fffffff) % fatias.length].novas.add(sessao);
+    }
+
+    /**
+     * Cria uma sessão sem rede, que joga sozinha com os jatos que lhe forem
+     * dados. Serve para testes de carga sem o custo dos sockets.
+     *
+     * @param difficulty Nível de dificuldade do jogo.
+     * @return A sessão criada.
+     */
+    SessaoJogo adicionarSessaoLocal(int difficulty) {
+        SessaoJogo sessao = new SessaoJogo(proximoId.getAndIncrement(), null, this, new Simulacao(difficulty));
+        adicionar(sessao);
+        return sessao;
+    }
+
+    /**
+     * Cria uma sessão sem rede que continua um jogo suspenso, por exemplo
+     * vindo de outro servidor.
+     *
+     * @param instantaneo Buffer com o Instantaneo do jogo.
+     * @return A sessão criada.
+     * @throws IllegalArgumentException Se o instantâneo não for válido.
+     */
+    SessaoJogo adicionarSessaoLocal(ByteBuffer instantaneo) {
+        SessaoJogo sessao = new SessaoJogo(proximoId.getAndIncrement(), null, this, Instantaneo.ler(instantaneo));
+        adicionar(sessao);
+        return sessao;
+    }
+
+    /**
+     * Pede à thread de rede para avisar quando o canal da sessão puder ser
+     * escrito.
+     *
+     * @param sessao Sessão com saída pendente.
+     */
+    void esperarEscrita(SessaoJogo sessao) {
+        esperamEscrita.add(sessao);
+        selector.wakeup();
+    }
+
+    /**
+     * Fecha a ligação de uma sessão. A sessão sai da sua fatia no próximo
+     * tick.
+     *
+     * @param sessao Sessão a fechar.
+     */
+    void fechar(SessaoJogo sessao) {
+        if (sessao.getCanal() != null) {
+            try {
+                sessao.getCanal().close();
+            } catch (IOException ex) {
+                Logger.getLogger(ServidorJogo.class.getName()).log(Level.FINE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * @return A porta em que o servidor está a aceitar ligações.
+     */
+    public int getPorta() {
+        return canalServidor != null ? canalServidor.socket().getLocalPort() : porta;
+    }
+
+    /**
+     * @return Número de threads que fazem os ticks.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return Número de sessões a jogar.
+     */
+    public int getNumeroSessoes() {
+        return sessoesActivas.get();
+    }
+
+    /**
+     * Calcula percentis das latências dos ticks mais recentes de todas as
+     * fatias.
+     *
+     * @param percentis Percentis pedidos, entre 0 e 100.
+     * @return Latência, em nanosegundos, de cada percentil pedido.
+     */
+    public long[] getPercentisLatencia(double... percentis) {
+        List<Long> todas = new ArrayList<>();
+        for (Fatia fatia : fatias) {
+            fatia.copiarLatencias(todas);
+        }
+        long[] ordenadas = new long[todas.size()];
+        for (int i = 0; i < ordenadas.length; i++) {
+            ordenadas[i] = todas.get(i);
+        }
+        Arrays.sort(ordenadas);
+        long[] resultado = new long[percentis.length];
+        for (int i = 0; i < percentis.length && ordenadas.length > 0; i++) {
+            int indice = (int) Math.ceil(percentis[i] / 100 * ordenadas.length) - 1;
+            resultado[i] = ordenadas[Math.max(0, Math.min(ordenadas.length - 1, indice))];
+        }
+        return resultado;
+    }
+
+    /**
+     * Esquece as latências guardadas, por exemplo no fim do aquecimento de um
+     * teste de carga.
+     */
+    public void limparLatencias() {
+        for (Fatia fatia : fatias) {
+            fatia.limparLatencias();
+        }
+    }
+
+    /**
+     * Escreve o número de sessões e os percentis da latência dos ticks.
+     *
+     * @param saida Onde escrever o relatório.
+     */
+    public void relatorio(PrintStream saida) {
+        long[] p = getPercentisLatencia(50, 90, 99, 99.9, 100);
+        saida.println(getNumeroSessoes() + " sessões em " + threads + " threads ("
+                + getNumeroSessoes() / threads + " por thread), latência do tick em us: p50 " + p[0] / 1000
+                + ", p90 " + p[1] / 1000 + ", p99 " + p[2] / 1000 + ", p99.9 " + p[3] / 1000 + ", máx " + p[4] / 1000);
+    }
+}
@@ -0,0 +1,482 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sessão de um jogador no ServidorJogo. É o equivalente ao Nivel sem GUI: tem
+ * a sua Simulacao, recebe os jatos do cliente e, a cada tick, envia-lhe o
+ * estado. No fim de um nível passa ao seguinte se o ganhou, ou repete-o se o
+ * perdeu.
+ * <p>
+ * Os jatos chegam na thread de rede e são apenas contados; é a thread que faz
+ * o tick que os passa para a Simulacao, pelo que esta só é usada por uma
+ * thread de cada vez. As mensagens para o cliente são escritas directamente
+ * no buffer de saída, sem criar Strings.
+ * <p>
+ * Com o comando SUSPENDER a sessão envia ao cliente o Instantaneo do jogo,
+ * em hexadecimal, e termina; com RETOMAR esse instantâneo pode ser entregue a
+ * este ou a outro servidor, que continua o jogo no mesmo tick.
+ *
+ * @author C.M.P.Soares
+ * @see ServidorJogo
+ */
+class SessaoJogo {
+
+    /**
+     * Tamanho do buffer de saída. Um cliente que não lê e deixa o buffer
+     * encher é desligado.
+     */
+    private static final int TAMANHO_SAIDA = 8192;
+    /**
+     * Tamanho máximo de uma linha enviada pelo cliente, onde tem de caber um
+     * RETOMAR com o instantâneo.
+     */
+    private static final int TAMANHO_ENTRADA = 512;
+    /**
+     * Algarismos hexadecimais dos instantâneos.
+     */
+    private static final String HEXADECIMAL = "0123456789abcdef";
+    /**
+     * Identificador da sessão no servidor.
+     */
+    private final int id;
+    /**
+     * Ligação ao cliente, ou null numa sessão sem rede.
+     */
+    private final SocketChannel canal;
+    /**
+     * Servidor a quem pedir para esperar que o canal possa ser escrito.
+     */
+    private final ServidorJogo servidor;
+    /**
+     * Bytes recebidos que ainda não formam uma linha completa.
+     */
+    private final ByteBuffer entrada = ByteBuffer.allocate(TAMANHO_ENTRADA);
+    /**
+     * Bytes por enviar ao cliente, em modo de escrita.
+     */
+    private final ByteBuffer saida;
+    /**
+     * Jatos recebidos desde o último tick.
+     */
+    private final AtomicInteger jatosPendentes = new AtomicInteger();
+    /**
+     * Núcleo da simulação do nível actual, criado na thread de rede com o
+     * comando NOVO e só usado pela fatia depois de a sessão lhe ser entregue.
+     */
+    private Simulacao simulacao;
+    /**
+     * Indica se o cliente pediu para suspender o jogo no próximo tick.
+     */
+    private volatile boolean aSuspender;
+    /**
+     * Indica se o jogo já foi suspenso: a sessão deixa de avançar e a ligação
+     * é fechada assim que o instantâneo tiver sido todo enviado.
+     */
+    private volatile boolean aTerminar;
+    /**
+     * Indica se o servidor já está à espera que o canal possa ser escrito.
+     */
+    private boolean aEsperarEscrita;
+    /**
+     * Indica se a sessão terminou e deve sair da sua fatia.
+     */
+    private volatile boolean fechada;
+
+    /**
+     * Construtor obrigatório para criar a sessão de um cliente.
+     *
+     * @param id Identificador da sessão.
+     * @param canal Ligação ao cliente, ou null numa sessão sem rede.
+     * @param servidor Servidor a que a sessão pertence.
+     */
+    SessaoJogo(int id, SocketChannel canal, ServidorJogo servidor) {
+        this(id, canal, servidor, null);
+    }
+
+    /**
+     * Construtor de uma sessão que já tem o jogo criado, como as sessões sem
+     * rede.
+     *
+     * @param id Identificador da sessão.
+     * @param canal Ligação ao cliente, ou null numa sessão sem rede.
+     * @param servidor Servidor a que a sessão pertence.
+     * @param simulacao Simulação do primeiro nível, ou null para esperar pelo
+     * comando NOVO.
+     */
+    SessaoJogo(int id, SocketChannel canal, ServidorJogo servidor, Simulacao simulacao) {
+        this.id = id;
+        this.simulacao = simulacao;
+        this.canal = canal;
+        this.servidor = servidor;
+        this.saida = ByteBuffer.allocate(canal != null ? TAMANHO_SAIDA : 0);
+    }
+
+    /**
+     * Trata os bytes acabados de ler do cliente, linha a linha. Chamado na
+     * thread de rede.
+     *
+     * @param lidos Buffer, em modo de leitura, com os bytes recebidos.
+     * @return 'true' se um dos comandos foi NOVO e a sessão pode começar.
+     */
+    boolean receber(ByteBuffer lidos) {
+        boolean nova = false;
+        while (lidos.hasRemaining()) {
+            byte b = lidos.get();
+            if (b == '\n') {
+                // Pelo Buffer: o ByteBuffer.flip() de um JDK 9 ou mais recente
+                // não existe em Java 7 e 8.
+                ((Buffer) entrada).flip();
+                nova |= comando();
+                ((Buffer) entrada).clear();
+            } else if (b != '\r') {
+                if (!entrada.hasRemaining()) {
+                    enviar("ERRO linha demasiado longa");
+                    fechar();
+                    return false;
+                }
+                entrada.put(b);
+            }
+        }
+        return nova;
+    }
+
+    /**
+     * Executa o comando que está no buffer de entrada: <code>NOVO d</code>,
+     * <code>RETOMAR instantaneo</code>, <code>JATO</code>,
+     * <code>SUSPENDER</code> ou <code>SAIR</code>.
+     *
+     * @return 'true' se o comando foi um NOVO ou RETOMAR válido.
+     */
+    private boolean comando() {
+        if (igual("JATO")) {
+            jatosPendentes.incrementAndGet();
+        } else if (entrada.remaining() == 6 && comeca("NOVO ")) {
+            int d = entrada.get(5) - '0';
+            if (simulacao != null) {
+                enviar("ERRO sessao ja iniciada");
+            } else if (d < Nave.NAVE_EASY || d > Nave.NAVE_VERY_HARD) {
+                enviar("ERRO dificuldade invalida");
+            } else {
+                simulacao = new Simulacao(d);
+                return true;
+            }
+        } else if (comeca("RETOMAR ")) {
+            if (simulacao != null) {
+                enviar("ERRO sessao ja iniciada");
+            } else if (entrada.remaining() != 8 + 2 * Instantaneo.TAMANHO) {
+                enviar("ERRO instantaneo invalido");
+            } else {
+                return retomar();
+            }
+        } else if (igual("SUSPENDER")) {
+            if (simulacao == null) {
+                enviar("ERRO sessao nao iniciada");
+            } else {
+                aSuspender = true;
+            }
+        } else if (igual("SAIR")) {
+            fechar();
+        } else if (entrada.hasRemaining()) {
+            enviar("ERRO comando desconhecido");
+        }
+        return false;
+    }
+
+    /**
+     * Cria a simulação a partir do instantâneo, em hexadecimal, que está no
+     * buffer de entrada a seguir a "RETOMAR ".
+     *
+     * @return 'true' se o instantâneo era válido.
+     */
+    private boolean retomar() {
+        ByteBuffer bytes = ByteBuffer.allocate(Instantaneo.TAMANHO);
+        for (int i = 8; i < entrada.remaining(); i += 2) {
+            int alto = Character.digit(entrada.get(i), 16);
+            int baixo = Character.digit(entrada.get(i + 1), 16);
+            if (alto < 0 || baixo < 0) {
+                enviar("ERRO instantaneo invalido");
+                return false;
+            }
+            bytes.put((byte) (alto << 4 | baixo));
+        }
+        ((Buffer) bytes).flip();
+        try {
+            simulacao = Instantaneo.ler(bytes);
+        } catch (IllegalArgumentException ex) {
+            enviar("ERRO instantaneo invalido");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param texto Texto ASCII a comparar.
+     * @return 'true' se a linha recebida começa pelo texto.
+     */
+    private boolean comeca(String texto) {
+        if (entrada.remaining() < texto.length()) {
+            return false;
+        }
+        for (int i = 0; i < texto.length(); i++) {
+            if (entrada.get(i) != texto.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param texto Texto ASCII a comparar.
+     * @return 'true' se a linha recebida é igual ao texto.
+     */
+    private boolean igual(String texto) {
+        return entrada.remaining() == texto.length() && comeca(texto);
+    }
+
+    /**
+     * Começa o primeiro nível. Chamado na thread da fatia, antes do primeiro
+     * tick.
+     */
+    void iniciar() {
+        jatosPendentes.set(0);
+        if (canal == null) {
+            return;
+        }
+        synchronized (this) {
+            escrever("OK ").escrever(id).escrever('\n');
+            escreverNivel();
+            despejar();
+        }
+    }
+
+    /**
+     * Avança a simulação um tick, com os jatos recebidos desde o anterior, e
+     * envia o estado ao cliente. Chamado sempre na thread da fatia.
+     *
+     * @param dt Intervalo do tick em segundos, ou 0 para o tick clássico.
+     */
+    void tick(double dt) {
+        if (aTerminar) {
+            return;
+        }
+        if (aSuspender) {
+            suspender();
+            return;
+        }
+        for (int j = jatosPendentes.getAndSet(0); j > 0; j--) {
+            simulacao.hitJato();
+        }
+        boolean aterrou = dt > 0 ? simulacao.step(dt) : simulacao.step();
+        if (canal == null) {
+            if (aterrou) {
+                proximoNivel();
+            }
+            return;
+        }
+        synchronized (this) {
+            escrever("ESTADO ").escrever(simulacao.getTick()).escrever(' ').escrever(simulacao.getAltitude())
+                    .escrever(' ').escrever(simulacao.getVelocidadeActual()).escrever(' ').escrever(simulacao.getCombustivel()).escrever('\n');
+            if (aterrou) {
+                escrever(simulacao.isNivelGanho() ? "FIM GANHO " : "FIM PERDIDO ").escrever(simulacao.getLevel()).escrever('\n');
+                proximoNivel();
+                escreverNivel();
+            }
+            despejar();
+        }
+    }
+
+    /**
+     * Envia ao cliente o instantâneo do jogo, no estado do fim do último tick,
+     * e termina a sessão. Os jatos recebidos depois desse tick vão no
+     * instantâneo como jatos em espera. Se o socket não aceitar logo a linha
+     * toda, a ligação só é fechada pelo <code>despejar()</code> da thread de
+     * rede depois de o resto ter sido enviado.
+     */
+    private void suspender() {
+        for (int j = jatosPendentes.getAndSet(0); j > 0; j--) {
+            simulacao.hitJato();
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(Instantaneo.TAMANHO);
+        Instantaneo.escrever(simulacao, bytes);
+        synchronized (this) {
+            escrever("INSTANTANEO ");
+            for (int i = 0; i < bytes.position(); i++) {
+                escrever(HEXADECIMAL.charAt((bytes.get(i) >> 4) & 0xf)).escrever(HEXADECIMAL.charAt(bytes.get(i) & 0xf));
+            }
+            escrever('\n');
+            aTerminar = true;
+            despejar();
+        }
+    }
+
+    /**
+     * Prepara o nível seguinte se o actual foi ganho, senão repete-o.
+     */
+    private void proximoNivel() {
+        if (simulacao.isNivelGanho()) {
+            simulacao.setLevel(simulacao.getLevel() + 1);
+        }
+        simulacao.setNewLevelParametres();
+        jatosPendentes.set(0);
+    }
+
+    /**
+     * Escreve a linha com os dados do nível que vai começar.
+     */
+    private void escreverNivel() {
+        escrever("NIVEL ").escrever(simulacao.getDifficulty()).escrever(' ').escrever(simulacao.getLevel()).escrever(' ')
+                .escrever(simulacao.getAltitude()).escrever(' ').escrever(simulacao.getVelocidadeMaxima()).escrever('\n');
+    }
+
+    /**
+     * Envia uma linha de texto ao cliente.
+     *
+     * @param linha Linha, sem o fim de linha.
+     */
+    synchronized void enviar(String linha) {
+        if (canal != null) {
+            escrever(linha).escrever('\n');
+            despejar();
+        }
+    }
+
+    /**
+     * Acrescenta um caracter ASCII ao buffer de saída.
+     *
+     * @param c Caracter a escrever.
+     * @return Esta sessão, para se poderem encadear escritas.
+     */
+    private SessaoJogo escrever(char c) {
+        if (saida.hasRemaining()) {
+            saida.put((byte) c);
+        } else {
+            fechada = true;
+        }
+        return this;
+    }
+
+    /**
+     * Acrescenta texto ASCII ao buffer de saída.
+     *
+     * @param texto Texto a escrever.
+     * @return Esta sessão, para se poderem encadear escritas.
+     */
+    private SessaoJogo escrever(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            escrever(texto.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Acrescenta um inteiro em decimal ao buffer de saída, sem criar Strings.
+     *
+     * @param valor Valor a escrever.
+     * @return Esta sessão, para se poderem encadear escritas.
+     */
+    private SessaoJogo escrever(int valor) {
+        long v = valor;
+        if (v < 0) {
+            escrever('-');
+            v = -v;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= v) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            escrever((char) ('0' + (v / divisor) % 10));
+        }
+        return this;
+    }
+
+    /**
+     * Tenta enviar o buffer de saída. O que não couber no socket fica para
+     * quando o servidor avisar que o canal pode ser escrito. Numa sessão
+     * suspensa, fecha a ligação quando já não houver nada por enviar. Tem de
+     * ser chamado com o monitor desta sessão.
+     */
+    void despejar() {
+        if (fechada) {
+            servidor.fechar(this);
+            return;
+        }
+        ((Buffer) saida).flip();
+        try {
+            canal.write(saida);
+        } catch (IOException ex) {
+            fechada = true;
+        }
+        saida.compact();
+        if (aTerminar && saida.position() == 0) {
+            fechada = true;
+        }
+        if (fechada) {
+            servidor.fechar(this);
+        } else if (saida.position() > 0 && !aEsperarEscrita) {
+            aEsperarEscrita = true;
+            servidor.esperarEscrita(this);
+        } else if (saida.position() == 0) {
+            aEsperarEscrita = false;
+        }
+    }
+
+    /**
+     * @return 'true' se ainda há bytes por enviar ao cliente.
+     */
+    synchronized boolean temSaidaPendente() {
+        return saida.position() > 0;
+    }
+
+    /**
+     * Marca a sessão como terminada e fecha a ligação.
+     */
+    void fechar() {
+        fechada = true;
+        servidor.fechar(this);
+    }
+
+    /**
+     * @return 'true' se a sessão já terminou.
+     */
+    boolean isFechada() {
+        return fechada;
+    }
+
+    /**
+     * @return Ligação ao cliente, ou null numa sessão sem rede.
+     */
+    SocketChannel getCanal() {
+        return canal;
+    }
+
+    /**
+     * @return Identificador da sessão no servidor.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * @return Núcleo da simulação do nível actual, ou null antes do NOVO.
+     * Só deve ser usado na thread da fatia.
+     */
+    Simulacao getSimulacao() {
+        return simulacao;
+    }
+
+    /**
+     * Conta um jato vindo de fora da rede, por exemplo do teste de carga.
+     */
+    void hitJato() {
+        jatosPendentes.incrementAndGet();
+    }
+}
@@ -0,0 +1,828 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Núcleo da simulação do jogo, sem qualquer dependência de Swing ou AWT. Guarda
+ * o estado de um nível (altitude, velocidade, jatos em espera, Astro e Nave) e
+ * avança-o um tick de cada vez com o método <code>step()</code>. Não aloca
+ * memória durante os ticks, pelo que pode ser corrido milhões de vezes por
+ * segundo num servidor sem ecrã. O Nivel e o GUI são apenas um dos possíveis
+ * consumidores desta classe.
+ * <p>
+ * Além do tick clássico de um segundo (<code>step()</code>) existe o
+ * <code>step(double)</code>, usado pelo CicloJogo, em que a gravidade e o jato
+ * são escalados pelo intervalo de tempo. Nesse modo cada jato é uma queima de
+ * um segundo, e com intervalo 1.0 o resultado é igual ao do tick clássico.
+ * <p>
+ * O <code>avancar(double)</code> integra o mesmo modelo contínuo de forma
+ * exacta: entre eventos (início e fim de uma queima) a aceleração é
+ * constante, pelo que a altitude é uma parábola e o instante em que toca no
+ * solo é a raiz de uma equação do segundo grau. A velocidade de aterragem, e
+ * portanto o veredicto do nível, não depende do tamanho do passo, e o passo
+ * pode ser tão grande quanto se queira (até infinito, para saltar de evento em
+ * evento até ao fim do nível).
+ * <p>
+ * Para o jogo ser igual em qualquer máquina (replays e jogo em lockstep) há
+ * ainda o <code>stepFixo(int)</code>, o mesmo modelo do
+ * <code>step(double)</code> em vírgula fixa: altitude, velocidade e queima
+ * são <code>long</code> com <code>BITS_FRACCAO</code> bits de parte
+ * fraccionária e só se usam somas, multiplicações e divisões inteiras, cujo
+ * resultado não depende do JIT nem do processador. Em todos os modos cada
+ * tick actualiza um checksum do estado, para duas simulações que divirjam
+ * serem apanhadas no próprio tick em que isso acontece.
+ *
+ * @author C.M.P.Soares
+ * @see Nivel
+ */
+public class Simulacao {
+
+    /**
+     * Número de bits da parte fraccionária dos valores em vírgula fixa do
+     * <code>stepFixo(int)</code>.
+     */
+    static final int BITS_FRACCAO = 32;
+    /**
+     * O valor 1 em vírgula fixa.
+     */
+    private static final long UM_FIXO = 1L << BITS_FRACCAO;
+    /**
+     * Valor do checksum no início de cada nível.
+     */
+    private static final long CHECKSUM_INICIAL = 0xCBF29CE484222325L;
+    /**
+     * Multiplicador (ímpar) usado para misturar os valores no checksum.
+     */
+    private static final long MISTURA = 0x9E3779B97F4A7C15L;
+    /**
+     * Maior nível(level) aceite num Instantaneo. Está muito acima de qualquer
+     * jogo real e garante que a altitude inicial e o combustível do nível
+     * cabem num <code>int</code> e que o Astro é criado depressa.
+     */
+    static final int NIVEL_MAXIMO = 1000000;
+    /**
+     * Maior valor absoluto aceite num Instantaneo para a altitude e a
+     * velocidade, em metros e metros por segundo. Com este limite os valores
+     * em vírgula fixa cabem num <code>long</code>.
+     */
+    private static final double VALOR_MAXIMO = Integer.MAX_VALUE;
+
+    /**
+     * Variável que contém o valor da altitude vigente.
+     */
+    private int altitude;
+    /**
+     * Valor da altitude inicial do nível.
+     */
+    private int altitudeInicial;
+    /**
+     * Valor da velocidade máxima para se conseguir passar de nível.
+     */
+    private int velocidadeMaxima;
+    /**
+     * Valor da velocidade actualizada de tick em tick.
+     */
+    private int velocidadeActual;
+    /**
+     * Variável que nos indica quantos 'jatos' ainda se encontram em espera.
+     */
+    private int jatos;
+    /**
+     * Nível de dificuldade do jogo.
+     *
+     * @see Nave#NAVE_EASY
+     * @see Nave#NAVE_MEDIUM
+     * @see Nave#NAVE_HARD
+     * @see Nave#NAVE_VERY_HARD
+     */
+    private final int difficulty;
+    /**
+     * Valor inteiro que define dentro do nível/ grau de dificuldade qual é o
+     * nível(level) em que se encontra o jogador.
+     */
+    private int level;
+    /**
+     * Percentagem em que a nave se encontra de finalizar o nível(level). O
+     * valor 1.00 significa que aterrou.
+     */
+    private double percentNivel;
+    /**
+     * Altitude vigente em vírgula flutuante, usada no modo de passo variável.
+     */
+    private double altitudeExacta;
+    /**
+     * Altitude no início do último tick, para se poder interpolar o desenho
+     * entre dois estados da física.
+     */
+    private double altitudeAnterior;
+    /**
+     * Velocidade vigente em vírgula flutuante, usada no modo de passo
+     * variável.
+     */
+    private double velocidadeExacta;
+    /**
+     * Segundos que ainda faltam ao jato que está a queimar no modo de passo
+     * variável.
+     */
+    private double queimaRestante;
+    /**
+     * Altitude vigente em vírgula fixa, usada no <code>stepFixo(int)</code>.
+     */
+    private long altitudeFixa;
+    /**
+     * Velocidade vigente em vírgula fixa, usada no <code>stepFixo(int)</code>.
+     */
+    private long velocidadeFixa;
+    /**
+     * Segundos, em vírgula fixa, que ainda faltam ao jato que está a queimar
+     * no <code>stepFixo(int)</code>.
+     */
+    private long queimaFixa;
+    /**
+     * Checksum do estado da simulação, actualizado em cada tick.
+     */
+    private long checksum;
+    /**
+     * Número de ticks executados desde o início do nível.
+     */
+    private int tick;
+    /**
+     * Segundos de jogo simulados pelo <code>avancar(double)</code> desde o
+     * início do nível, até ao instante exacto da aterragem.
+     */
+    private double tempo;
+    /**
+     * Indica se a nave já tocou no solo neste nível.
+     */
+    private boolean aterrou;
+    /**
+     * Indica se o nível actual usa os parâmetros de um jogo novo (o primeiro
+     * nível fácil), em vez dos do <code>setNewLevelParametres()</code>.
+     */
+    private boolean parametrosIniciais;
+    /**
+     * Instância de um Astro para guardar/utilizar dados actuais do nível.
+     *
+     * @see Astro
+     */
+    private Astro astro;
+    /**
+     * Instância de uma Nave para guardar/utilizar dados actuais do nível.
+     *
+     * @see Nave
+     */
+    private Nave nave;
+
+    /**
+     * Construtor que cria a simulação do primeiro nível com a dificuldade
+     * indicada, tal como quando se começa um jogo novo.
+     *
+     * @param difficulty Nível de dificuldade do jogo.
+     */
+    public Simulacao(int difficulty) {
+        this.difficulty = difficulty;
+
+        level = 1;
+
+        if (difficulty == Nave.NAVE_EASY) {
+            percentNivel = 0;
+            jatos = 0;
+            tick = 0;
+            tempo = 0;
+            aterrou = false;
+            velocidadeActual = 0;
+            velocidadeMaxima = 50;
+            altitudeInicial = 100;
+            altitude = altitudeInicial;
+            astro = new Astro(5, level);
+            nave = new Nave(8, 51, 1);
+            parametrosIniciais = true;
+            sincronizarExactos();
+            altitudeAnterior = altitudeExacta;
+            queimaRestante = 0;
+            queimaFixa = 0;
+            checksum = CHECKSUM_INICIAL;
+        } else {
+            setNewLevelParametres();
+        }
+    }
+
+    /**
+     * Construtor que cria a simulação de um nível(level) qualquer, com os
+     * parâmetros que o jogo usa ao (re)começar esse nível.
+     *
+     * @param difficulty Nível de dificuldade do jogo.
+     * @param level Nível(level) a simular.
+     */
+    public Simulacao(int difficulty, int level) {
+        this.difficulty = difficulty;
+        this.level = level;
+        setNewLevelParametres();
+    }
+
+    /**
+     * Construtor que restaura a simulação de um Instantaneo, lendo os campos
+     * pela mesma ordem em que o <code>escrever(ByteBuffer)</code> os escreve.
+     * O Astro e a Nave são recriados com os valores guardados.
+     * <p>
+     * Os bytes podem vir de fora (comando RETOMAR do ServidorJogo), por isso
+     * cada campo é validado antes de ser usado: os parâmetros do nível
+     * (altitude inicial, velocidade máxima, gravidade, aceleração e gasto por
+     * jato) têm de ser os que o jogo usa para essa dificuldade e nível, e o
+     * resto do estado tem de estar dentro dos valores que um jogo consegue
+     * atingir.
+     *
+     * @param origem Buffer posicionado no início do corpo do instantâneo.
+     * @throws IllegalArgumentException Se algum campo estiver fora dos valores
+     * possíveis.
+     * @see Instantaneo
+     */
+    Simulacao(ByteBuffer origem) {
+        int estado = origem.get();
+        aterrou = (estado & 1) != 0;
+        parametrosIniciais = (estado & 2) != 0;
+        difficulty = origem.get();
+        level = origem.getInt();
+        validar((estado & ~3) == 0, "estado", estado);
+        validar(difficulty >= Nave.NAVE_EASY && difficulty <= Nave.NAVE_VERY_HARD, "dificuldade", difficulty);
+        validar(level >= 1 && level <= NIVEL_MAXIMO, "nível", level);
+        validar(!parametrosIniciais || (difficulty == Nave.NAVE_EASY && level == 1), "parâmetros iniciais", level);
+        Simulacao referencia = parametrosIniciais ? new Simulacao(difficulty) : new Simulacao(difficulty, level);
+        altitude = origem.getInt();
+        altitudeInicial = origem.getInt();
+        velocidadeActual = origem.getInt();
+        velocidadeMaxima = origem.getInt();
+        jatos = origem.getInt();
+        tick = origem.getInt();
+        int aceleracao = origem.getInt();
+        int aceleracaoPorJato = origem.getInt();
+        int combustivel = origem.getInt();
+        int gastoPorClick = origem.getInt();
+        validar(altitudeInicial == referencia.altitudeInicial, "altitude inicial", altitudeInicial);
+        validar(velocidadeMaxima == referencia.velocidadeMaxima, "velocidade máxima", velocidadeMaxima);
+        validar(aceleracao == referencia.astro.getAceleracao(), "gravidade", aceleracao);
+        validar(aceleracaoPorJato == referencia.nave.getAceleracaoPorJato(), "aceleração por jato", aceleracaoPorJato);
+        validar(gastoPorClick == referencia.nave.getGastoPorClick(), "gasto por jato", gastoPorClick);
+        // O último jato pode gastar mais do que o combustível que restava.
+        validar(combustivel > -gastoPorClick && combustivel <= referencia.nave.getCombustivel(), "combustível", combustivel);
+        validar(jatos >= 0, "jatos", jatos);
+        validar(tick >= 0, "tick", tick);
+        astro = new Astro(aceleracao, level);
+        nave = new Nave(aceleracaoPorJato, combustivel, gastoPorClick);
+        percentNivel = origem.getDouble();
+        altitudeExacta = origem.getDouble();
+        altitudeAnterior = origem.getDouble();
+        velocidadeExacta = origem.getDouble();
+        queimaRestante = origem.getDouble();
+        tempo = origem.getDouble();
+        altitudeFixa = origem.getLong();
+        velocidadeFixa = origem.getLong();
+        queimaFixa = origem.getLong();
+        checksum = origem.getLong();
+        validar(percentNivel >= -VALOR_MAXIMO && percentNivel <= 1, "percentagem do nível", percentNivel);
+        validar(altitudeExacta >= -VALOR_MAXIMO && altitudeExacta <= VALOR_MAXIMO, "altitude", altitudeExacta);
+        validar(altitudeAnterior >= -VALOR_MAXIMO && altitudeAnterior <= VALOR_MAXIMO, "altitude anterior", altitudeAnterior);
+        validar(velocidadeExacta >= -VALOR_MAXIMO && velocidadeExacta <= VALOR_MAXIMO, "velocidade", velocidadeExacta);
+        validar(queimaRestante >= 0 && queimaRestante <= 1, "queima restante", queimaRestante);
+        validar(tempo >= 0 && tempo < Double.POSITIVE_INFINITY, "tempo", tempo);
+        long limiteFixo = (long) VALOR_MAXIMO << BITS_FRACCAO;
+        validar(altitudeFixa >= -limiteFixo && altitudeFixa <= limiteFixo, "altitude em vírgula fixa", altitudeFixa);
+        validar(velocidadeFixa >= -limiteFixo && velocidadeFixa <= limiteFixo, "velocidade em vírgula fixa", velocidadeFixa);
+        validar(queimaFixa >= 0 && queimaFixa <= UM_FIXO, "queima em vírgula fixa", queimaFixa);
+    }
+
+    /**
+     * Rejeita um campo inteiro inválido de um Instantaneo.
+     *
+     * @param valido Resultado da validação do campo.
+     * @param campo Nome do campo, para a mensagem.
+     * @param valor Valor lido, para a mensagem.
+     * @throws IllegalArgumentException Se <code>valido</code> for 'false'.
+     */
+    private static void validar(boolean valido, String campo, long valor) {
+        if (!valido) {
+            throw new IllegalArgumentException("Instantâneo inválido: " + campo + " " + valor + ".");
+        }
+    }
+
+    /**
+     * Rejeita um campo em vírgula flutuante inválido de um Instantaneo. Os
+     * valores NaN falham todas as comparações, pelo que também são
+     * rejeitados.
+     *
+     * @param valido Resultado da validação do campo.
+     * @param campo Nome do campo, para a mensagem.
+     * @param valor Valor lido, para a mensagem.
+     * @throws IllegalArgumentException Se <code>valido</code> for 'false'.
+     */
+    private static void validar(boolean valido, String campo, double valor) {
+        if (!valido) {
+            throw new IllegalArgumentException("Instantâneo inválido: " + campo + " " + valor + ".");
+        }
+    }
+
+    /**
+     * Escreve todo o estado da simulação, sem cabeçalho, num buffer. Uma
+     * Simulacao criada a partir destes bytes continua exactamente como esta,
+     * incluindo o checksum.
+     *
+     * @param destino Buffer com pelo menos
+     * <code>Instantaneo.TAMANHO_CORPO</code> bytes livres.
+     * @see Instantaneo
+     */
+    void escrever(ByteBuffer destino) {
+        destino.put((byte) ((aterrou ? 1 : 0) | (parametrosIniciais ? 2 : 0)));
+        destino.put((byte) difficulty);
+        destino.putInt(level);
+        destino.putInt(altitude);
+        destino.putInt(altitudeInicial);
+        destino.putInt(velocidadeActual);
+        destino.putInt(velocidadeMaxima);
+        destino.putInt(jatos);
+        destino.putInt(tick);
+        destino.putInt(astro.getAceleracao());
+        destino.putInt(nave.getAceleracaoPorJato());
+        destino.putInt(nave.getCombustivel());
+        destino.putInt(nave.getGastoPorClick());
+        destino.putDouble(percentNivel);
+        destino.putDouble(altitudeExacta);
+        destino.putDouble(altitudeAnterior);
+        destino.putDouble(velocidadeExacta);
+        destino.putDouble(queimaRestante);
+        destino.putDouble(tempo);
+        destino.putLong(altitudeFixa);
+        destino.putLong(velocidadeFixa);
+        destino.putLong(queimaFixa);
+        destino.putLong(checksum);
+    }
+
+    /**
+     * Método que faz um reset as variáveis necessárias para começar um novo
+     * Nível(level).
+     */
+    final void setNewLevelParametres() {
+        percentNivel = 0;
+        velocidadeActual = 0;
+        jatos = 0;
+        tick = 0;
+        tempo = 0;
+        aterrou = false;
+        parametrosIniciais = false;
+
+        velocidadeMaxima = 50 + (5 + difficulty) * level / difficulty;
+
+        altitude = altitudeInicial = 100 * (level + difficulty);
+
+        astro = new Astro(5 + (level * difficulty / 3), level);
+        nave = new Nave(8 + (level * difficulty / 2), 50 + level * 5, (1 + difficulty) / difficulty);
+
+        sincronizarExactos();
+        altitudeAnterior = altitudeExacta;
+        queimaRestante = 0;
+        queimaFixa = 0;
+        checksum = CHECKSUM_INICIAL;
+    }
+
+    /**
+     * Copia a altitude e velocidade inteiras para as variáveis em vírgula
+     * flutuante e em vírgula fixa.
+     */
+    private void sincronizarExactos() {
+        altitudeExacta = altitude;
+        velocidadeExacta = velocidadeActual;
+        altitudeFixa = (long) altitude << BITS_FRACCAO;
+        velocidadeFixa = (long) velocidadeActual << BITS_FRACCAO;
+    }
+
+    /**
+     * Avança a simulação um tick (um segundo de jogo). Primeiro aplica a
+     * gravidade à velocidade; se a nave já estiver no solo o nível termina,
+     * caso contrário gasta um jato em espera, se houver combustível, e
+     * actualiza a altitude.
+     *
+     * @return 'true' se a nave aterrou neste tick, 'false' caso contrário.
+     */
+    public boolean step() {
+        if (aterrou) {
+            return true;
+        }
+        tick++;
+        altitudeAnterior = altitude;
+        velocidadeActual = velocidadeActual - astro.getAceleracao();
+        if (altitude <= 0) {
+            altitude = 0;
+            percentNivel = (double) 1;
+            aterrou = true;
+            sincronizarExactos();
+            actualizarChecksum();
+            return true;
+        } else if (jatos > 0) {
+            if (nave.useCombustivel()) {
+                velocidadeActual = velocidadeActual + nave.getAceleracaoPorJato();
+                jatos--;
+            }
+        }
+        altitude = altitude + velocidadeActual;
+        percentNivel = (double) (altitudeInicial - altitude) / altitudeInicial;
+        if (percentNivel > 1) {
+            percentNivel = 1;
+        }
+        sincronizarExactos();
+        actualizarChecksum();
+        return false;
+    }
+
+    /**
+     * Avança a simulação <code>dt</code> segundos. A gravidade e o jato são
+     * escalados pelo intervalo, e um jato em espera só começa a queimar quando
+     * o anterior tiver acabado. A altitude e a velocidade inteiras passam a
+     * ser os valores arredondados das exactas.
+     *
+     * @param dt Intervalo de tempo, em segundos, a simular.
+     * @return 'true' se a nave aterrou neste tick, 'false' caso contrário.
+     * @see #step()
+     */
+    public boolean step(double dt) {
+        if (aterrou) {
+            return true;
+        }
+        tick++;
+        altitudeAnterior = altitudeExacta;
+        velocidadeExacta = velocidadeExacta - astro.getAceleracao() * dt;
+        velocidadeActual = (int) Math.round(velocidadeExacta);
+        if (altitudeExacta <= 0) {
+            altitudeExacta = 0;
+            altitude = 0;
+            percentNivel = (double) 1;
+            aterrou = true;
+            actualizarChecksum();
+            return true;
+        }
+        if (queimaRestante <= 0 && jatos > 0) {
+            if (nave.useCombustivel()) {
+                queimaRestante = 1;
+                jatos--;
+            }
+        }
+        if (queimaRestante > 0) {
+            double queima = Math.min(dt, queimaRestante);
+            velocidadeExacta = velocidadeExacta + nave.getAceleracaoPorJato() * queima;
+            queimaRestante = queimaRestante - queima;
+        }
+        altitudeExacta = altitudeExacta + velocidadeExacta * dt;
+        altitude = (int) Math.round(altitudeExacta);
+        velocidadeActual = (int) Math.round(velocidadeExacta);
+        percentNivel = percentDe(altitudeExacta);
+        actualizarChecksum();
+        return false;
+    }
+
+    /**
+     * Avança a simulação <code>1 / frequencia</code> segundos em vírgula
+     * fixa, pela mesma ordem que o <code>step(double)</code>: gravidade,
+     * aterragem, jato e altitude. As contas são só com inteiros, pelo que o
+     * resultado é exactamente o mesmo em qualquer máquina; a altitude e a
+     * velocidade inteiras e em vírgula flutuante passam a ser as conversões
+     * das de vírgula fixa.
+     *
+     * @param frequencia Ticks por segundo.
+     * @return 'true' se a nave aterrou neste tick, 'false' caso contrário.
+     * @see #step(double)
+     */
+    public boolean stepFixo(int frequencia) {
+        if (aterrou) {
+            return true;
+        }
+        tick++;
+        altitudeAnterior = altitudeExacta;
+        long dt = UM_FIXO / frequencia;
+        velocidadeFixa = velocidadeFixa - astro.getAceleracao() * dt;
+        if (altitudeFixa <= 0) {
+            altitudeFixa = 0;
+            sincronizarFixos();
+            percentNivel = (double) 1;
+            aterrou = true;
+            actualizarChecksum();
+            return true;
+        }
+        if (queimaFixa <= 0 && jatos > 0) {
+            if (nave.useCombustivel()) {
+                queimaFixa = UM_FIXO;
+                jatos--;
+            }
+        }
+        if (queimaFixa > 0) {
+            long queima = Math.min(dt, queimaFixa);
+            velocidadeFixa = velocidadeFixa + nave.getAceleracaoPorJato() * queima;
+            queimaFixa = queimaFixa - queima;
+        }
+        altitudeFixa = altitudeFixa + velocidadeFixa / frequencia;
+        sincronizarFixos();
+        percentNivel = percentDe(altitudeExacta);
+        actualizarChecksum();
+        return false;
+    }
+
+    /**
+     * Converte a altitude e a velocidade em vírgula fixa para as variáveis
+     * inteiras (arredondadas) e em vírgula flutuante (sem perda, porque os
+     * valores cabem na mantissa de um double).
+     */
+    private void sincronizarFixos() {
+        altitudeExacta = (double) altitudeFixa / UM_FIXO;
+        velocidadeExacta = (double) velocidadeFixa / UM_FIXO;
+        altitude = (int) ((altitudeFixa + UM_FIXO / 2) >> BITS_FRACCAO);
+        velocidadeActual = (int) ((velocidadeFixa + UM_FIXO / 2) >> BITS_FRACCAO);
+    }
+
+    /**
+     * Mistura o estado do tick acabado de executar no checksum: tick,
+     * altitude, velocidade, jatos em espera e combustível.
+     */
+    private void actualizarChecksum() {
+        long h = checksum;
+        h = (h ^ tick) * MISTURA;
+        h = (h ^ Double.doubleToLongBits(altitudeExacta)) * MISTURA;
+        h = (h ^ Double.doubleToLongBits(velocidadeExacta)) * MISTURA;
+        h = (h ^ jatos) * MISTURA;
+        h = (h ^ nave.getCombustivel()) * MISTURA;
+        checksum = h ^ (h >>> 32);
+    }
+
+    /**
+     * Avança a simulação <code>dt</code> segundos com a solução exacta do
+     * movimento. Dentro do intervalo a simulação é dividida nos instantes em
+     * que uma queima acaba (e começa a seguinte, se houver jatos em espera e
+     * combustível); em cada troço a aceleração é constante e, se a altitude
+     * chegar a zero, o nível termina nesse instante exacto, com a velocidade
+     * desse instante.
+     *
+     * @param dt Intervalo de tempo, em segundos, a simular. Pode ser
+     * <code>Double.POSITIVE_INFINITY</code> para avançar até à aterragem com
+     * os jatos que estão em espera.
+     * @return 'true' se a nave aterrou neste intervalo, 'false' caso
+     * contrário.
+     * @see #step(double)
+     */
+    public boolean avancar(double dt) {
+        if (aterrou) {
+            return true;
+        }
+        tick++;
+        altitudeAnterior = altitudeExacta;
+        double restante = dt;
+        while (restante > 0) {
+            if (queimaRestante <= 0 && jatos > 0) {
+                if (nave.useCombustivel()) {
+                    queimaRestante = 1;
+                    jatos--;
+                }
+            }
+            double aceleracao = -astro.getAceleracao();
+            double troco = restante;
+            if (queimaRestante > 0) {
+                aceleracao = aceleracao + nave.getAceleracaoPorJato();
+                troco = Math.min(restante, queimaRestante);
+            }
+            double contacto = tempoAteAoSolo(altitudeExacta, velocidadeExacta, aceleracao, troco);
+            if (contacto >= 0) {
+                velocidadeExacta = velocidadeExacta + aceleracao * contacto;
+                altitudeExacta = 0;
+                tempo = tempo + contacto;
+                altitude = 0;
+                velocidadeActual = (int) Math.round(velocidadeExacta);
+                percentNivel = (double) 1;
+                aterrou = true;
+                actualizarChecksum();
+                return true;
+            }
+            if (Double.isInfinite(troco)) {
+                // Só acontece sem gravidade: a nave nunca mais desce.
+                break;
+            }
+            altitudeExacta = altitudeExacta + velocidadeExacta * troco + aceleracao * troco * troco / 2;
+            velocidadeExacta = velocidadeExacta + aceleracao * troco;
+            if (queimaRestante > 0) {
+                queimaRestante = queimaRestante - troco;
+            }
+            tempo = tempo + troco;
+            restante = restante - troco;
+        }
+        altitude = (int) Math.round(altitudeExacta);
+        velocidadeActual = (int) Math.round(velocidadeExacta);
+        percentNivel = percentDe(altitudeExacta);
+        actualizarChecksum();
+        return false;
+    }
+
+    /**
+     * Calcula quando é que a altitude <code>h + v t + a t&sup2; / 2</code>
+     * chega a zero, usando a fórmula resolvente na forma numericamente
+     * estável (sem subtrair números quase iguais).
+     *
+     * @param h Altitude no início do troço.
+     * @param v Velocidade no início do troço.
+     * @param a Aceleração, constante, no troço.
+     * @param duracao Duração do troço, em segundos.
+     * @return Segundos desde o início do troço até tocar no solo, ou -1 se
+     * não tocar no solo durante o troço.
+     */
+    static double tempoAteAoSolo(double h, double v, double a, double duracao) {
+        if (h <= 0) {
+            return 0;
+        }
+        double t;
+        if (a == 0) {
+            t = v < 0 ? -h / v : -1;
+        } else {
+            double discriminante = v * v - 2 * a * h;
+            if (discriminante < 0) {
+                return -1;
+            }
+            double q = -(v + Math.copySign(Math.sqrt(discriminante), v)) / 2;
+            double t1 = q / (a / 2);
+            double t2 = q != 0 ? h / q : -1;
+            t = -1;
+            if (t1 >= 0) {
+                t = t1;
+            }
+            if (t2 >= 0 && (t < 0 || t2 < t)) {
+                t = t2;
+            }
+        }
+        return t <= duracao ? t : -1;
+    }
+
+    /**
+     * Calcula a percentagem do nível correspondente a uma altitude.
+     *
+     * @param alt Altitude em metros.
+     * @return Percentagem do nível, no máximo 1.
+     */
+    private double percentDe(double alt) {
+        double percent = (altitudeInicial - alt) / altitudeInicial;
+        if (percent > 1) {
+            percent = 1;
+        }
+        return percent;
+    }
+
+    /**
+     * Método que adiciona um jato quanto este é chamado.
+     */
+    public void hitJato() {
+        jatos++;
+    }
+
+    /**
+     * @return 'true' se a nave já aterrou e a velocidade de aterragem não
+     * ultrapassou a velocidade máxima, 'false' caso contrário.
+     */
+    public boolean isNivelGanho() {
+        return aterrou && -velocidadeExacta <= velocidadeMaxima;
+    }
+
+    /**
+     * @return 'true' se a nave já tocou no solo neste nível.
+     */
+    public boolean isAterrou() {
+        return aterrou;
+    }
+
+    /**
+     * @return Valor da altitude vigente.
+     */
+    public int getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * @return Valor da altitude inicial do nível.
+     */
+    public int getAltitudeInicial() {
+        return altitudeInicial;
+    }
+
+    /**
+     * @return Valor da velocidade vigente.
+     */
+    public int getVelocidadeActual() {
+        return velocidadeActual;
+    }
+
+    /**
+     * @return Valor da velocidade máxima para se conseguir passar de nível.
+     */
+    public int getVelocidadeMaxima() {
+        return velocidadeMaxima;
+    }
+
+    /**
+     * @return Quantos jatos ainda se encontram em espera.
+     */
+    public int getJatos() {
+        return jatos;
+    }
+
+    /**
+     * @return Combustível que a nave ainda tem disponível.
+     */
+    public int getCombustivel() {
+        return nave.getCombustivel();
+    }
+
+    /**
+     * @return Percentagem em que a nave se encontra de finalizar o nível.
+     */
+    public double getPercentNivel() {
+        return percentNivel;
+    }
+
+    /**
+     * Percentagem do nível interpolada entre o estado anterior e o actual da
+     * física, para o desenho poder ser mais fluído que os ticks.
+     *
+     * @param alfa Fracção, entre 0 e 1, do tick seguinte já decorrida.
+     * @return Percentagem do nível interpolada.
+     */
+    public double getPercentNivelInterpolado(double alfa) {
+        if (aterrou) {
+            return percentNivel;
+        }
+        return percentDe(altitudeAnterior + (altitudeExacta - altitudeAnterior) * alfa);
+    }
+
+    /**
+     * @return 'true' se o nível actual usa os parâmetros de um jogo novo em
+     * vez dos do <code>setNewLevelParametres()</code>.
+     */
+    public boolean isParametrosIniciais() {
+        return parametrosIniciais;
+    }
+
+    /**
+     * @return Segundos de jogo simulados pelo <code>avancar(double)</code>
+     * desde o início do nível; depois de aterrar, o instante exacto da
+     * aterragem.
+     */
+    public double getTempo() {
+        return tempo;
+    }
+
+    /**
+     * @return Checksum do estado da simulação depois do último tick. Duas
+     * simulações do mesmo nível com os mesmos jatos nos mesmos ticks têm
+     * sempre o mesmo checksum.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return Número de ticks executados desde o início do nível.
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * @return Nível de dificuldade do jogo.
+     */
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * @return O nível(level) em que se encontra o jogador.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Muda o nível(level) actual. Os parâmetros só são actualizados quando for
+     * chamado o <code>setNewLevelParametres()</code>.
+     *
+     * @param level Novo nível(level).
+     */
+    void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * @return A instância do Astro do nível actual.
+     */
+    public Astro getAstro() {
+        return astro;
+    }
+
+    /**
+     * @return A instância da Nave do nível actual.
+     */
+    public Nave getNave() {
+        return nave;
+    }
+}
@@ -0,0 +1,586 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Procura, para cada dificuldade e nível(level), a sequência de jatos que faz
+ * a nave aterrar abaixo da velocidade máxima com o máximo de combustível. Usa
+ * as mesmas regras e parâmetros da Simulacao (tick clássico de um segundo), em
+ * que em cada tick se decide se há ou não um jato em espera.
+ * <p>
+ * Guardar o máximo de combustível é o mesmo que gastar o mínimo de jatos, e
+ * com mais jatos disponíveis nunca se fica pior. Por isso cada estado
+ * (altitude, velocidade) guarda apenas o mínimo de jatos necessário, ou até
+ * quantos jatos disponíveis já se sabe que não há solução: um estado com o
+ * mesmo (altitude, velocidade) e menos combustível é dominado e não volta a
+ * ser procurado. Também não se procuram estados que nem com todos os jatos
+ * disponíveis conseguem travar a tempo. A altitude não é limitada (subir acima
+ * da altitude inicial pode ajudar), mas a gravidade e o número limitado de
+ * jatos garantem que a procura termina. Os níveis são divididos por tarefas
+ * fork/join e os resultados ficam guardados para os próximos pedidos.
+ *
+ * @author C.M.P.Soares
+ * @see Simulacao#step()
+ */
+public class SolucionadorAterragem {
+
+    /**
+     * Valor usado para dizer que não é possível aterrar.
+     */
+    private static final int IMPOSSIVEL = Integer.MAX_VALUE;
+    /**
+     * Número de níveis a partir do qual uma tarefa é dividida em duas.
+     */
+    private static final int NIVEIS_POR_TAREFA = 4;
+    /**
+     * Resultados já calculados, indexados pela dificuldade e nível.
+     */
+    private final Map<Long, Resultado> resultados = new ConcurrentHashMap<>();
+    /**
+     * Conjunto de threads onde correm as tarefas.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Construtor que usa o pool partilhado, com uma thread por processador.
+     *
+     * @see PoolPartilhado
+     */
+    public SolucionadorAterragem() {
+        this(PoolPartilhado.get());
+    }
+
+    /**
+     * Construtor que usa um ForkJoinPool próprio.
+     *
+     * @param pool Conjunto de threads onde correm as tarefas.
+     */
+    public SolucionadorAterragem(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Resultado da procura para um nível.
+     */
+    public static final class Resultado {
+
+        /**
+         * Dificuldade do nível.
+         */
+        private final int difficulty;
+        /**
+         * Nível(level).
+         */
+        private final int level;
+        /**
+         * Sequência óptima: em cada tick, 'true' se deve haver um jato em
+         * espera. É null se o nível não tiver solução.
+         */
+        private final boolean[] jatos;
+        /**
+         * Combustível que sobra na aterragem óptima.
+         */
+        private final int combustivelFinal;
+        /**
+         * Velocidade com que a nave aterra na sequência óptima.
+         */
+        private final int velocidadeAterragem;
+
+        /**
+         * Construtor obrigatório.
+         *
+         * @param difficulty Dificuldade do nível.
+         * @param level Nível(level).
+         * @param jatos Sequência óptima, ou null se não houver solução.
+         * @param combustivelFinal Combustível que sobra.
+         * @param velocidadeAterragem Velocidade de aterragem.
+         */
+        Resultado(int difficulty, int level, boolean[] jatos, int combustivelFinal, int velocidadeAterragem) {
+            this.difficulty = difficulty;
+            this.level = level;
+            this.jatos = jatos;
+            this.combustivelFinal = combustivelFinal;
+            this.velocidadeAterragem = velocidadeAterragem;
+        }
+
+        /**
+         * @return Dificuldade do nível.
+         */
+        public int getDifficulty() {
+            return difficulty;
+        }
+
+        /**
+         * @return Nível(level).
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * @return 'true' se há alguma sequência de jatos que passa o nível.
+         */
+        public boolean isGanhavel() {
+            return jatos != null;
+        }
+
+        /**
+         * @return Cópia da sequência óptima (um valor por tick), ou null se
+         * não houver solução.
+         */
+        public boolean[] getJatos() {
+            return jatos == null ? null : jatos.clone();
+        }
+
+        /**
+         * @return Combustível que sobra na aterragem óptima.
+         */
+        public int getCombustivelFinal() {
+            return combustivelFinal;
+        }
+
+        /**
+         * @return Velocidade com que a nave aterra na sequência óptima.
+         */
+        public int getVelocidadeAterragem() {
+            return velocidadeAterragem;
+        }
+
+        /**
+         * @return Resumo do resultado numa linha.
+         */
+        @Override
+        public String toString() {
+            if (!isGanhavel()) {
+                return "dificuldade " + difficulty + " nível " + level + ": impossível";
+            }
+            int numeroJatos = 0;
+            for (boolean jato : jatos) {
+                if (jato) {
+                    numeroJatos++;
+                }
+            }
+            return "dificuldade " + difficulty + " nível " + level + ": " + numeroJatos + " jatos em " + jatos.length
+                    + " ticks, aterra a " + velocidadeAterragem + " m/s com " + combustivelFinal + " litros";
+        }
+    }
+
+    /**
+     * Resolve um nível, ou devolve o resultado já calculado.
+     *
+     * @param difficulty Dificuldade do nível.
+     * @param level Nível(level).
+     * @return A sequência óptima para o nível.
+     */
+    public Resultado resolver(int difficulty, int level) {
+        Long chave = ((long) difficulty << 32) | level;
+        Resultado resultado = resultados.get(chave);
+        if (resultado == null) {
+            resultado = new Procura(new Simulacao(difficulty, level)).resolver();
+            resultados.put(chave, resultado);
+        }
+        return resultado;
+    }
+
+    /**
+     * Resolve em paralelo os níveis 1 a <code>niveis</code> das quatro
+     * dificuldades.
+     *
+     * @param niveis Último nível(level) a resolver.
+     * @return Os resultados, ordenados por dificuldade e nível.
+     */
+    public List<Resultado> resolverTodos(int niveis) {
+        int[] difficulties = new int[Nave.NAVE_VERY_HARD * niveis];
+        int[] levels = new int[difficulties.length];
+        int i = 0;
+        for (int difficulty = Nave.NAVE_EASY; difficulty <= Nave.NAVE_VERY_HARD; difficulty++) {
+            for (int level = 1; level <= niveis; level++) {
+                difficulties[i] = difficulty;
+                levels[i] = level;
+                i++;
+            }
+        }
+        return pool.invoke(new TarefaNiveis(difficulties, levels, 0, difficulties.length));
+    }
+
+    /**
+     * Tarefa fork/join que resolve um intervalo da lista de níveis,
+     * dividindo-o ao meio enquanto for grande.
+     */
+    private final class TarefaNiveis extends RecursiveTask<List<Resultado>> {
+
+        /**
+         * Versão da classe para a serialização.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Dificuldades dos níveis a resolver.
+         */
+        private final int[] difficulties;
+        /**
+         * Níveis(levels) a resolver.
+         */
+        private final int[] levels;
+        /**
+         * Primeiro índice do intervalo.
+         */
+        private final int inicio;
+        /**
+         * Índice a seguir ao último do intervalo.
+         */
+        private final int fim;
+
+        /**
+         * Construtor obrigatório.
+         *
+         * @param difficulties Dificuldades dos níveis a resolver.
+         * @param levels Níveis(levels) a resolver.
+         * @param inicio Primeiro índice do intervalo.
+         * @param fim Índice a seguir ao último do intervalo.
+         */
+        TarefaNiveis(int[] difficulties, int[] levels, int inicio, int fim) {
+            this.difficulties = difficulties;
+            this.levels = levels;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        /**
+         * @return Os resultados do intervalo, pela ordem da lista.
+         */
+        @Override
+        protected List<Resultado> compute() {
+            if (fim - inicio <= NIVEIS_POR_TAREFA) {
+                List<Resultado> lista = new ArrayList<>(fim - inicio);
+                for (int i = inicio; i < fim; i++) {
+                    lista.add(resolver(difficulties[i], levels[i]));
+                }
+                return lista;
+            }
+            int meio = (inicio + fim) >>> 1;
+            TarefaNiveis esquerda = new TarefaNiveis(difficulties, levels, inicio, meio);
+            TarefaNiveis direita = new TarefaNiveis(difficulties, levels, meio, fim);
+            esquerda.fork();
+            List<Resultado> lista = direita.compute();
+            List<Resultado> resultado = esquerda.join();
+            resultado.addAll(lista);
+            return resultado;
+        }
+    }
+
+    /**
+     * Procura em profundidade, com memória, de um único nível.
+     */
+    private static final class Procura {
+
+        /**
+         * Gravidade do Astro.
+         */
+        private final int gravidade;
+        /**
+         * Aceleração por jato da Nave.
+         */
+        private final int aceleracao;
+        /**
+         * Velocidade máxima de aterragem.
+         */
+        private final int velocidadeMaxima;
+        /**
+         * Combustível inicial da Nave.
+         */
+        private final int combustivel;
+        /**
+         * Combustível gasto por jato.
+         */
+        private final int gasto;
+        /**
+         * Memória dos estados (altitude, velocidade) já procurados. Um valor
+         * positivo ou zero é o mínimo de jatos para aterrar; um valor negativo
+         * <code>-(j + 1)</code> diz que com <code>j</code> jatos não é
+         * possível.
+         */
+        private final Memoria memoria = new Memoria();
+        /**
+         * Simulação do nível, usada para confirmar a sequência encontrada.
+         */
+        private final Simulacao simulacao;
+
+        /**
+         * Construtor que lê os parâmetros do nível da simulação.
+         *
+         * @param simulacao Simulação no início do nível.
+         */
+        Procura(Simulacao simulacao) {
+            gravidade = simulacao.getAstro().getAceleracao();
+            aceleracao = simulacao.getNave().getAceleracaoPorJato();
+            velocidadeMaxima = simulacao.getVelocidadeMaxima();
+            combustivel = simulacao.getCombustivel();
+            gasto = simulacao.getNave().getGastoPorClick();
+            this.simulacao = simulacao;
+        }
+
+        /**
+         * @return A sequência óptima do nível, confirmada na Simulacao.
+         */
+        Resultado resolver() {
+            int disponiveis = jatosDisponiveis(combustivel);
+            int minimo = minimoJatos(simulacao.getAltitude(), simulacao.getVelocidadeActual(), disponiveis);
+            if (minimo == IMPOSSIVEL) {
+                return new Resultado(simulacao.getDifficulty(), simulacao.getLevel(), null, 0, 0);
+            }
+
+            List<Boolean> sequencia = new ArrayList<>();
+            int altitude = simulacao.getAltitude();
+            int velocidade = simulacao.getVelocidadeActual();
+            int restantes = minimo;
+            while (altitude > 0) {
+                int v = velocidade - gravidade;
+                boolean jato = restantes > 0 && minimoJatos(altitude + v, v, restantes) != restantes;
+                if (jato) {
+                    v = v + aceleracao;
+                    restantes--;
+                }
+                sequencia.add(jato);
+                altitude = altitude + v;
+                velocidade = v;
+            }
+
+            boolean[] jatos = new boolean[sequencia.size()];
+            int tick = 0;
+            do {
+                if (tick < jatos.length) {
+                    jatos[tick] = sequencia.get(tick);
+                    if (jatos[tick]) {
+                        simulacao.hitJato();
+                    }
+                }
+                tick++;
+            } while (!simulacao.step());
+            if (!simulacao.isNivelGanho()) {
+                throw new IllegalStateException("A sequência encontrada não passa o nível " + simulacao.getLevel());
+            }
+            return new Resultado(simulacao.getDifficulty(), simulacao.getLevel(), jatos, simulacao.getCombustivel(), simulacao.getVelocidadeActual());
+        }
+
+        /**
+         * @param litros Combustível disponível.
+         * @return Quantos jatos se conseguem dar com esse combustível (a Nave
+         * deixa usar o jato enquanto o combustível for positivo).
+         */
+        private int jatosDisponiveis(int litros) {
+            if (litros <= 0) {
+                return 0;
+            }
+            return (litros + gasto - 1) / gasto;
+        }
+
+        /**
+         * Limite inferior do número de jatos para aterrar a partir de um
+         * estado. Os jatos só atrasam a aterragem, por isso a nave toca no
+         * solo no mínimo ao fim dos ticks da queda livre, e cada jato só tira
+         * <code>aceleracao</code> à velocidade final.
+         *
+         * @param altitude Altitude no início do tick.
+         * @param velocidade Velocidade no início do tick.
+         * @return O mínimo de jatos que qualquer solução tem de usar.
+         */
+        private int limiteInferior(int altitude, int velocidade) {
+            int v = velocidade - gravidade;
+            while (altitude > 0) {
+                altitude = altitude + v;
+                v = v - gravidade;
+            }
+            int excesso = -v - velocidadeMaxima;
+            if (excesso <= 0) {
+                return 0;
+            }
+            return (excesso + aceleracao - 1) / aceleracao;
+        }
+
+        /**
+         * Mínimo de jatos para aterrar a partir de um estado no início de um
+         * tick, com as regras da Simulacao. Só se procuram soluções com no
+         * máximo <code>disponiveis</code> jatos; o ramo com jato é procurado
+         * só com os jatos que ainda podem melhorar o ramo sem jato.
+         *
+         * @param altitude Altitude no início do tick.
+         * @param velocidade Velocidade no início do tick.
+         * @param disponiveis Jatos ainda disponíveis.
+         * @return O mínimo de jatos, ou IMPOSSIVEL se não houver solução com
+         * os jatos disponíveis.
+         */
+        private int minimoJatos(int altitude, int velocidade, int disponiveis) {
+            int v = velocidade - gravidade;
+            if (altitude <= 0) {
+                return -v <= velocidadeMaxima ? 0 : IMPOSSIVEL;
+            }
+
+            if (limiteInferior(altitude, velocidade) > disponiveis) {
+                return IMPOSSIVEL;
+            }
+
+            long chave = ((long) altitude << 32) | (velocidade & 0xffffffffL);
+            int valor = memoria.get(chave);
+            if (valor != Memoria.AUSENTE) {
+                if (valor >= 0) {
+                    return valor <= disponiveis ? valor : IMPOSSIVEL;
+                }
+                if (disponiveis <= -valor - 1) {
+                    return IMPOSSIVEL;
+                }
+            }
+
+            int minimo = minimoJatos(altitude + v, v, disponiveis);
+            int orcamento = Math.min(disponiveis, minimo == IMPOSSIVEL ? disponiveis : minimo - 1);
+            if (orcamento > 0) {
+                int comJato = minimoJatos(altitude + v + aceleracao, v + aceleracao, orcamento - 1);
+                if (comJato != IMPOSSIVEL) {
+                    minimo = comJato + 1;
+                }
+            }
+            memoria.put(chave, minimo == IMPOSSIVEL ? -(disponiveis + 1) : minimo);
+            return minimo;
+        }
+    }
+
+    /**
+     * Mapa de <code>long</code> para <code>int</code> com endereçamento
+     * aberto, para a memória da Procura não criar um Long e um Integer por
+     * cada estado visitado. A chave 0 marca as posições livres: as chaves da
+     * Procura têm sempre altitude positiva, por isso nunca são 0.
+     */
+    private static final class Memoria {
+
+        /**
+         * Valor devolvido pelo <code>get</code> para uma chave que não está
+         * no mapa. Nunca é guardado pela Procura.
+         */
+        static final int AUSENTE = Integer.MIN_VALUE;
+        /**
+         * Capacidade inicial, uma potência de dois.
+         */
+        private static final int CAPACIDADE_INICIAL = 1 << 12;
+        /**
+         * Chaves, com 0 nas posições livres.
+         */
+        private long[] chaves = new long[CAPACIDADE_INICIAL];
+        /**
+         * Valores, na mesma posição da chave.
+         */
+        private int[] valores = new int[CAPACIDADE_INICIAL];
+        /**
+         * Número de chaves guardadas.
+         */
+        private int tamanho;
+
+        /**
+         * @param chave Chave, diferente de 0.
+         * @return O valor guardado, ou AUSENTE se a chave não estiver no mapa.
+         */
+        int get(long chave) {
+            int mascara = chaves.length - 1;
+            for (int i = posicao(chave, mascara); chaves[i] != 0; i = (i + 1) & mascara) {
+                if (chaves[i] == chave) {
+                    return valores[i];
+                }
+            }
+            return AUSENTE;
+        }
+
+        /**
+         * Guarda um valor, substituindo o anterior se a chave já existir.
+         *
+         * @param chave Chave, diferente de 0.
+         * @param valor Valor a guardar.
+         */
+        void put(long chave, int valor) {
+            if (2 * (tamanho + 1) > chaves.length) {
+                crescer();
+            }
+            if (inserir(chaves, valores, chave, valor)) {
+                tamanho++;
+            }
+        }
+
+        /**
+         * Duplica a capacidade, mantendo a ocupação abaixo de metade.
+         */
+        private void crescer() {
+            long[] novasChaves = new long[chaves.length * 2];
+            int[] novosValores = new int[valores.length * 2];
+            for (int i = 0; i < chaves.length; i++) {
+                if (chaves[i] != 0) {
+                    inserir(novasChaves, novosValores, chaves[i], valores[i]);
+                }
+            }
+            chaves = novasChaves;
+            valores = novosValores;
+        }
+
+        /**
+         * @param chaves Chaves onde inserir.
+         * @param valores Valores onde inserir.
+         * @param chave Chave, diferente de 0.
+         * @param valor Valor a guardar.
+         * @return 'true' se a chave ainda não existia.
+         */
+        private static boolean inserir(long[] chaves, int[] valores, long chave, int valor) {
+            int mascara = chaves.length - 1;
+            int i = posicao(chave, mascara);
+            while (chaves[i] != 0 && chaves[i] != chave) {
+                i = (i + 1) & mascara;
+            }
+            boolean nova = chaves[i] == 0;
+            chaves[i] = chave;
+            valores[i] = valor;
+            return nova;
+        }
+
+        /**
+         * @param chave Chave a procurar.
+         * @param mascara Capacidade menos um.
+         * @return Primeira posição onde procurar a chave, espalhando os bits
+         * da altitude e da velocidade por toda a tabela.
+         */
+        private static int posicao(long chave, int mascara) {
+            return (int) ((chave * 0x9E3779B97F4A7C15L) >>> 32) & mascara;
+        }
+    }
+
+    /**
+     * Resolve os níveis 1 a <code>niveis</code> de todas as dificuldades e
+     * escreve um relatório com a sequência óptima de cada um, os níveis
+     * impossíveis e o tempo que demorou.
+     *
+     * @param niveis Último nível(level) a resolver.
+     * @param saida Onde escrever o relatório.
+     */
+    public void relatorio(int niveis, PrintStream saida) {
+        long inicio = System.nanoTime();
+        List<Resultado> lista = resolverTodos(niveis);
+        long duracao = System.nanoTime() - inicio;
+
+        List<Resultado> impossiveis = new ArrayList<>();
+        for (Resultado resultado : lista) {
+            saida.println(resultado);
+            if (!resultado.isGanhavel()) {
+                impossiveis.add(resultado);
+            }
+        }
+        saida.println();
+        saida.println(lista.size() + " níveis resolvidos em " + (duracao / 1000000) + " ms com " + pool.getParallelism() + " threads.");
+        saida.println(impossiveis.size() + " níveis impossíveis:");
+        for (Resultado resultado : impossiveis) {
+            saida.println("  dificuldade " + resultado.getDifficulty() + " nível " + resultado.getLevel());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.nio.ByteBuffer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Testes do Instantaneo.
+ *
+ * @author C.M.P.Soares
+ */
+public class InstantaneoTest {
+
+    /**
+     * Posição, no instantâneo, do nível(level).
+     */
+    private static final int NIVEL = 5;
+    /**
+     * Posição, no instantâneo, da altitude inicial.
+     */
+    private static final int ALTITUDE_INICIAL = 13;
+    /**
+     * Posição, no instantâneo, do combustível.
+     */
+    private static final int COMBUSTIVEL = 41;
+
+    /**
+     * Suspende um nível a meio em cada um dos modos da física e confirma que
+     * a simulação retomada continua exactamente como a original, com os
+     * mesmos jatos, até ao mesmo checksum final.
+     */
+    @Test
+    public void retomadoContinuaIgual() {
+        for (int modo = 0; modo < 4; modo++) {
+            Simulacao original = new Simulacao(Nave.NAVE_MEDIUM, 4);
+            for (int tick = 0; tick < 10; tick++) {
+                jogar(original, modo);
+            }
+            assertFalse("modo " + modo, original.isAterrou());
+
+            ByteBuffer bytes = ByteBuffer.allocate(Instantaneo.TAMANHO);
+            Instantaneo.escrever(original, bytes);
+            assertEquals(Instantaneo.TAMANHO, bytes.position());
+            bytes.flip();
+            Simulacao retomada = Instantaneo.ler(bytes);
+            assertEquals("modo " + modo, original.getChecksum(), retomada.getChecksum());
+
+            boolean fim = false;
+            while (!fim) {
+                fim = jogar(original, modo);
+                assertEquals("modo " + modo, fim, jogar(retomada, modo));
+                assertEquals("modo " + modo + ", tick " + original.getTick(), original.getChecksum(), retomada.getChecksum());
+            }
+            assertEquals("modo " + modo, original.isNivelGanho(), retomada.isNivelGanho());
+            assertEquals("modo " + modo, original.getCombustivel(), retomada.getCombustivel());
+        }
+    }
+
+    /**
+     * Um instantâneo com campos fora dos valores possíveis tem de ser
+     * recusado com IllegalArgumentException.
+     */
+    @Test
+    public void recusaCamposInvalidos() {
+        ByteBuffer valido = ByteBuffer.allocate(Instantaneo.TAMANHO);
+        Instantaneo.escrever(new Simulacao(Nave.NAVE_HARD, 3), valido);
+
+        recusar(valido, NIVEL, Integer.MAX_VALUE);
+        recusar(valido, NIVEL, 0);
+        recusar(valido, ALTITUDE_INICIAL, 0);
+        recusar(valido, ALTITUDE_INICIAL, -100);
+        recusar(valido, COMBUSTIVEL, -1000);
+        recusar(valido, COMBUSTIVEL, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Avança um tick com o modo da física indicado, carregando num jato a
+     * cada 7 ticks.
+     *
+     * @param simulacao Simulação a avançar.
+     * @param modo 0 para <code>step()</code>, 1 para <code>step(double)</code>,
+     * 2 para <code>stepFixo(int)</code> e 3 para <code>avancar(double)</code>.
+     * @return 'true' se a nave aterrou.
+     */
+    private static boolean jogar(Simulacao simulacao, int modo) {
+        if (simulacao.getTick() % 7 == 0) {
+            simulacao.hitJato();
+        }
+        switch (modo) {
+            case 0:
+                return simulacao.step();
+            case 1:
+                return simulacao.step(0.05);
+            case 2:
+                return simulacao.stepFixo(20);
+            default:
+                return simulacao.avancar(0.3);
+        }
+    }
+
+    /**
+     * Confirma que mudar um campo inteiro de um instantâneo válido faz com
+     * que seja recusado.
+     *
+     * @param valido Instantâneo válido, que não é alterado.
+     * @param posicao Posição do campo.
+     * @param valor Valor inválido a escrever no campo.
+     */
+    private static void recusar(ByteBuffer valido, int posicao, int valor) {
+        ByteBuffer bytes = ByteBuffer.allocate(Instantaneo.TAMANHO);
+        bytes.put(valido.array()).putInt(posicao, valor).flip();
+        try {
+            Instantaneo.ler(bytes);
+            fail("Aceitou o valor " + valor + " na posição " + posicao + ".");
+        } catch (IllegalArgumentException ex) {
+            // Esperado.
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Testa que o MotorLote dá, bit a bit, os mesmos ticks que a Simulacao.
+ *
+ * @author C.M.P.Soares
+ */
+public class MotorLoteTest {
+
+    /**
+     * Naves suficientes para o lote ser dividido por tarefas fork/join.
+     */
+    private static final int TAMANHO = 20000;
+
+    /**
+     * Põe cada nave num nível e dificuldade diferentes, carrega jatos ao
+     * acaso (os mesmos no motor e na Simulacao correspondente) e compara
+     * todo o estado de todas as naves depois de cada tick, até todas
+     * aterrarem. Uma em cada cinco naves carrega em todos os ticks, para
+     * haver naves a ficar sem combustível.
+     */
+    @Test
+    public void igualASimulacaoEmCadaTick() {
+        MotorLote motor = new MotorLote(TAMANHO);
+        Simulacao[] simulacoes = new Simulacao[TAMANHO];
+        Random aleatorio = new Random(2016);
+        for (int i = 0; i < TAMANHO; i++) {
+            simulacoes[i] = new Simulacao(1 + i % 4, 1 + aleatorio.nextInt(40));
+            motor.iniciar(i, simulacoes[i]);
+        }
+
+        int aterradas = 0;
+        while (aterradas < TAMANHO) {
+            aterradas = 0;
+            for (int i = 0; i < TAMANHO; i++) {
+                if (aleatorio.nextInt(1 + i % 5) == 0) {
+                    motor.hitJato(i);
+                    simulacoes[i].hitJato();
+                }
+                simulacoes[i].step();
+            }
+            motor.step();
+            for (int i = 0; i < TAMANHO; i++) {
+                Simulacao s = simulacoes[i];
+                assertEquals("altitude da nave " + i, s.getAltitude(), motor.getAltitude(i));
+                assertEquals("velocidade da nave " + i, s.getVelocidadeActual(), motor.getVelocidade(i));
+                assertEquals("combustível da nave " + i, s.getCombustivel(), motor.getCombustivel(i));
+                assertEquals("jatos da nave " + i, s.getJatos(), motor.getJatos(i));
+                assertEquals("tick da nave " + i, s.getTick(), motor.getTick(i));
+                assertEquals("aterragem da nave " + i, s.isAterrou(), motor.isAterrou(i));
+                assertEquals("resultado da nave " + i, s.isNivelGanho(), motor.isNivelGanho(i));
+                if (s.isAterrou()) {
+                    aterradas++;
+                }
+            }
+        }
+        assertEquals(TAMANHO, motor.contarAterradas());
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Testa que um Replay escrito e lido de volta reproduz o mesmo jogo que foi
+ * gravado.
+ *
+ * @author C.M.P.Soares
+ */
+public class ReplayTest {
+
+    /**
+     * Grava dois níveis jogados até ao fim e um terceiro deixado a meio, como
+     * o Nivel faz, passa a gravação por bytes e confirma que a reprodução dá
+     * os mesmos resultados (com os checksums a bater certo) e que o nível a
+     * meio aparece como por terminar.
+     *
+     * @throws IOException Se a gravação não puder ser lida de volta.
+     */
+    @Test
+    public void reproduzODepoisDeEscreverELer() throws IOException {
+        Replay replay = new Replay(42, 60, true);
+        int[] esperados = {
+            jogar(replay, new Simulacao(Nave.NAVE_EASY), 7, true),
+            jogar(replay, new Simulacao(Nave.NAVE_HARD, 3), 4, true),
+            jogar(replay, new Simulacao(Nave.NAVE_MEDIUM, 2), 5, false)
+        };
+        assertEquals(Replay.NIVEL_POR_TERMINAR, esperados[2]);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        replay.escrever(bytes);
+        Replay lido = Replay.ler(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(42, lido.getSemente());
+        assertEquals(60, lido.getFrequencia());
+        assertTrue(lido.isFixa());
+        assertEquals(replay.getNumeroNiveis(), lido.getNumeroNiveis());
+        assertEquals(replay.getNumeroJatos(), lido.getNumeroJatos());
+        assertArrayEquals(esperados, lido.reproduzir(0));
+    }
+
+    /**
+     * Joga um nível em vírgula fixa a 60 Hz com um jato a cada
+     * <code>intervalo</code> ticks, gravando-o no replay.
+     *
+     * @param replay Onde gravar.
+     * @param simulacao Simulação no início do nível.
+     * @param intervalo Ticks entre jatos.
+     * @param ateAoFim 'false' para parar a meio, sem gravar o fim do nível.
+     * @return O resultado que a reprodução deve dar para este nível.
+     */
+    private static int jogar(Replay replay, Simulacao simulacao, int intervalo, boolean ateAoFim) {
+        replay.iniciarNivel(simulacao.getDifficulty(), simulacao.getLevel(), simulacao.isParametrosIniciais());
+        boolean aterrou = false;
+        while (!aterrou && (ateAoFim || simulacao.getTick() < 30)) {
+            if (simulacao.getTick() % intervalo == 0) {
+                replay.registarJato(simulacao.getTick());
+                simulacao.hitJato();
+            }
+            aterrou = simulacao.stepFixo(60);
+        }
+        if (!ateAoFim) {
+            return Replay.NIVEL_POR_TERMINAR;
+        }
+        replay.terminarNivel(simulacao.getChecksum());
+        return simulacao.isNivelGanho() ? Replay.NIVEL_GANHO : Replay.NIVEL_PERDIDO;
+    }
+}
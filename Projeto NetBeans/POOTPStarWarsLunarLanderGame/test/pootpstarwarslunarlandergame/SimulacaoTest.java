@@ -0,0 +1,93 @@
+/**
+ * Este package fornece todas as classes para o funcionamento do jogo.
+ */
+package pootpstarwarslunarlandergame;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Testes da Simulacao.
+ *
+ * @author C.M.P.Soares
+ */
+public class SimulacaoTest {
+
+    /**
+     * O <code>avancar(double)</code> tem de dar o mesmo veredicto e o mesmo
+     * instante de aterragem com qualquer tamanho de passo, e o mesmo
+     * veredicto que o <code>step(double)</code> com ticks muito pequenos.
+     */
+    @Test
+    public void avancarNaoDependeDoPasso() {
+        Random aleatorio = new Random(18);
+        double[] passos = {Double.POSITIVE_INFINITY, 0.37, 1e-3};
+        for (int k = 0; k < 300; k++) {
+            int difficulty = 1 + aleatorio.nextInt(4);
+            int level = 1 + aleatorio.nextInt(10);
+            int jatos = aleatorio.nextInt(40);
+            String caso = "dificuldade " + difficulty + ", nível " + level + ", " + jatos + " jatos";
+
+            Simulacao porTicks = new Simulacao(difficulty, level);
+            for (int j = 0; j < jatos; j++) {
+                porTicks.hitJato();
+            }
+            while (!porTicks.step(1e-4)) {
+            }
+
+            Simulacao referencia = null;
+            for (double passo : passos) {
+                Simulacao simulacao = new Simulacao(difficulty, level);
+                for (int j = 0; j < jatos; j++) {
+                    simulacao.hitJato();
+                }
+                while (!simulacao.avancar(passo)) {
+                }
+                assertEquals(caso + ", passo " + passo, porTicks.isNivelGanho(), simulacao.isNivelGanho());
+                if (referencia == null) {
+                    referencia = simulacao;
+                } else {
+                    assertEquals(caso + ", passo " + passo, referencia.getTempo(), simulacao.getTempo(), 1e-9);
+                    assertEquals(caso + ", passo " + passo, referencia.getCombustivel(), simulacao.getCombustivel());
+                }
+            }
+        }
+    }
+
+    /**
+     * O checksum do <code>stepFixo(int)</code> de um jogo conhecido tem de
+     * ser sempre o mesmo, em qualquer máquina e JVM: o valor esperado foi
+     * obtido uma vez e fica fixo. Se mudar, os replays e o jogo em lockstep
+     * gravados antes deixam de bater certo. Também confirma que um jato a
+     * mais muda o checksum logo no tick em que é carregado.
+     */
+    @Test
+    public void checksumFixoEstavel() {
+        Simulacao simulacao = new Simulacao(Nave.NAVE_HARD, 5);
+        Simulacao divergente = new Simulacao(Nave.NAVE_HARD, 5);
+        boolean aterrou = false;
+        while (!aterrou) {
+            if (simulacao.getTick() % 120 == 0) {
+                simulacao.hitJato();
+                divergente.hitJato();
+            }
+            if (simulacao.getTick() == 200) {
+                divergente.hitJato();
+            }
+            aterrou = simulacao.stepFixo(60);
+            divergente.stepFixo(60);
+            if (simulacao.getTick() <= 200) {
+                assertEquals("tick " + simulacao.getTick(), simulacao.getChecksum(), divergente.getChecksum());
+            } else {
+                assertNotEquals("tick " + simulacao.getTick(), simulacao.getChecksum(), divergente.getChecksum());
+            }
+        }
+        assertEquals(1611, simulacao.getTick());
+        assertEquals(61, simulacao.getCombustivel());
+        assertTrue(simulacao.isNivelGanho());
+        assertEquals(0x70872E181E85FD6BL, simulacao.getChecksum());
+    }
+}